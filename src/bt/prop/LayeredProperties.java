@@ -0,0 +1,137 @@
+package bt.prop;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Combines multiple {@link PropertySource}s into a single view, i.e. defaults, environment specific files and
+ * overrides.
+ *
+ * <p>
+ * The layers are given from the lowest to the highest precedence, a field of a later layer hides the same field of
+ * all earlier layers. The merged values are computed once whenever a layer changes, so every lookup is a single hash
+ * probe regardless of the number of layers.
+ * </p>
+ *
+ * <p>
+ * Layers that detect their own changes, like a {@link PropertyFile} that is {@link PropertyFile#watch() watched} or
+ * written via {@link PropertyFile#setValues(Map)}, update the merged values automatically. For all other layers, like
+ * system properties, environment variables or maps, {@link #refresh()} has to be called after they changed.
+ * </p>
+ *
+ * <p>
+ * Layers keep a reference to the instance through their change listener. Since every {@link PropertyFile} is a single
+ * instance per file that lives as long as the process, instances that are no longer needed have to be
+ * {@link #close() closed} to remove the listener from their layers.
+ * </p>
+ *
+ * <h2>Example of usage:</h2>
+ *
+ * <pre>
+ * LayeredProperties properties = new LayeredProperties(PropertyFile.of(&quot;defaults.txt&quot;),
+ *                                                      PropertyFile.of(&quot;production.txt&quot;),
+ *                                                      PropertySource.systemProperties());
+ * String value = properties.getValue(&quot;fieldname1&quot;);
+ * </pre>
+ *
+ * @author &#8904
+ */
+public class LayeredProperties implements AutoCloseable
+{
+    private final List<PropertySource> layers;
+    private final Runnable changeListener = this::refresh;
+    private volatile Map<String, String> values;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param layers
+     *            The sources from the lowest to the highest precedence.
+     */
+    public LayeredProperties(PropertySource... layers)
+    {
+        this.layers = Collections.unmodifiableList(Arrays.asList(layers.clone()));
+
+        for (PropertySource layer : layers)
+        {
+            layer.addChangeListener(this.changeListener);
+        }
+
+        refresh();
+    }
+
+    /**
+     * Gets the value of the given field from the layer with the highest precedence that contains it.
+     *
+     * @param field
+     * @return The value or null if no layer contains the field.
+     */
+    public String getValue(String field)
+    {
+        return this.values.get(field);
+    }
+
+    /**
+     * Gets the value of the given field from the layer with the highest precedence that contains it.
+     *
+     * @param field
+     * @param defaultValue
+     *            The value to return if no layer contains the field.
+     * @return
+     */
+    public String getValue(String field, String defaultValue)
+    {
+        return this.values.getOrDefault(field, defaultValue);
+    }
+
+    /**
+     * Gets the merged values of all layers.
+     *
+     * @return An unmodifiable map.
+     */
+    public Map<String, String> getValues()
+    {
+        return this.values;
+    }
+
+    /**
+     * Gets the layers from the lowest to the highest precedence.
+     *
+     * @return An unmodifiable list.
+     */
+    public List<PropertySource> getLayers()
+    {
+        return this.layers;
+    }
+
+    /**
+     * Removes the change listener of this instance from all layers. The merged values are no longer updated
+     * automatically afterwards but can still be read and {@link #refresh() refreshed}.
+     */
+    @Override
+    public void close()
+    {
+        for (PropertySource layer : this.layers)
+        {
+            layer.removeChangeListener(this.changeListener);
+        }
+    }
+
+    /**
+     * Reads the values of all layers and computes the merged values again.
+     */
+    public synchronized void refresh()
+    {
+        Map<String, String> values = new HashMap<>();
+
+        for (PropertySource layer : this.layers)
+        {
+            values.putAll(layer.getValues());
+        }
+
+        this.values = Collections.unmodifiableMap(values);
+    }
+}
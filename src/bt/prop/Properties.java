@@ -1,10 +1,8 @@
 package bt.prop;
 
-import bt.log.Log;
-
-import java.io.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
 
 /**
  * A utility class to get and set property values.
@@ -34,6 +32,11 @@ import java.util.List;
  * </pre>
  *
  * </ul>
+ * <p>
+ * Files are read through a cached {@link PropertyFile}, so repeated lookups do not read the file again unless it has
+ * changed. Every lookup still checks the modification time and size of the file, so changes are seen as soon as they
+ * were written. To avoid that check, the file can be {@link PropertyFile#watch() watched} instead.
+ * </p>
  *
  * @author &#8904
  */
@@ -61,39 +64,7 @@ public final class Properties
      */
     public static String[] getAllFieldsLike(String field, File file)
     {
-        if (!file.exists())
-        {
-            try
-            {
-                file.getParentFile().mkdirs();
-                file.createNewFile();
-            }
-            catch (Exception e)
-            {
-                Log.error("Failed to create properties file", e);
-            }
-        }
-
-        List<String> values = new ArrayList<>();
-
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8")))
-        {
-            String line;
-            while ((line = br.readLine()) != null)
-            {
-                if (line.startsWith(field))
-                {
-                    String[] parts = line.split(":");
-                    values.add(parts[0].trim());
-                }
-            }
-        }
-        catch (Exception e)
-        {
-            Log.error("Failed to read properties line", e);
-        }
-
-        return values.toArray(new String[] {});
+        return PropertyFile.of(file).getAllFieldsLike(field);
     }
 
     /**
@@ -143,37 +114,7 @@ public final class Properties
      */
     public static String[] getAllLike(String field, File file)
     {
-        if (!file.exists())
-        {
-            try
-            {
-                file.getParentFile().mkdirs();
-                file.createNewFile();
-            }
-            catch (Exception e)
-            {
-                Log.error("Failed to create properties file", e);
-            }
-        }
-        List<String> values = new ArrayList<>();
-
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8")))
-        {
-            String line;
-            while ((line = br.readLine()) != null)
-            {
-                if (line.startsWith(field))
-                {
-                    String value = line.substring(line.indexOf(":") + 1).trim();
-                    values.add(value);
-                }
-            }
-        }
-        catch (Exception e)
-        {
-            Log.error("Failed to read properties line", e);
-        }
-        return values.toArray(new String[] {});
+        return PropertyFile.of(file).getAllLike(field);
     }
 
     /**
@@ -227,35 +168,7 @@ public final class Properties
      */
     public static String getValueOf(String field, File file)
     {
-        if (!file.exists())
-        {
-            try
-            {
-                file.getParentFile().mkdirs();
-                file.createNewFile();
-            }
-            catch (Exception e)
-            {
-                Log.error("Failed to create properties file", e);
-            }
-        }
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8")))
-        {
-            String line;
-            while ((line = br.readLine()) != null)
-            {
-                if (line.startsWith(field + ":"))
-                {
-                    // returns the value of the matching field
-                    return line.substring(line.indexOf(":") + 1).trim();
-                }
-            }
-        }
-        catch (Exception e)
-        {
-            Log.error("Failed to read properties line", e);
-        }
-        return null;
+        return PropertyFile.of(file).getValue(field);
     }
 
     /**
@@ -305,63 +218,11 @@ public final class Properties
      *
      * @see #setValueOf(String, String)
      * @see #setValueOf(String, String, String)
+     * @see #setValues(Map, File)
      */
     public static boolean setValueOf(String field, String value, File file)
     {
-        if (!file.exists())
-        {
-            try
-            {
-                file.getParentFile().mkdirs();
-                file.createNewFile();
-            }
-            catch (Exception e)
-            {
-                Log.error("Failed to create properties file", e);
-                return false;
-            }
-        }
-
-        StringBuilder sb = new StringBuilder();
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8")))
-        {
-            String line;
-            boolean exists = false;
-            while ((line = br.readLine()) != null)
-            {
-                if (line.startsWith(field + ":"))
-                {
-                    sb.append(field + ": " + value + System.lineSeparator());
-                    exists = true;
-                }
-                else
-                {
-                    sb.append(line + System.lineSeparator());
-                }
-            }
-            if (!exists)
-            {
-                // adds the field to the bottom of the file if it doesnt exist yet
-                sb.append(field + ": " + value + System.lineSeparator());
-            }
-        }
-        catch (Exception e)
-        {
-            Log.error("Failed to read properties line", e);
-            return false;
-        }
-
-        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(file))))
-        {
-            writer.print(sb);
-        }
-        catch (Exception e)
-        {
-            Log.error("Failed to write properties line", e);
-            return false;
-        }
-
-        return true;
+        return PropertyFile.of(file).setValues(Collections.singletonMap(field, value));
     }
 
     /**
@@ -402,4 +263,75 @@ public final class Properties
                                      value,
                                      new File(Properties.DEFAULT_PROPERTY_PATH));
     }
-}
\ No newline at end of file
+
+    /**
+     * Updates the values of all given fields inside the given file in a single pass. Fields that do not exist will be
+     * added with their value. If the file does not exist it will be created.
+     * <p>
+     * The file is replaced atomically, so it is never left partially written.
+     * </p>
+     *
+     * @param values The new values by field name.
+     * @param file   The file which should be updated.
+     * @param sync   true to force the new content to the storage device before the file is replaced.
+     *
+     * @return true if successfull.
+     *
+     * @see #setValues(Map, File)
+     * @see #setValues(Map, String)
+     */
+    public static boolean setValues(Map<String, String> values, File file, boolean sync)
+    {
+        return PropertyFile.of(file).setValues(values, sync);
+    }
+
+    /**
+     * Updates the values of all given fields inside the given file in a single pass. Fields that do not exist will be
+     * added with their value. If the file does not exist it will be created.
+     *
+     * @param values The new values by field name.
+     * @param file   The file which should be updated.
+     *
+     * @return true if successfull.
+     *
+     * @see #setValues(Map, File, boolean)
+     * @see #setValues(Map, String)
+     */
+    public static boolean setValues(Map<String, String> values, File file)
+    {
+        return PropertyFile.of(file).setValues(values);
+    }
+
+    /**
+     * Updates the values of all given fields inside the file at the given location in a single pass. Fields that do
+     * not exist will be added with their value. If the file does not exist it will be created.
+     *
+     * @param values The new values by field name.
+     * @param path   The path to the file which should be updated.
+     *
+     * @return true if successfull.
+     *
+     * @see #setValues(Map, File)
+     * @see #setValues(Map)
+     */
+    public static boolean setValues(Map<String, String> values, String path)
+    {
+        return Properties.setValues(values, new File(path));
+    }
+
+    /**
+     * Updates the values of all given fields inside the default property file whichs path is defined by
+     * {@link #DEFAULT_PROPERTY_PATH} in a single pass.
+     *
+     * @param values The new values by field name.
+     *
+     * @return true if successfull.
+     *
+     * @see #setValues(Map, File)
+     * @see #setValues(Map, String)
+     */
+    public static boolean setValues(Map<String, String> values)
+    {
+        return Properties.setValues(values, new File(Properties.DEFAULT_PROPERTY_PATH));
+    }
+}
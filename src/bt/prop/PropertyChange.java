@@ -0,0 +1,81 @@
+package bt.prop;
+
+/**
+ * Describes the change of a single field of a {@link PropertyFile} after the file was reloaded.
+ *
+ * <p>
+ * Changes are passed to the listeners of the property file and, if one is set, dispatched through its
+ * {@link bt.runtime.evnt.Dispatcher Dispatcher}.
+ * </p>
+ *
+ * @author &#8904
+ */
+public class PropertyChange
+{
+    private final PropertyFile file;
+    private final String field;
+    private final String oldValue;
+    private final String newValue;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param file     The file that contains the field.
+     * @param field    The name of the changed field.
+     * @param oldValue The value before the change or null if the field was added.
+     * @param newValue The value after the change or null if the field was removed.
+     */
+    public PropertyChange(PropertyFile file, String field, String oldValue, String newValue)
+    {
+        this.file = file;
+        this.field = field;
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+    }
+
+    /**
+     * Gets the file that contains the field.
+     *
+     * @return
+     */
+    public PropertyFile getFile()
+    {
+        return this.file;
+    }
+
+    /**
+     * Gets the name of the changed field.
+     *
+     * @return
+     */
+    public String getField()
+    {
+        return this.field;
+    }
+
+    /**
+     * Gets the value before the change.
+     *
+     * @return The value or null if the field was added.
+     */
+    public String getOldValue()
+    {
+        return this.oldValue;
+    }
+
+    /**
+     * Gets the value after the change.
+     *
+     * @return The value or null if the field was removed.
+     */
+    public String getNewValue()
+    {
+        return this.newValue;
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.field + ": " + this.oldValue + " -> " + this.newValue;
+    }
+}
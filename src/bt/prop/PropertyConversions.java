@@ -0,0 +1,224 @@
+package bt.prop;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import bt.log.Log;
+
+/**
+ * Caches the typed values of the fields of a single {@link PropertyIndex}.
+ *
+ * <p>
+ * Every field is converted at most once per type. Because a new instance is created whenever the property file is
+ * reloaded, values are parsed once per reload. Invalid values are logged when they are converted and treated like
+ * missing fields.
+ * </p>
+ *
+ * @author &#8904
+ */
+final class PropertyConversions
+{
+    private final PropertyIndex index;
+    private final String fileName;
+    private final Map<Class<?>, Map<String, Conversion>> conversions = new ConcurrentHashMap<>();
+
+    PropertyConversions(PropertyIndex index, String fileName)
+    {
+        this.index = index;
+        this.fileName = fileName;
+    }
+
+    /**
+     * Gets the conversion of the given field to the given type, converting it if that did not happen yet.
+     *
+     * @param type
+     *            Integer, Long, Boolean, Duration, List or an enum class.
+     * @param field
+     * @return
+     */
+    Conversion get(Class<?> type, String field)
+    {
+        Map<String, Conversion> conversions = this.conversions.get(type);
+
+        if (conversions == null)
+        {
+            conversions = this.conversions.computeIfAbsent(type, t -> new ConcurrentHashMap<>());
+        }
+
+        Conversion conversion = conversions.get(field);
+
+        if (conversion == null)
+        {
+            conversion = convert(type, field);
+            conversions.putIfAbsent(field, conversion);
+        }
+
+        return conversion;
+    }
+
+    private Conversion convert(Class<?> type, String field)
+    {
+        String value = this.index.get(field);
+
+        if (value == null)
+        {
+            return Conversion.MISSING;
+        }
+
+        try
+        {
+            if (type == Integer.class)
+            {
+                return new Conversion(Integer.parseInt(value), null);
+            }
+            else if (type == Long.class)
+            {
+                return new Conversion(Long.parseLong(value), null);
+            }
+            else if (type == Boolean.class)
+            {
+                return new Conversion(parseBoolean(value) ? 1 : 0, null);
+            }
+            else if (type == Duration.class)
+            {
+                return new Conversion(0, parseDuration(value));
+            }
+            else if (type == List.class)
+            {
+                return new Conversion(0, parseList(value));
+            }
+            else if (type.isEnum())
+            {
+                return new Conversion(0, parseEnum(type, value));
+            }
+
+            throw new IllegalArgumentException("Unsupported property type " + type.getName());
+        }
+        catch (Exception e)
+        {
+            Log.error("Invalid " + type.getSimpleName() + " value '" + value + "' for field '" + field + "' in "
+                      + this.fileName, e);
+            return Conversion.MISSING;
+        }
+    }
+
+    private static boolean parseBoolean(String value)
+    {
+        if (value.equalsIgnoreCase("true"))
+        {
+            return true;
+        }
+        else if (value.equalsIgnoreCase("false"))
+        {
+            return false;
+        }
+
+        throw new IllegalArgumentException("Expected true or false");
+    }
+
+    /**
+     * Parses an ISO-8601 duration like {@code PT5S} or a number with one of the units {@code ms}, {@code s},
+     * {@code m}, {@code h} or {@code d}. Numbers without a unit are milliseconds.
+     */
+    private static Duration parseDuration(String value)
+    {
+        if (value.startsWith("P") || value.startsWith("p") || value.startsWith("-P") || value.startsWith("-p"))
+        {
+            return Duration.parse(value);
+        }
+
+        int unitStart = value.length();
+
+        while (unitStart > 0 && Character.isLetter(value.charAt(unitStart - 1)))
+        {
+            unitStart -- ;
+        }
+
+        long amount = Long.parseLong(value.substring(0, unitStart).trim());
+        String unit = value.substring(unitStart).toLowerCase();
+
+        switch (unit)
+        {
+            case "":
+            case "ms":
+                return Duration.ofMillis(amount);
+            case "s":
+                return Duration.ofSeconds(amount);
+            case "m":
+                return Duration.ofMinutes(amount);
+            case "h":
+                return Duration.ofHours(amount);
+            case "d":
+                return Duration.ofDays(amount);
+            default:
+                throw new IllegalArgumentException("Unknown duration unit " + unit);
+        }
+    }
+
+    /**
+     * Splits the value at commas into trimmed, non empty elements.
+     */
+    private static List<String> parseList(String value)
+    {
+        List<String> elements = new ArrayList<>();
+
+        for (String element : value.split(","))
+        {
+            element = element.trim();
+
+            if (!element.isEmpty())
+            {
+                elements.add(element);
+            }
+        }
+
+        return Collections.unmodifiableList(elements);
+    }
+
+    private static Object parseEnum(Class<?> type, String value)
+    {
+        for (Object constant : type.getEnumConstants())
+        {
+            if (((Enum<?>)constant).name().equalsIgnoreCase(value))
+            {
+                return constant;
+            }
+        }
+
+        throw new IllegalArgumentException("Expected one of " + Arrays.toString(type.getEnumConstants()));
+    }
+
+    /**
+     * The result of converting a single field. Numbers and booleans are kept as a primitive so that they can be
+     * returned without boxing.
+     */
+    static final class Conversion
+    {
+        /** The conversion of a missing or invalid field. */
+        static final Conversion MISSING = new Conversion(0, null);
+
+        final long number;
+        final Object object;
+
+        private Conversion(long number, Object object)
+        {
+            this.number = number;
+            this.object = object;
+        }
+
+        /**
+         * Indicates whether the field exists and has a valid value.
+         *
+         * @return
+         */
+        boolean isValid()
+        {
+            return this != MISSING;
+        }
+    }
+}
@@ -0,0 +1,1169 @@
+package bt.prop;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import bt.log.Log;
+import bt.prop.PropertyConversions.Conversion;
+import bt.runtime.evnt.Dispatcher;
+import bt.scheduler.Threads;
+
+/**
+ * A cached view of a property file.
+ *
+ * <p>
+ * The file is parsed once into a {@link PropertyIndex byte level index} of its fields and all lookups are served from
+ * memory. Values are only decoded when they are first requested. Whether the file has changed is checked by comparing
+ * its modification time and size, and the file is only parsed again if one of them differs. By default this is done
+ * on every lookup, so changes made by other processes are seen right away, at the cost of a few microseconds per
+ * lookup. A longer {@link #setCheckInterval(long, TimeUnit) check interval} or {@link #watch() watching} the file
+ * makes lookups cheaper. Because some file systems only store modification times with a precision of seconds, changes
+ * that keep the size of the file and happen within that precision may not be detected.
+ * Changes made through {@link Properties} are always visible immediately. If the file can not be read, for example
+ * because it is 2 GB or larger, the previously read content stays in use.
+ * </p>
+ *
+ * <p>
+ * There is a single instance per file, obtained via {@link #of(File)}. Lookups read an immutable snapshot of the
+ * parsed file and do not block each other.
+ * </p>
+ *
+ * <p>
+ * Writes and reloads are coordinated by a read/write lock within the process. Across processes writes are serialized
+ * by a {@link FileChannel#lock() file lock} on a {@code .lock} file next to the property file and re-read the file
+ * while holding it, so concurrent writers in different processes don't lose each other's updates. The lock file is
+ * only created by writes and used instead of the property file itself because writes replace the property file, and a
+ * lock on the replaced file would not be seen by others. Reloads don't need the file lock, since writes atomically
+ * replace the file and a reload therefore reads either the old or the new content completely. Processes that don't
+ * use this class are not coordinated.
+ * </p>
+ *
+ * <p>
+ * Instead of polling, a file can be {@link #watch() watched}. It is then reloaded as soon as it changes on disk and
+ * listeners are informed about every field whose value changed. Lookups of a watched file still check it once per
+ * {@link #WATCHED_CHECK_INTERVAL}, so a lost change event does not leave outdated values in use.
+ * </p>
+ *
+ * <p>
+ * The format and the lookup rules are the same as described in {@link Properties}.
+ * </p>
+ *
+ * @author &#8904
+ */
+public class PropertyFile implements PropertySource
+{
+    /**
+     * The default interval in milliseconds in which the file is checked for changes. 0 checks it on every lookup.
+     */
+    public static final long DEFAULT_CHECK_INTERVAL = 0;
+
+    /**
+     * The minimum interval in milliseconds in which a {@link #watch() watched} file is checked for changes.
+     */
+    public static final long WATCHED_CHECK_INTERVAL = 1000;
+
+    private static final Map<Path, PropertyFile> files = new ConcurrentHashMap<>();
+
+    /** Caches the instance per given File so that lookups don't have to resolve the absolute path every time. */
+    private static final Map<File, PropertyFile> filesByReference = new ConcurrentHashMap<>();
+
+    /**
+     * The default time in milliseconds that a watched file has to stay unchanged before it is reloaded.
+     */
+    public static final long DEFAULT_DEBOUNCE = 100;
+
+    private final File file;
+    private final File lockFile;
+
+    /** Write lock for writes, read lock for reloads. Lookups only read the snapshot and never take it. */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile Snapshot snapshot;
+    private volatile long lastCheck;
+    private volatile long checkInterval = TimeUnit.MILLISECONDS.toNanos(DEFAULT_CHECK_INTERVAL);
+
+    private final List<Consumer<PropertyChange>> listeners = new CopyOnWriteArrayList<>();
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+    private final Map<String, List<Consumer<PropertyChange>>> fieldListeners = new ConcurrentHashMap<>();
+    private volatile Dispatcher dispatcher;
+
+    /** The fields per type that were requested through the typed getters and are converted on every reload. */
+    private final Map<Class<?>, Set<String>> conversions = new ConcurrentHashMap<>();
+
+    private volatile boolean watched;
+    private volatile long debounce;
+    private final Object reloadLock = new Object();
+    private ScheduledFuture<?> pendingReload;
+
+    private PropertyFile(File file)
+    {
+        this.file = file;
+        this.lockFile = new File(file.getPath() + ".lock");
+    }
+
+    /**
+     * Gets the cached view of the given file.
+     *
+     * @param file
+     * @return
+     */
+    public static PropertyFile of(File file)
+    {
+        PropertyFile propertyFile = filesByReference.get(file);
+
+        if (propertyFile == null)
+        {
+            propertyFile = files.computeIfAbsent(file.toPath().toAbsolutePath().normalize(),
+                                                 path -> new PropertyFile(path.toFile()));
+            filesByReference.putIfAbsent(file, propertyFile);
+        }
+
+        return propertyFile;
+    }
+
+    /**
+     * Gets the cached view of the file at the given path.
+     *
+     * @param path
+     * @return
+     */
+    public static PropertyFile of(String path)
+    {
+        return of(new File(path));
+    }
+
+    /**
+     * Gets the file of this view.
+     *
+     * @return
+     */
+    public File getFile()
+    {
+        return this.file;
+    }
+
+    /**
+     * Sets the interval in which the file is checked for changes. An interval of 0 checks the file on every lookup,
+     * which is the default. While the file is {@link #watch() watched} it is checked at least once per
+     * {@link #WATCHED_CHECK_INTERVAL}.
+     *
+     * @param interval
+     * @param unit
+     */
+    public void setCheckInterval(long interval, TimeUnit unit)
+    {
+        this.checkInterval = unit.toNanos(interval);
+    }
+
+    /**
+     * Gets the value of the given field or null if the field does not exist.
+     *
+     * @param field
+     * @return
+     */
+    public String getValue(String field)
+    {
+        Snapshot snapshot = getSnapshot();
+
+        PropertyIndex index = snapshot.index;
+
+        if (field.indexOf(':') < 0)
+        {
+            return index.get(field);
+        }
+
+        // fields that contain a colon can't be found in the index, so they are matched against the raw lines
+        String prefix = field + ":";
+
+        for (int line = 0; line < index.lineCount(); line ++ )
+        {
+            if (index.lineStartsWith(line, prefix))
+            {
+                return index.value(line);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets all values whose field names start with the given String, in the order of the file.
+     *
+     * @param field
+     * @return
+     */
+    public String[] getAllLike(String field)
+    {
+        List<String> values = new ArrayList<>();
+        PropertyIndex index = getSnapshot().index;
+
+        for (int line = 0; line < index.lineCount(); line ++ )
+        {
+            if (index.lineStartsWith(line, field))
+            {
+                values.add(index.value(line));
+            }
+        }
+
+        return values.toArray(new String[] {});
+    }
+
+    /**
+     * Gets all field names that start with the given String, in the order of the file.
+     *
+     * @param field
+     * @return
+     */
+    public String[] getAllFieldsLike(String field)
+    {
+        List<String> fields = new ArrayList<>();
+        PropertyIndex index = getSnapshot().index;
+
+        for (int line = 0; line < index.lineCount(); line ++ )
+        {
+            if (index.lineStartsWith(line, field))
+            {
+                fields.add(index.lineField(line));
+            }
+        }
+
+        return fields.toArray(new String[] {});
+    }
+
+    /**
+     * Gets the value of the given field as an int.
+     *
+     * <p>
+     * Like all typed getters the value is converted once per reload of the file. Once a field was requested, it is
+     * converted whenever the file is reloaded and invalid values are logged at that time.
+     * </p>
+     *
+     * @param field
+     * @param defaultValue
+     *            The value to return if the field does not exist or is not a valid int.
+     * @return
+     */
+    public int getInt(String field, int defaultValue)
+    {
+        Conversion conversion = convert(Integer.class, field);
+        return conversion.isValid() ? (int)conversion.number : defaultValue;
+    }
+
+    /**
+     * Gets the value of the given field as a long.
+     *
+     * @param field
+     * @param defaultValue
+     *            The value to return if the field does not exist or is not a valid long.
+     * @return
+     * @see #getInt(String, int)
+     */
+    public long getLong(String field, long defaultValue)
+    {
+        Conversion conversion = convert(Long.class, field);
+        return conversion.isValid() ? conversion.number : defaultValue;
+    }
+
+    /**
+     * Gets the value of the given field as a boolean. Only true and false, ignoring case, are valid values.
+     *
+     * @param field
+     * @param defaultValue
+     *            The value to return if the field does not exist or is not a valid boolean.
+     * @return
+     * @see #getInt(String, int)
+     */
+    public boolean getBoolean(String field, boolean defaultValue)
+    {
+        Conversion conversion = convert(Boolean.class, field);
+        return conversion.isValid() ? conversion.number != 0 : defaultValue;
+    }
+
+    /**
+     * Gets the value of the given field as a duration. Valid values are ISO-8601 durations like {@code PT30S} or
+     * numbers followed by one of the units {@code ms}, {@code s}, {@code m}, {@code h} or {@code d}, i.e.
+     * {@code 500ms} or {@code 30s}. Numbers without a unit are milliseconds.
+     *
+     * @param field
+     * @param defaultValue
+     *            The value to return if the field does not exist or is not a valid duration.
+     * @return
+     * @see #getInt(String, int)
+     */
+    public Duration getDuration(String field, Duration defaultValue)
+    {
+        Conversion conversion = convert(Duration.class, field);
+        return conversion.isValid() ? (Duration)conversion.object : defaultValue;
+    }
+
+    /**
+     * Gets the value of the given field as a list of its comma separated, trimmed and non empty elements.
+     *
+     * @param field
+     * @return An unmodifiable list that is empty if the field does not exist.
+     * @see #getInt(String, int)
+     */
+    public List<String> getList(String field)
+    {
+        Conversion conversion = convert(List.class, field);
+        if (!conversion.isValid())
+        {
+            return Collections.emptyList();
+        }
+
+        // list conversions always produce lists of Strings
+        @SuppressWarnings("unchecked")
+        List<String> list = (List<String>)conversion.object;
+        return list;
+    }
+
+    /**
+     * Gets the value of the given field as a constant of the given enum, ignoring case.
+     *
+     * @param field
+     * @param type
+     * @param defaultValue
+     *            The value to return if the field does not exist or is not the name of a constant.
+     * @return
+     * @see #getInt(String, int)
+     */
+    public <E extends Enum<E>> E getEnum(String field, Class<E> type, E defaultValue)
+    {
+        Conversion conversion = convert(type, field);
+        return conversion.isValid() ? type.cast(conversion.object) : defaultValue;
+    }
+
+    private Conversion convert(Class<?> type, String field)
+    {
+        PropertyConversions conversions = getSnapshot().conversions;
+        Conversion conversion = conversions.get(type, field);
+        Set<String> fields = this.conversions.get(type);
+
+        if (fields == null || !fields.contains(field))
+        {
+            this.conversions.computeIfAbsent(type, t -> ConcurrentHashMap.newKeySet()).add(field);
+        }
+
+        return conversion;
+    }
+
+    /**
+     * Updates the values of all given fields in a single pass over the file. Every line of a field is replaced and
+     * fields that don't exist yet are added to the bottom of the file.
+     *
+     * <p>
+     * The new content is written to a temporary file in the same directory which then atomically replaces the file, so
+     * readers and a crash during the write never see a partially written file. Writers are serialized within the
+     * process and, through the lock file, across processes.
+     * </p>
+     *
+     * @param values
+     *            The new values by field name.
+     * @param sync
+     *            true to force the new content to the storage device before the file is replaced. This makes the update
+     *            durable across power failures at the cost of a slower write.
+     * @return true if successful.
+     */
+    public boolean setValues(Map<String, String> values, boolean sync)
+    {
+        List<PropertyChange> changes = new ArrayList<>();
+        boolean written;
+
+        this.lock.writeLock().lock();
+
+        try
+        {
+            // the directory has to exist before the lock file can be created in it
+            createIfMissing();
+            FileChannel fileLock = lockFile();
+
+            try
+            {
+                written = write(values, sync, changes);
+            }
+            finally
+            {
+                release(fileLock);
+            }
+        }
+        finally
+        {
+            this.lock.writeLock().unlock();
+        }
+
+        fire(changes);
+
+        return written;
+    }
+
+    /**
+     * Writes the given values to the file and publishes the new content. Callers must hold the write lock and should
+     * hold the file lock.
+     *
+     * @param changes
+     *            The list to add the changed fields to.
+     * @return true if successful.
+     */
+    private boolean write(Map<String, String> values, boolean sync, List<PropertyChange> changes)
+    {
+        List<String> lines;
+
+        try
+        {
+            lines = readLines();
+        }
+        catch (Exception e)
+        {
+            Log.error("Failed to read properties line", e);
+            return false;
+        }
+
+        List<String> updated = update(lines, values);
+        Path target = this.file.toPath();
+        Path temp = null;
+
+        try
+        {
+            temp = Files.createTempFile(target.getParent(), this.file.getName(), ".tmp");
+
+            try (FileOutputStream out = new FileOutputStream(temp.toFile());
+                 Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)))
+            {
+                for (String line : updated)
+                {
+                    writer.write(line);
+                    writer.write(System.lineSeparator());
+                }
+
+                writer.flush();
+
+                if (sync)
+                {
+                    out.getChannel().force(true);
+                }
+            }
+
+            copyAttributes(target, temp);
+
+            try
+            {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        catch (Exception e)
+        {
+            Log.error("Failed to write properties line", e);
+
+            if (temp != null)
+            {
+                temp.toFile().delete();
+            }
+
+            return false;
+        }
+
+        publish(new Snapshot(this.file.lastModified(), this.file.length(), PropertyIndex.of(updated), this.file.getPath()), changes);
+
+        return true;
+    }
+
+    /**
+     * Copies the POSIX permissions, owner and group of the target file to the temporary file that replaces it. Temporary
+     * files are created with owner only access, which would otherwise replace the permissions of the property file.
+     * Changing owner and group usually requires privileges, so failing to do so is not an error.
+     */
+    private static void copyAttributes(Path target, Path temp) throws IOException
+    {
+        PosixFileAttributeView targetView = Files.getFileAttributeView(target, PosixFileAttributeView.class);
+
+        if (targetView == null || !Files.exists(target))
+        {
+            return;
+        }
+
+        PosixFileAttributes attributes = targetView.readAttributes();
+        PosixFileAttributeView tempView = Files.getFileAttributeView(temp, PosixFileAttributeView.class);
+        tempView.setPermissions(attributes.permissions());
+
+        try
+        {
+            tempView.setGroup(attributes.group());
+            tempView.setOwner(attributes.owner());
+        }
+        catch (IOException | SecurityException e)
+        {
+            Log.debug("Failed to copy owner of properties file " + target + ": " + e);
+        }
+    }
+
+    /**
+     * Updates the values of all given fields without forcing them to the storage device.
+     *
+     * @param values
+     *            The new values by field name.
+     * @return true if successful.
+     * @see #setValues(Map, boolean)
+     */
+    public boolean setValues(Map<String, String> values)
+    {
+        return setValues(values, false);
+    }
+
+    /**
+     * Creates the new lines of the file by replacing the lines of all changed fields and appending the fields that
+     * didn't exist yet.
+     */
+    private static List<String> update(List<String> lines, Map<String, String> values)
+    {
+        Set<String> written = new HashSet<>();
+        List<String> colonFields = new ArrayList<>();
+        List<String> updated = new ArrayList<>(lines.size() + values.size());
+
+        for (String field : values.keySet())
+        {
+            if (field.indexOf(':') >= 0)
+            {
+                colonFields.add(field);
+            }
+        }
+
+        for (String line : lines)
+        {
+            String field = fieldOf(line, values, colonFields);
+
+            if (field != null)
+            {
+                updated.add(field + ": " + values.get(field));
+                written.add(field);
+            }
+            else
+            {
+                updated.add(line);
+            }
+        }
+
+        for (Map.Entry<String, String> entry : values.entrySet())
+        {
+            if (!written.contains(entry.getKey()))
+            {
+                // adds the field to the bottom of the file if it doesnt exist yet
+                updated.add(entry.getKey() + ": " + entry.getValue());
+            }
+        }
+
+        return updated;
+    }
+
+    /**
+     * Gets the field of the given changes that the given line belongs to.
+     *
+     * @return The field or null if the line does not belong to any of them.
+     */
+    private static String fieldOf(String line, Map<String, String> values, List<String> colonFields)
+    {
+        int index = line.indexOf(':');
+
+        if (index < 0)
+        {
+            return null;
+        }
+
+        String field = line.substring(0, index);
+
+        if (values.containsKey(field))
+        {
+            return field;
+        }
+
+        // fields that contain a colon can only be matched against the raw line
+        for (String key : colonFields)
+        {
+            if (line.startsWith(key + ":"))
+            {
+                return key;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Adds a listener that is informed about every changed field whenever the file is reloaded.
+     *
+     * @param listener
+     */
+    public void addListener(Consumer<PropertyChange> listener)
+    {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Adds a listener that is informed whenever the value of the given field changes.
+     *
+     * @param field
+     * @param listener
+     */
+    public void addListener(String field, Consumer<PropertyChange> listener)
+    {
+        this.fieldListeners.computeIfAbsent(field, f -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    /**
+     * Adds a listener that is called once per reload in which at least one field changed.
+     *
+     * @param listener
+     */
+    @Override
+    public void addChangeListener(Runnable listener)
+    {
+        this.changeListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener that was added via {@link #addChangeListener(Runnable)}.
+     *
+     * @param listener
+     * @return true if the listener was removed.
+     */
+    @Override
+    public boolean removeChangeListener(Runnable listener)
+    {
+        return this.changeListeners.remove(listener);
+    }
+
+    /**
+     * Gets the values of all fields. For fields that occur multiple times the first value is used.
+     *
+     * @return A new map in the order of the file.
+     */
+    @Override
+    public Map<String, String> getValues()
+    {
+        PropertyIndex index = getSnapshot().index;
+        Map<String, String> values = new LinkedHashMap<>();
+
+        for (int i = 0; i < index.fieldCount(); i ++ )
+        {
+            values.put(index.field(i), index.fieldValue(i));
+        }
+
+        return values;
+    }
+
+    /**
+     * Removes a listener that was added via {@link #addListener(Consumer)}.
+     *
+     * @param listener
+     * @return true if the listener was removed.
+     */
+    public boolean removeListener(Consumer<PropertyChange> listener)
+    {
+        return this.listeners.remove(listener);
+    }
+
+    /**
+     * Removes a listener that was added via {@link #addListener(String, Consumer)}.
+     *
+     * @param field
+     * @param listener
+     * @return true if the listener was removed.
+     */
+    public boolean removeListener(String field, Consumer<PropertyChange> listener)
+    {
+        List<Consumer<PropertyChange>> listeners = this.fieldListeners.get(field);
+        return listeners != null && listeners.remove(listener);
+    }
+
+    /**
+     * Sets a dispatcher that every {@link PropertyChange} is dispatched through in addition to the listeners.
+     * Subscribers can use a keyed subscription with a named index, i.e.
+     * {@code subscribeTo(PropertyChange.class, "field", PropertyChange::getField, "port", consumer)}, to only receive
+     * changes of a single field.
+     *
+     * @param dispatcher
+     *            The dispatcher or null to stop dispatching changes.
+     */
+    public void setDispatcher(Dispatcher dispatcher)
+    {
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Watches the file for changes with a debounce time of {@link #DEFAULT_DEBOUNCE} milliseconds.
+     *
+     * @return true if the file is watched.
+     * @see #watch(long, TimeUnit)
+     */
+    public boolean watch()
+    {
+        return watch(DEFAULT_DEBOUNCE, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Watches the file for changes via a {@link java.nio.file.WatchService WatchService}.
+     *
+     * <p>
+     * The file is reloaded once it stayed unchanged for the given debounce time, so editors that write a file in
+     * multiple steps cause a single reload. While the file is watched lookups only check its modification time once
+     * per check interval, but at most once per {@link #WATCHED_CHECK_INTERVAL}, in case a change event was lost.
+     * </p>
+     *
+     * @param debounce
+     * @param unit
+     * @return true if the file is watched, false if the watch service could not be started.
+     */
+    public boolean watch(long debounce, TimeUnit unit)
+    {
+        this.debounce = unit.toNanos(debounce);
+
+        try
+        {
+            createIfMissing();
+            PropertyWatcher.get().watch(this);
+        }
+        catch (Exception e)
+        {
+            Log.error("Failed to watch properties file", e);
+            return false;
+        }
+
+        // load the current content so that the first change already has something to be compared to
+        getSnapshot();
+        this.watched = true;
+
+        return true;
+    }
+
+    /**
+     * Stops watching the file. Lookups check the modification time of the file once per check interval again.
+     */
+    public void unwatch()
+    {
+        if (this.watched)
+        {
+            this.watched = false;
+
+            try
+            {
+                PropertyWatcher.get().unwatch(this);
+            }
+            catch (Exception e)
+            {
+                Log.error("Failed to unwatch properties file", e);
+            }
+
+            synchronized (this.reloadLock)
+            {
+                if (this.pendingReload != null)
+                {
+                    this.pendingReload.cancel(false);
+                    this.pendingReload = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Indicates whether the file is {@link #watch() watched}.
+     *
+     * @return
+     */
+    public boolean isWatched()
+    {
+        return this.watched;
+    }
+
+    /**
+     * Called by the {@link PropertyWatcher} when the file was changed. Schedules a reload after the debounce time,
+     * replacing a reload that was scheduled by an earlier change.
+     */
+    void changeDetected()
+    {
+        synchronized (this.reloadLock)
+        {
+            if (this.pendingReload != null)
+            {
+                this.pendingReload.cancel(false);
+            }
+
+            this.pendingReload = Threads.get().scheduleDaemon(this::reload,
+                                                              this.debounce,
+                                                              TimeUnit.NANOSECONDS,
+                                                              "PropertyReload");
+        }
+    }
+
+    /**
+     * Parses the file again regardless of whether it has changed.
+     */
+    public void reload()
+    {
+        refresh(true);
+    }
+
+    private Snapshot getSnapshot()
+    {
+        Snapshot snapshot = this.snapshot;
+        long now = System.nanoTime();
+
+        if (snapshot == null || now - this.lastCheck >= checkInterval())
+        {
+            // most checks find the file unchanged, which doesn't need the locks
+            if (snapshot != null && !snapshot.isOutdated(this.file))
+            {
+                this.lastCheck = now;
+                return snapshot;
+            }
+
+            snapshot = refresh(false);
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Gets the current check interval in nanoseconds, which is at least {@link #WATCHED_CHECK_INTERVAL} while the file
+     * is watched.
+     */
+    private long checkInterval()
+    {
+        long interval = this.checkInterval;
+        return this.watched ? Math.max(interval, TimeUnit.MILLISECONDS.toNanos(WATCHED_CHECK_INTERVAL)) : interval;
+    }
+
+    /**
+     * Parses the file if it has changed since it was last parsed or if the reload is forced, and informs the listeners
+     * about changed fields.
+     *
+     * @param force
+     * @return The current snapshot.
+     */
+    private Snapshot refresh(boolean force)
+    {
+        List<PropertyChange> changes = new ArrayList<>();
+        Snapshot snapshot;
+
+        this.lock.readLock().lock();
+
+        // concurrent reloads are serialized by the monitor, the read lock only keeps writes out
+        try
+        {
+            synchronized (this)
+            {
+                snapshot = refreshLocked(force, changes);
+            }
+        }
+        finally
+        {
+            this.lock.readLock().unlock();
+        }
+
+        fire(changes);
+
+        return snapshot;
+    }
+
+    /**
+     * Does the actual refresh. Callers must hold the read lock and the lock of this instance.
+     */
+    private Snapshot refreshLocked(boolean force, List<PropertyChange> changes)
+    {
+        long now = System.nanoTime();
+        Snapshot snapshot = this.snapshot;
+
+        if (!force && snapshot != null && now - this.lastCheck < checkInterval())
+        {
+            // another thread checked the file while this one was waiting
+            return snapshot;
+        }
+
+        this.lastCheck = now;
+
+        if (force || snapshot == null || snapshot.isOutdated(this.file))
+        {
+            snapshot = load();
+            publish(snapshot, changes);
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Replaces the current snapshot and collects the fields that differ between the old and the new one, if anyone is
+     * interested in them. Callers must hold the write lock, or the read lock and the lock of this instance.
+     */
+    private void publish(Snapshot snapshot, List<PropertyChange> changes)
+    {
+        Snapshot old = this.snapshot;
+
+        // convert all fields that were requested typed before, so that invalid values are reported right away
+        for (Map.Entry<Class<?>, Set<String>> entry : this.conversions.entrySet())
+        {
+            for (String field : entry.getValue())
+            {
+                snapshot.conversions.get(entry.getKey(), field);
+            }
+        }
+
+        this.snapshot = snapshot;
+        this.lastCheck = System.nanoTime();
+
+        if (old == null || this.listeners.isEmpty() && this.fieldListeners.isEmpty() && this.changeListeners.isEmpty()
+            && this.dispatcher == null)
+        {
+            return;
+        }
+
+        PropertyIndex oldIndex = old.index;
+        PropertyIndex newIndex = snapshot.index;
+
+        for (int i = 0; i < newIndex.fieldCount(); i ++ )
+        {
+            String field = newIndex.field(i);
+            String value = newIndex.fieldValue(i);
+            String oldValue = oldIndex.get(field);
+
+            if (!value.equals(oldValue))
+            {
+                changes.add(new PropertyChange(this, field, oldValue, value));
+            }
+        }
+
+        for (int i = 0; i < oldIndex.fieldCount(); i ++ )
+        {
+            String field = oldIndex.field(i);
+
+            if (newIndex.get(field) == null)
+            {
+                changes.add(new PropertyChange(this, field, oldIndex.fieldValue(i), null));
+            }
+        }
+    }
+
+    /**
+     * Passes the given changes to the listeners and the dispatcher. An exception of one listener does not prevent the
+     * others from being informed.
+     */
+    private void fire(List<PropertyChange> changes)
+    {
+        if (!changes.isEmpty())
+        {
+            for (Runnable listener : this.changeListeners)
+            {
+                try
+                {
+                    listener.run();
+                }
+                catch (Exception e)
+                {
+                    Log.error("Failed to inform listener about property changes", e);
+                }
+            }
+        }
+
+        for (PropertyChange change : changes)
+        {
+            for (Consumer<PropertyChange> listener : this.listeners)
+            {
+                notify(listener, change);
+            }
+
+            List<Consumer<PropertyChange>> fieldListeners = this.fieldListeners.get(change.getField());
+
+            if (fieldListeners != null)
+            {
+                for (Consumer<PropertyChange> listener : fieldListeners)
+                {
+                    notify(listener, change);
+                }
+            }
+
+            Dispatcher dispatcher = this.dispatcher;
+
+            if (dispatcher != null)
+            {
+                notify(dispatcher::dispatch, change);
+            }
+        }
+    }
+
+    private static void notify(Consumer<PropertyChange> listener, PropertyChange change)
+    {
+        try
+        {
+            listener.accept(change);
+        }
+        catch (Exception e)
+        {
+            Log.error("Failed to inform listener about property change " + change, e);
+        }
+    }
+
+    /**
+     * Exclusively locks the lock file of the property file for a write, creating it if necessary. If the lock can't be
+     * acquired, for example because the directory is read only, the write continues without coordinating with other
+     * processes.
+     *
+     * @return The channel that holds the lock or null if the lock could not be acquired.
+     */
+    private FileChannel lockFile()
+    {
+        FileChannel channel = null;
+
+        try
+        {
+            channel = FileChannel.open(this.lockFile.toPath(),
+                                       StandardOpenOption.CREATE,
+                                       StandardOpenOption.READ,
+                                       StandardOpenOption.WRITE);
+            channel.lock();
+            return channel;
+        }
+        catch (IOException | OverlappingFileLockException e)
+        {
+            Log.debug("Failed to lock properties file " + this.lockFile + ": " + e);
+            release(channel);
+            return null;
+        }
+    }
+
+    /**
+     * Releases the lock by closing the channel that holds it.
+     */
+    private static void release(FileChannel channel)
+    {
+        if (channel != null)
+        {
+            try
+            {
+                channel.close();
+            }
+            catch (IOException e)
+            {
+                Log.error("Failed to release properties file lock", e);
+            }
+        }
+    }
+
+    /**
+     * Reads the file into a new snapshot. If the file can not be read the previous content is kept, so that a file
+     * that is too large or temporarily unreadable does not make every field disappear.
+     */
+    private Snapshot load()
+    {
+        createIfMissing();
+
+        long modified = this.file.lastModified();
+        long size = this.file.length();
+        PropertyIndex index;
+
+        try
+        {
+            index = PropertyIndex.of(this.file.toPath());
+        }
+        catch (Exception e)
+        {
+            Snapshot previous = this.snapshot;
+            Log.error("Failed to read properties file " + this.file
+                      + (previous != null ? ", keeping the previous content" : ""), e);
+            index = previous != null ? previous.index : PropertyIndex.empty();
+        }
+
+        return new Snapshot(modified, size, index, this.file.getPath());
+    }
+
+    private void createIfMissing()
+    {
+        if (!this.file.exists())
+        {
+            try
+            {
+                this.file.getParentFile().mkdirs();
+                this.file.createNewFile();
+            }
+            catch (Exception e)
+            {
+                Log.error("Failed to create properties file", e);
+            }
+        }
+    }
+
+    private List<String> readLines() throws IOException
+    {
+        List<String> lines = new ArrayList<>();
+
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(this.file),
+                                                                          StandardCharsets.UTF_8)))
+        {
+            String line;
+            while ((line = br.readLine()) != null)
+            {
+                lines.add(line);
+            }
+        }
+
+        return lines;
+    }
+
+    /**
+     * The parsed content of the file at a point in time.
+     */
+    private static final class Snapshot
+    {
+        private final long modified;
+        private final long size;
+        private final PropertyIndex index;
+        private final PropertyConversions conversions;
+
+        private Snapshot(long modified, long size, PropertyIndex index, String fileName)
+        {
+            this.modified = modified;
+            this.size = size;
+            this.index = index;
+            this.conversions = new PropertyConversions(index, fileName);
+        }
+
+        /**
+         * Indicates whether the modification time or the size of the given file differ from the ones that this snapshot
+         * was read with.
+         */
+        private boolean isOutdated(File file)
+        {
+            return this.modified != file.lastModified() || this.size != file.length();
+        }
+    }
+}
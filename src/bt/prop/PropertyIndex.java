@@ -0,0 +1,427 @@
+package bt.prop;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An index over the UTF-8 encoded content of a property file.
+ *
+ * <p>
+ * The content is scanned once on byte level to find the offsets of all lines and of the colon that separates field
+ * and value, and the hash codes of the field names. A hash table over the field names maps them to their first line.
+ * Nothing is decoded during the scan except for field names that contain non ASCII characters, which have to be
+ * decoded once to calculate their hash code. Values and lines are only decoded when they are requested, and decoded values are cached.
+ * </p>
+ *
+ * <p>
+ * Files are read onto the heap completely, so that changes to the file after it was read, including truncating it in
+ * place, never affect the index. Files have to be smaller than 2 GB.
+ * </p>
+ *
+ * <p>
+ * Instances are immutable apart from the value cache and can be used by multiple threads.
+ * </p>
+ *
+ * @author &#8904
+ */
+final class PropertyIndex
+{
+    /**
+     * The largest file size in bytes that can be indexed, leaving some room below the maximum array size of common
+     * JVMs.
+     */
+    static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+
+    private final byte[] content;
+    private final int lineCount;
+    private final int[] lineStarts;
+    private final int[] lineEnds;
+
+    /** The offset of the first colon per line or -1 if the line has none. */
+    private final int[] colons;
+
+    /** The first line of every distinct field in the order of the file. */
+    private final int[] fieldLines;
+
+    /**
+     * Open addressing table of line numbers plus one, each followed by the hash code of its field, so that a probe
+     * only touches a single cache line.
+     */
+    private final int[] slots;
+    private final int mask;
+
+    private final String[] values;
+
+    private PropertyIndex(byte[] content)
+    {
+        this.content = content;
+
+        int limit = content.length;
+        int capacity = Math.max(16, Math.min(limit / 32, 1 << 16));
+        int[] starts = new int[capacity];
+        int[] ends = new int[capacity];
+        int[] colons = new int[capacity];
+        int[] hashes = new int[capacity];
+        int count = 0;
+        int position = 0;
+
+        while (position < limit)
+        {
+            if (count == starts.length)
+            {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+                colons = Arrays.copyOf(colons, count * 2);
+                hashes = Arrays.copyOf(hashes, count * 2);
+            }
+
+            int colon = -1;
+            int hash = 0;
+            int nonAscii = 0;
+            int end = position;
+            byte b = 0;
+
+            // like BufferedReader.readLine lines are terminated by \n, \r or \r\n
+            while (end < limit && (b = content[end]) != '\n' && b != '\r')
+            {
+                if (colon < 0)
+                {
+                    if (b == ':')
+                    {
+                        colon = end;
+                    }
+                    else
+                    {
+                        // the hash code of the field as String.hashCode() calculates it for ASCII characters
+                        hash = 31 * hash + b;
+                        nonAscii |= b;
+                    }
+                }
+
+                end ++ ;
+            }
+
+            if (colon >= 0 && nonAscii < 0)
+            {
+                hash = decode(position, colon).hashCode();
+            }
+
+            starts[count] = position;
+            ends[count] = end;
+            colons[count] = colon;
+            hashes[count] = hash;
+            count ++ ;
+
+            position = end + 1;
+
+            if (b == '\r' && position < limit && content[position] == '\n')
+            {
+                position ++ ;
+            }
+        }
+
+        this.lineCount = count;
+        this.lineStarts = Arrays.copyOf(starts, count);
+        this.lineEnds = Arrays.copyOf(ends, count);
+        this.colons = Arrays.copyOf(colons, count);
+        this.values = new String[count];
+
+        int fieldCount = 0;
+
+        for (int i = 0; i < count; i ++ )
+        {
+            if (colons[i] >= 0)
+            {
+                fieldCount ++ ;
+            }
+        }
+
+        int tableSize = 2;
+
+        while (tableSize < fieldCount * 2)
+        {
+            tableSize <<= 1;
+        }
+
+        this.slots = new int[tableSize * 2];
+        this.mask = tableSize - 1;
+
+        int[] fieldLines = new int[fieldCount];
+        int distinct = 0;
+
+        for (int line = 0; line < count; line ++ )
+        {
+            if (colons[line] >= 0 && insert(line, hashes[line]))
+            {
+                fieldLines[distinct ++ ] = line;
+            }
+        }
+
+        this.fieldLines = Arrays.copyOf(fieldLines, distinct);
+    }
+
+    /**
+     * Reads the given file onto the heap.
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     *             If the file can not be read or is 2 GB or larger.
+     */
+    static PropertyIndex of(Path file) throws IOException
+    {
+        long size = Files.size(file);
+
+        if (size > MAX_SIZE)
+        {
+            throw new IOException("Properties file " + file + " is too large (" + size + " bytes, maximum is " + MAX_SIZE
+                                  + " bytes)");
+        }
+
+        return new PropertyIndex(Files.readAllBytes(file));
+    }
+
+    /**
+     * Creates an index over the given lines.
+     *
+     * @param lines
+     * @return
+     */
+    static PropertyIndex of(List<String> lines)
+    {
+        return new PropertyIndex(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Gets an empty index.
+     *
+     * @return
+     */
+    static PropertyIndex empty()
+    {
+        return new PropertyIndex(new byte[0]);
+    }
+
+    /**
+     * Gets the value of the first line of the given field.
+     *
+     * @param field
+     * @return The value or null if the field does not exist.
+     */
+    String get(String field)
+    {
+        int hash = field.hashCode();
+        int slot = spread(hash) & this.mask;
+        int line;
+
+        while ((line = this.slots[slot * 2] - 1) >= 0)
+        {
+            if (this.slots[slot * 2 + 1] == hash && fieldEquals(line, field))
+            {
+                return value(line);
+            }
+
+            slot = (slot + 1) & this.mask;
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets the number of distinct fields.
+     *
+     * @return
+     */
+    int fieldCount()
+    {
+        return this.fieldLines.length;
+    }
+
+    /**
+     * Gets the name of the distinct field with the given number. Fields are numbered in the order of the file.
+     *
+     * @param index
+     * @return
+     */
+    String field(int index)
+    {
+        int line = this.fieldLines[index];
+        return decode(this.lineStarts[line], this.colons[line]);
+    }
+
+    /**
+     * Gets the value of the distinct field with the given number.
+     *
+     * @param index
+     * @return
+     */
+    String fieldValue(int index)
+    {
+        return value(this.fieldLines[index]);
+    }
+
+    /**
+     * Gets the number of lines.
+     *
+     * @return
+     */
+    int lineCount()
+    {
+        return this.lineCount;
+    }
+
+    /**
+     * Decodes the given line.
+     *
+     * @param line
+     * @return
+     */
+    String line(int line)
+    {
+        return decode(this.lineStarts[line], this.lineEnds[line]);
+    }
+
+    /**
+     * Gets the trimmed text in front of the first colon of the given line, or the whole trimmed line if it does not
+     * contain a colon.
+     *
+     * @param line
+     * @return
+     */
+    String lineField(int line)
+    {
+        int colon = this.colons[line];
+        return decode(this.lineStarts[line], colon < 0 ? this.lineEnds[line] : colon).trim();
+    }
+
+    /**
+     * Gets the trimmed text behind the first colon of the given line, or the whole trimmed line if it does not contain
+     * a colon.
+     *
+     * @param line
+     * @return
+     */
+    String value(int line)
+    {
+        String value = this.values[line];
+
+        if (value == null)
+        {
+            int colon = this.colons[line];
+            value = decode(colon < 0 ? this.lineStarts[line] : colon + 1, this.lineEnds[line]).trim();
+
+            // Strings are immutable, so publishing them through a plain array is safe
+            this.values[line] = value;
+        }
+
+        return value;
+    }
+
+    /**
+     * Indicates whether the given line starts with the given prefix without decoding the line if possible.
+     *
+     * @param line
+     * @param prefix
+     * @return
+     */
+    boolean lineStartsWith(int line, String prefix)
+    {
+        int position = this.lineStarts[line];
+        int end = this.lineEnds[line];
+
+        for (int i = 0; i < prefix.length(); i ++ )
+        {
+            char c = prefix.charAt(i);
+
+            if (c >= 0x80)
+            {
+                return line(line).startsWith(prefix);
+            }
+
+            if (position >= end || this.content[position] != c)
+            {
+                return false;
+            }
+
+            position ++ ;
+        }
+
+        return true;
+    }
+
+    /**
+     * Adds the field of the given line to the hash table unless the field already exists.
+     *
+     * @return true if the field was added.
+     */
+    private boolean insert(int line, int hash)
+    {
+        int slot = spread(hash) & this.mask;
+        int other;
+
+        while ((other = this.slots[slot * 2] - 1) >= 0)
+        {
+            if (this.slots[slot * 2 + 1] == hash && sameField(line, other))
+            {
+                // the first line of a field wins, like in a sequential scan
+                return false;
+            }
+
+            slot = (slot + 1) & this.mask;
+        }
+
+        this.slots[slot * 2] = line + 1;
+        this.slots[slot * 2 + 1] = hash;
+
+        return true;
+    }
+
+    private boolean fieldEquals(int line, String field)
+    {
+        int position = this.lineStarts[line];
+        int colon = this.colons[line];
+
+        for (int i = 0; i < field.length(); i ++ )
+        {
+            char c = field.charAt(i);
+
+            if (c >= 0x80)
+            {
+                return decode(this.lineStarts[line], colon).equals(field);
+            }
+
+            if (position >= colon || this.content[position] != c)
+            {
+                return false;
+            }
+
+            position ++ ;
+        }
+
+        return position == colon;
+    }
+
+    private boolean sameField(int line, int other)
+    {
+        return Arrays.equals(this.content,
+                             this.lineStarts[line],
+                             this.colons[line],
+                             this.content,
+                             this.lineStarts[other],
+                             this.colons[other]);
+    }
+
+    private String decode(int start, int end)
+    {
+        return new String(this.content, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    private static int spread(int hash)
+    {
+        return (hash ^ (hash >>> 16)) * 0x9E3779B9;
+    }
+}
@@ -0,0 +1,83 @@
+package bt.prop;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A source of property values that can be used as a layer of {@link LayeredProperties}.
+ *
+ * @author &#8904
+ */
+public interface PropertySource
+{
+    /**
+     * Gets the current values of all fields of this source.
+     *
+     * @return
+     */
+    Map<String, String> getValues();
+
+    /**
+     * Adds a listener that is called whenever the values of this source change. Sources that can't detect changes
+     * ignore the listener, the default implementation does nothing.
+     *
+     * @param listener
+     */
+    default void addChangeListener(Runnable listener)
+    {
+    }
+
+    /**
+     * Removes a listener that was added via {@link #addChangeListener(Runnable)}. The default implementation does
+     * nothing.
+     *
+     * @param listener
+     * @return true if the listener was removed.
+     */
+    default boolean removeChangeListener(Runnable listener)
+    {
+        return false;
+    }
+
+    /**
+     * Creates a source that returns the current content of the given map. The map is read again whenever the values
+     * are requested.
+     *
+     * @param values
+     * @return
+     */
+    static PropertySource of(Map<String, String> values)
+    {
+        return () -> new HashMap<>(values);
+    }
+
+    /**
+     * Creates a source that returns the current {@link System#getProperties() system properties}.
+     *
+     * @return
+     */
+    static PropertySource systemProperties()
+    {
+        return () ->
+        {
+            Map<String, String> values = new HashMap<>();
+
+            for (String name : System.getProperties().stringPropertyNames())
+            {
+                values.put(name, System.getProperty(name));
+            }
+
+            return values;
+        };
+    }
+
+    /**
+     * Creates a source that returns the {@link System#getenv() environment variables}.
+     *
+     * @return
+     */
+    static PropertySource environment()
+    {
+        return () -> new HashMap<>(System.getenv());
+    }
+}
@@ -0,0 +1,163 @@
+package bt.prop;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Map;
+
+import bt.log.Log;
+import bt.scheduler.Threads;
+
+/**
+ * Watches the directories of {@link PropertyFile#watch() watched} property files with a single {@link WatchService}
+ * and informs the property files when they were created, modified or replaced.
+ *
+ * <p>
+ * The service and its daemon thread are started when the first file is watched.
+ * </p>
+ *
+ * @author &#8904
+ */
+final class PropertyWatcher
+{
+    private static PropertyWatcher instance;
+
+    private final WatchService watchService;
+    private final Map<Path, WatchKey> directories = new HashMap<>();
+    private final Map<Path, PropertyFile> files = new HashMap<>();
+
+    private PropertyWatcher() throws IOException
+    {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        Threads.get().executeDaemon(this::run, "PropertyWatcher");
+    }
+
+    /**
+     * Gets the watcher, starting it if necessary.
+     *
+     * @return
+     * @throws IOException
+     *             If the watch service could not be created.
+     */
+    static synchronized PropertyWatcher get() throws IOException
+    {
+        if (instance == null)
+        {
+            instance = new PropertyWatcher();
+        }
+
+        return instance;
+    }
+
+    /**
+     * Starts watching the given file.
+     *
+     * @param file
+     * @throws IOException
+     *             If the directory of the file could not be registered.
+     */
+    synchronized void watch(PropertyFile file) throws IOException
+    {
+        Path path = file.getFile().toPath();
+        Path directory = path.getParent();
+
+        if (!this.directories.containsKey(directory))
+        {
+            this.directories.put(directory,
+                                 directory.register(this.watchService,
+                                                    StandardWatchEventKinds.ENTRY_CREATE,
+                                                    StandardWatchEventKinds.ENTRY_MODIFY,
+                                                    StandardWatchEventKinds.ENTRY_DELETE));
+        }
+
+        this.files.put(path, file);
+    }
+
+    /**
+     * Stops watching the given file. The directory of the file is no longer watched once none of its files are.
+     *
+     * @param file
+     */
+    synchronized void unwatch(PropertyFile file)
+    {
+        Path path = file.getFile().toPath();
+        Path directory = path.getParent();
+
+        if (this.files.remove(path) != null && this.files.keySet().stream().noneMatch(p -> directory.equals(p.getParent())))
+        {
+            WatchKey key = this.directories.remove(directory);
+
+            if (key != null)
+            {
+                key.cancel();
+            }
+        }
+    }
+
+    private synchronized PropertyFile getFile(Path path)
+    {
+        return this.files.get(path);
+    }
+
+    private void run()
+    {
+        while (true)
+        {
+            WatchKey key;
+
+            try
+            {
+                key = this.watchService.take();
+            }
+            catch (InterruptedException | ClosedWatchServiceException e)
+            {
+                return;
+            }
+
+            Path directory = (Path)key.watchable();
+
+            for (WatchEvent<?> event : key.pollEvents())
+            {
+                try
+                {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                    {
+                        // events were lost, so every file in the directory might have changed
+                        for (PropertyFile file : filesIn(directory))
+                        {
+                            file.changeDetected();
+                        }
+                    }
+                    else
+                    {
+                        PropertyFile file = getFile(directory.resolve((Path)event.context()));
+
+                        if (file != null)
+                        {
+                            file.changeDetected();
+                        }
+                    }
+                }
+                catch (Exception e)
+                {
+                    Log.error("Failed to handle property file change", e);
+                }
+            }
+
+            key.reset();
+        }
+    }
+
+    private synchronized Iterable<PropertyFile> filesIn(Path directory)
+    {
+        Map<Path, PropertyFile> files = new HashMap<>(this.files);
+        files.keySet().removeIf(path -> !directory.equals(path.getParent()));
+        return files.values();
+    }
+}
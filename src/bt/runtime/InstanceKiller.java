@@ -1,14 +1,18 @@
 package bt.runtime;
 
 import bt.log.Log;
+import bt.scheduler.fact.DaemonThreadFactory;
 import bt.types.Killable;
 import bt.utils.Null;
 
-import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Map.Entry;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * Class to manage the closing of global resources such as databases and global loggers.
@@ -18,15 +22,43 @@ import java.util.concurrent.CopyOnWriteArrayList;
  * application should be terminated by calling {@link System#exit(int)} as this class simply uses a shutdown hook.
  * </p>
  *
+ * <p>
+ * Killables are killed in phases, one phase per priority, starting with the highest priority. All Killables of the
+ * same phase are killed concurrently, so the total shutdown time is roughly the sum of the slowest kill of each phase.
+ * Optionally a {@link #setPhaseTimeout(long, TimeUnit) per phase timeout} and a
+ * {@link #setShutdownTimeout(long, TimeUnit) global deadline} can be set, after which the InstanceKiller stops waiting
+ * for Killables that did not finish and reports them in the log.
+ * </p>
+ *
  * @author &#8904
  */
 public final class InstanceKiller
 {
-    private static List<Entry<Killable, Integer>> killables = new CopyOnWriteArrayList<>();
+    /**
+     * All current registrations, keyed by the identity of their Killable. Every registration carries its priority and
+     * sequence number, so the phases are only built once at shutdown and registering does not have to maintain a
+     * sorted structure.
+     */
+    private static final Map<IdentityKey, Registration> registrations = new ConcurrentHashMap<>();
+
+    /** The source of registration sequence numbers. */
+    private static final AtomicLong sequence = new AtomicLong();
 
     private volatile static boolean isActive;
     private static boolean logActivity = true;
 
+    /** The maximum time in nanoseconds to wait for a single phase or 0 for no limit. */
+    private static volatile long phaseTimeout;
+
+    /** The maximum time in nanoseconds to wait for all phases or 0 for no limit. */
+    private static volatile long shutdownTimeout;
+
+    /** Indicates whether a Java Flight Recorder event should be recorded for every kill call. */
+    private static volatile boolean recordEvents;
+
+    /** The report of the last shutdown or null. */
+    private static volatile ShutdownReport lastReport;
+
     static
     {
         Runtime.getRuntime().addShutdownHook(new Thread(() ->
@@ -56,29 +88,294 @@ public final class InstanceKiller
         InstanceKiller.logActivity = log;
     }
 
+    /**
+     * Sets the maximum time to wait for all Killables of the same priority to finish.
+     *
+     * <p>
+     * If a Killable takes longer, the InstanceKiller logs it and continues with the next phase while the kill operation
+     * keeps running in a daemon thread.
+     * </p>
+     *
+     * @param timeout The timeout or 0 for no limit, which is the default.
+     * @param unit    The unit of the timeout.
+     */
+    public static void setPhaseTimeout(long timeout, TimeUnit unit)
+    {
+        InstanceKiller.phaseTimeout = unit.toNanos(timeout);
+    }
+
+    /**
+     * Sets the maximum time to wait for all registered Killables to finish.
+     *
+     * <p>
+     * Once this deadline is exceeded, the InstanceKiller stops waiting for the current phase, does not start any further
+     * phases and logs all Killables that were not killed in time.
+     * </p>
+     *
+     * @param timeout The timeout or 0 for no limit, which is the default.
+     * @param unit    The unit of the timeout.
+     */
+    public static void setShutdownTimeout(long timeout, TimeUnit unit)
+    {
+        InstanceKiller.shutdownTimeout = unit.toNanos(timeout);
+    }
+
+    /**
+     * Indicates whether a Java Flight Recorder event named <i>bt.runtime.Kill</i> should be recorded for every kill call,
+     * containing the type and priority of the Killable and the duration of the call.
+     *
+     * <p>
+     * The events are only written if a flight recording is active during shutdown. This requires the jdk.jfr module.
+     * </p>
+     *
+     * @param record true to record events. Disabled by default.
+     */
+    public static void recordEvents(boolean record)
+    {
+        InstanceKiller.recordEvents = record;
+    }
+
+    /**
+     * Gets the timing report of the last time that the InstanceKiller killed all registered instances.
+     *
+     * <p>
+     * The report is also written to the log when the shutdown is finished.
+     * </p>
+     *
+     * @return The report or null if no instances were killed yet.
+     */
+    public static ShutdownReport getLastReport()
+    {
+        return InstanceKiller.lastReport;
+    }
+
     /**
      * Calls the kill() method of every registered Killable.
      */
     private static void kill()
     {
         Thread.currentThread().setName("INSTANCE_KILLER");
-        if (InstanceKiller.killables.size() > 0)
+        int count = InstanceKiller.registrations.size();
+
+        if (count > 0)
         {
             InstanceKiller.isActive = true;
 
-            Log.debug("Killing " + InstanceKiller.killables.size() + (InstanceKiller.killables.size() > 1 ? " instances." : " instance."));
-            InstanceKiller.killables.sort(Comparator.comparing(Entry::getValue,
-                                                               Comparator.reverseOrder()));
+            Log.debug("Killing " + count + (count > 1 ? " instances." : " instance."));
+
+            long start = System.nanoTime();
+            long deadline = InstanceKiller.shutdownTimeout > 0 ? start + InstanceKiller.shutdownTimeout : Long.MAX_VALUE;
+            ExecutorService executor = Executors.newCachedThreadPool(new DaemonThreadFactory());
+            var report = new ShutdownReport();
 
-            for (Entry<Killable, Integer> killable : InstanceKiller.killables)
+            for (var phase : InstanceKiller.phases().entrySet())
             {
-                Null.checkKill(killable.getKey());
+                var killables = phase.getValue();
+
+                if (System.nanoTime() - deadline >= 0)
+                {
+                    Log.info("Shutdown deadline exceeded. Skipping " + describe(killables) + " with a priority of " + phase.getKey() + ".");
+
+                    for (Killable killable : killables)
+                    {
+                        report.add(new KillRecord(typeOf(killable), phase.getKey(), 0, KillRecord.State.SKIPPED));
+                    }
+
+                    continue;
+                }
+
+                InstanceKiller.killPhase(phase.getKey(), killables, executor, deadline, report);
             }
 
+            executor.shutdown();
+            report.setTotalNanos(System.nanoTime() - start);
+            InstanceKiller.lastReport = report;
+            Log.info(report.toString());
             InstanceKiller.isActive = false;
         }
     }
 
+    /**
+     * Groups the current registrations by priority, highest first, and orders them by registration within each
+     * priority.
+     *
+     * @return
+     */
+    private static Map<Integer, List<Killable>> phases()
+    {
+        var registrations = new ArrayList<>(InstanceKiller.registrations.values());
+        registrations.sort(Comparator.comparingLong(registration -> registration.sequence));
+
+        var phases = new TreeMap<Integer, List<Killable>>(Comparator.reverseOrder());
+
+        for (Registration registration : registrations)
+        {
+            // there is nothing to kill for a registered null, and it would otherwise fail the logging of the phase
+            if (registration.killable == null)
+            {
+                continue;
+            }
+
+            phases.computeIfAbsent(registration.priority, priority -> new ArrayList<>()).add(registration.killable);
+        }
+
+        return phases;
+    }
+
+    /**
+     * Kills all given Killables concurrently and waits for them until they are done, the phase timeout has passed or
+     * the given deadline is reached. The duration of every kill call and of the whole phase is added to the given
+     * report.
+     *
+     * @param priority  The priority of the given Killables.
+     * @param killables The Killables to kill.
+     * @param executor  The executor to run the kill operations.
+     * @param deadline  The {@link System#nanoTime()} after which no longer to wait or {@link Long#MAX_VALUE} for no
+     *                  deadline.
+     * @param report    The report to add the timings to.
+     */
+    private static void killPhase(int priority, List<Killable> killables, ExecutorService executor, long deadline, ShutdownReport report)
+    {
+        long phaseStart = System.nanoTime();
+        boolean events = InstanceKiller.recordEvents;
+
+        // duration of each kill call, -1 while it is still running
+        var durations = new AtomicLongArray(killables.size());
+        var futures = new ArrayList<Future<?>>(killables.size());
+
+        for (int i = 0; i < killables.size(); i ++ )
+        {
+            int index = i;
+            Killable killable = killables.get(i);
+            durations.set(index, -1);
+
+            futures.add(executor.submit(() ->
+                                        {
+                                            KillEvent event = events && killable != null ? KillEvent.begin(killable, priority) : null;
+                                            long start = System.nanoTime();
+                                            boolean failed = true;
+
+                                            try
+                                            {
+                                                Null.checkKill(killable);
+                                                failed = false;
+                                            }
+                                            finally
+                                            {
+                                                durations.set(index, System.nanoTime() - start);
+
+                                                if (event != null)
+                                                {
+                                                    event.end(failed);
+                                                }
+                                            }
+                                        }));
+        }
+
+        long phaseEnd = deadline;
+
+        if (InstanceKiller.phaseTimeout > 0)
+        {
+            long phaseDeadline = System.nanoTime() + InstanceKiller.phaseTimeout;
+
+            // compare via subtraction to stay correct if nanoTime overflows
+            if (deadline == Long.MAX_VALUE || phaseDeadline - deadline < 0)
+            {
+                phaseEnd = phaseDeadline;
+            }
+        }
+
+        var overrun = new ArrayList<Killable>();
+        var states = new KillRecord.State[killables.size()];
+        boolean interrupted = false;
+
+        for (int i = 0; i < futures.size(); i ++ )
+        {
+            states[i] = KillRecord.State.COMPLETED;
+
+            try
+            {
+                if (interrupted)
+                {
+                    throw new TimeoutException();
+                }
+                else if (phaseEnd == Long.MAX_VALUE)
+                {
+                    futures.get(i).get();
+                }
+                else
+                {
+                    futures.get(i).get(Math.max(0, phaseEnd - System.nanoTime()), TimeUnit.NANOSECONDS);
+                }
+            }
+            catch (TimeoutException e)
+            {
+                states[i] = KillRecord.State.TIMED_OUT;
+                overrun.add(killables.get(i));
+            }
+            catch (ExecutionException e)
+            {
+                states[i] = KillRecord.State.FAILED;
+                Log.error("Failed to kill instance of type " + typeOf(killables.get(i)), e);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                interrupted = true;
+                states[i] = KillRecord.State.TIMED_OUT;
+                overrun.add(killables.get(i));
+            }
+        }
+
+        long phaseNanos = System.nanoTime() - phaseStart;
+
+        for (int i = 0; i < killables.size(); i ++ )
+        {
+            long nanos = durations.get(i);
+
+            report.add(new KillRecord(typeOf(killables.get(i)),
+                                      priority,
+                                      nanos < 0 ? phaseNanos : nanos,
+                                      states[i]));
+        }
+
+        report.setPhaseNanos(priority, phaseNanos);
+
+        if (!overrun.isEmpty())
+        {
+            Log.info("Stopped waiting for " + describe(overrun) + " with a priority of " + priority + " after the timeout was exceeded.");
+        }
+    }
+
+    /**
+     * Creates a readable list of the types of the given Killables for logging.
+     *
+     * @param killables
+     * @return
+     */
+    private static String describe(List<Killable> killables)
+    {
+        var types = new ArrayList<String>(killables.size());
+
+        for (Killable killable : killables)
+        {
+            types.add(typeOf(killable));
+        }
+
+        return (killables.size() > 1 ? "instances of types " : "instance of type ") + String.join(", ", types);
+    }
+
+    /**
+     * Gets the name of the type of the given Killable for logs and reports.
+     *
+     * @param killable
+     * @return The class name or "null".
+     */
+    private static String typeOf(Killable killable)
+    {
+        return killable == null ? "null" : killable.getClass().getName();
+    }
+
     /**
      * Registers the given Killable to be killed upon application termination. The killable will only be added if it is
      * not already registered.
@@ -96,7 +393,7 @@ public final class InstanceKiller
      *
      * @param killable The instance that should be killed on application exit.
      */
-    public static synchronized void killOnShutdown(Killable killable)
+    public static void killOnShutdown(Killable killable)
     {
         InstanceKiller.killOnShutdown(killable, Integer.MIN_VALUE + 1);
     }
@@ -108,8 +405,10 @@ public final class InstanceKiller
      * {@link #unregister(Killable) unregister} and re-add it via this method.
      *
      * <p>
-     * There is no guarantee that instances with the same priority which were added via this method will be killed in
-     * the order of registration.
+     * Instances with the same priority are killed concurrently, in the order of their registration. Registration and
+     * unregistration are a single update of a concurrent hash map and take no global lock, the registrations are only
+     * sorted into phases once at shutdown. Instances are identified by identity, not by
+     * {@link Object#equals(Object) equals}.
      * </p>
      *
      * <p>
@@ -121,16 +420,14 @@ public final class InstanceKiller
      * @param priority An arbitrary number which determines the order of termination. The higher the priority, the earlier
      *                 the instance will be killed.
      */
-    public static synchronized void killOnShutdown(Killable killable, int priority)
+    public static void killOnShutdown(Killable killable, int priority)
     {
-        if (!InstanceKiller.isRegistered(killable))
-        {
-            InstanceKiller.killables.add(new SimpleEntry<>(killable, priority));
+        var registration = new Registration(killable, priority, InstanceKiller.sequence.incrementAndGet());
 
-            if (InstanceKiller.logActivity)
-            {
-                Log.debug("Registered type " + killable.getClass().getName() + " for killing with a priority of " + priority + ".");
-            }
+        if (InstanceKiller.registrations.putIfAbsent(new IdentityKey(killable), registration) == null
+            && InstanceKiller.logActivity)
+        {
+            Log.debug("Registered type " + typeOf(killable) + " for killing with a priority of " + priority + ".");
         }
     }
 
@@ -140,13 +437,11 @@ public final class InstanceKiller
      *
      * @param killable The killable to unregister.
      */
-    public static synchronized void unregister(Killable killable)
+    public static void unregister(Killable killable)
     {
-        boolean removed = InstanceKiller.killables.removeIf(k -> k.getKey().equals(killable));
-
-        if (removed && InstanceKiller.logActivity)
+        if (InstanceKiller.registrations.remove(new IdentityKey(killable)) != null && InstanceKiller.logActivity)
         {
-            Log.debug("Unregistered type " + killable.getClass().getName() + " from killing.");
+            Log.debug("Unregistered type " + typeOf(killable) + " from killing.");
         }
     }
 
@@ -157,8 +452,50 @@ public final class InstanceKiller
      *
      * @return true if the killable is already registered.
      */
-    public static synchronized boolean isRegistered(Killable killable)
+    public static boolean isRegistered(Killable killable)
+    {
+        return InstanceKiller.registrations.containsKey(new IdentityKey(killable));
+    }
+
+    /**
+     * A map key that compares the wrapped Killable by identity.
+     */
+    private static final class IdentityKey
     {
-        return InstanceKiller.killables.stream().anyMatch(k -> k.getKey().equals(killable));
+        private final Killable killable;
+
+        private IdentityKey(Killable killable)
+        {
+            this.killable = killable;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return System.identityHashCode(this.killable);
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            return obj instanceof IdentityKey && ((IdentityKey)obj).killable == this.killable;
+        }
+    }
+
+    /**
+     * A registered Killable together with its priority and registration sequence number.
+     */
+    private static final class Registration
+    {
+        private final Killable killable;
+        private final int priority;
+        private final long sequence;
+
+        private Registration(Killable killable, int priority, long sequence)
+        {
+            this.killable = killable;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
     }
 }
\ No newline at end of file
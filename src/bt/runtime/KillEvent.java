@@ -0,0 +1,62 @@
+package bt.runtime;
+
+import bt.types.Killable;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for a single {@link Killable#kill() kill} call during shutdown.
+ *
+ * <p>
+ * Only used if {@link InstanceKiller#recordEvents(boolean)} is enabled, so that this class and the jdk.jfr module are
+ * not loaded otherwise.
+ * </p>
+ *
+ * @author &#8904
+ */
+@Name("bt.runtime.Kill")
+@Label("Kill")
+@Category({"BtCommons", "Shutdown"})
+@Description("A Killable being killed by the InstanceKiller")
+class KillEvent extends Event
+{
+    @Label("Type")
+    String type;
+
+    @Label("Priority")
+    int priority;
+
+    @Label("Failed")
+    boolean failed;
+
+    /**
+     * Creates and begins a new event for the given Killable.
+     *
+     * @param killable
+     * @param priority
+     *
+     * @return The started event.
+     */
+    static KillEvent begin(Killable killable, int priority)
+    {
+        var event = new KillEvent();
+        event.type = killable.getClass().getName();
+        event.priority = priority;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends and commits this event.
+     *
+     * @param failed Whether the kill call threw an exception.
+     */
+    void end(boolean failed)
+    {
+        this.failed = failed;
+        commit();
+    }
+}
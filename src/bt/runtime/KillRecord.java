@@ -0,0 +1,100 @@
+package bt.runtime;
+
+/**
+ * The timing of a single {@link bt.types.Killable#kill() kill} call during shutdown, as collected by the
+ * {@link InstanceKiller}.
+ *
+ * @author &#8904
+ */
+public class KillRecord
+{
+    /**
+     * The outcome of a kill call.
+     */
+    public enum State
+    {
+        /** The kill call finished normally. */
+        COMPLETED,
+
+        /** The kill call threw an exception. */
+        FAILED,
+
+        /** The InstanceKiller stopped waiting for the kill call because a timeout was exceeded. */
+        TIMED_OUT,
+
+        /** The kill method was not called because the shutdown deadline was exceeded before its phase. */
+        SKIPPED
+    }
+
+    private final String type;
+    private final int priority;
+    private final long nanos;
+    private final State state;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param type     The class name of the Killable.
+     * @param priority The priority that the Killable was registered with.
+     * @param nanos    The duration of the kill call. For timed out calls this is the time until the InstanceKiller
+     *                 stopped waiting.
+     * @param state    The outcome of the kill call.
+     */
+    KillRecord(String type, int priority, long nanos, State state)
+    {
+        this.type = type;
+        this.priority = priority;
+        this.nanos = nanos;
+        this.state = state;
+    }
+
+    /**
+     * Gets the class name of the Killable.
+     *
+     * @return
+     */
+    public String getType()
+    {
+        return this.type;
+    }
+
+    /**
+     * Gets the priority that the Killable was registered with.
+     *
+     * @return
+     */
+    public int getPriority()
+    {
+        return this.priority;
+    }
+
+    /**
+     * Gets the duration of the kill call in nanoseconds. For {@link State#TIMED_OUT timed out} calls this is the time
+     * until the InstanceKiller stopped waiting, so the actual duration is longer.
+     *
+     * @return
+     */
+    public long getNanos()
+    {
+        return this.nanos;
+    }
+
+    /**
+     * Gets the outcome of the kill call.
+     *
+     * @return
+     */
+    public State getState()
+    {
+        return this.state;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString()
+    {
+        return this.type + " [priority " + this.priority + "]: " + (this.nanos / 1_000_000) + " ms, " + this.state;
+    }
+}
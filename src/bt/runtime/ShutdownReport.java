@@ -0,0 +1,147 @@
+package bt.runtime;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A report of the time spent on killing all registered {@link bt.types.Killable}s during shutdown.
+ *
+ * <p>
+ * The report contains one {@link KillRecord} per Killable and the wall clock time of each priority phase. Since all
+ * Killables of a phase are killed concurrently, a phase takes as long as its slowest Killable.
+ * </p>
+ *
+ * @author &#8904
+ */
+public class ShutdownReport
+{
+    private final List<KillRecord> records;
+    private final Map<Integer, Long> phaseNanos;
+    private long totalNanos;
+
+    /**
+     * Creates a new empty report.
+     */
+    ShutdownReport()
+    {
+        this.records = new ArrayList<>();
+        this.phaseNanos = new LinkedHashMap<>();
+    }
+
+    /**
+     * Adds the given record.
+     *
+     * @param record
+     */
+    void add(KillRecord record)
+    {
+        this.records.add(record);
+    }
+
+    /**
+     * Sets the wall clock time of the phase with the given priority.
+     *
+     * @param priority
+     * @param nanos
+     */
+    void setPhaseNanos(int priority, long nanos)
+    {
+        this.phaseNanos.put(priority, nanos);
+    }
+
+    /**
+     * Sets the wall clock time of the whole shutdown.
+     *
+     * @param nanos
+     */
+    void setTotalNanos(long nanos)
+    {
+        this.totalNanos = nanos;
+    }
+
+    /**
+     * Gets the records of all Killables in the order they were killed.
+     *
+     * @return An unmodifiable list.
+     */
+    public List<KillRecord> getRecords()
+    {
+        return Collections.unmodifiableList(this.records);
+    }
+
+    /**
+     * Gets the wall clock time of each phase in nanoseconds.
+     *
+     * @return An unmodifiable map of priority to time, ordered from the first to the last phase.
+     */
+    public Map<Integer, Long> getPhaseNanos()
+    {
+        return Collections.unmodifiableMap(this.phaseNanos);
+    }
+
+    /**
+     * Gets the wall clock time of the whole shutdown in nanoseconds.
+     *
+     * @return
+     */
+    public long getTotalNanos()
+    {
+        return this.totalNanos;
+    }
+
+    /**
+     * Gets the records of the Killables with the longest kill calls, slowest first.
+     *
+     * @param count The maximum number of records to return.
+     *
+     * @return
+     */
+    public List<KillRecord> getSlowest(int count)
+    {
+        var list = new ArrayList<>(this.records);
+        list.sort(Comparator.comparingLong(KillRecord::getNanos).reversed());
+        return list.subList(0, Math.min(count, list.size()));
+    }
+
+    /**
+     * Formats this report with one line per phase followed by one indented line per Killable of that phase. Phases that
+     * were skipped because the shutdown deadline was exceeded have no timing and are marked as skipped.
+     *
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString()
+    {
+        var phases = new LinkedHashMap<Integer, List<KillRecord>>();
+
+        for (var record : this.records)
+        {
+            phases.computeIfAbsent(record.getPriority(), p -> new ArrayList<>()).add(record);
+        }
+
+        var sb = new StringBuilder();
+        sb.append("Shutdown took ").append(this.totalNanos / 1_000_000).append(" ms.");
+
+        for (var phase : phases.entrySet())
+        {
+            Long nanos = this.phaseNanos.get(phase.getKey());
+
+            sb.append(System.lineSeparator())
+              .append("Priority ").append(phase.getKey()).append(": ")
+              .append(nanos == null ? "skipped" : nanos / 1_000_000 + " ms");
+
+            for (var record : phase.getValue())
+            {
+                sb.append(System.lineSeparator())
+                  .append("    ").append(record.getType())
+                  .append(": ").append(record.getNanos() / 1_000_000).append(" ms, ").append(record.getState());
+            }
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,277 @@
+package bt.runtime.evnt;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import bt.log.Log;
+
+/**
+ * A consumer that queues all received data in a bounded queue and passes it to a wrapped consumer on a thread of the
+ * given {@link Executor}.
+ *
+ * <p>
+ * Data is always passed to the wrapped consumer in the order it was received and never concurrently, so the wrapped
+ * consumer does not need to be thread safe. At most one task is submitted to the executor at a time, which drains the
+ * queue until it is empty. An executor of the {@link bt.scheduler.Threads Threads} pools can be used via a method
+ * reference, i.e. <code>Threads.get()::executeCachedDaemon</code>.
+ * </p>
+ *
+ * <p>
+ * Exceptions thrown by the wrapped consumer are passed to the {@link DispatchErrorHandler} of the {@link Dispatcher}
+ * that created this instance. If there is no handler, or if the handler throws itself, the exception is logged,
+ * since there is no caller that it could be passed on to.
+ * </p>
+ *
+ * @author &#8904
+ * @param <T>
+ *            The type of data that this consumer receives.
+ */
+public class AsyncConsumer<T> implements Consumer<T>
+{
+    /** The consumer that the queued data is passed to. */
+    private final Consumer<T> consumer;
+
+    /** The executor that runs the draining task. */
+    private final Executor executor;
+
+    /** The queued data. */
+    private final BlockingQueue<T> queue;
+
+    /** The maximum number of queued data elements. */
+    private final int capacity;
+
+    /** The policy to apply when the queue is full. */
+    private final OverflowPolicy overflowPolicy;
+
+    /** Indicates whether a draining task is currently submitted or running. */
+    private final AtomicBoolean scheduled;
+
+    /** The number of discarded data elements. */
+    private final AtomicLong dropCount;
+
+    /** Supplies the current handler for exceptions of the wrapped consumer. */
+    private final Supplier<DispatchErrorHandler> errorHandler;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param consumer
+     *            The consumer that the queued data is passed to.
+     * @param executor
+     *            The executor that runs the wrapped consumer.
+     * @param capacity
+     *            The maximum number of queued data elements.
+     * @param overflowPolicy
+     *            The policy to apply when the queue is full.
+     */
+    public AsyncConsumer(Consumer<T> consumer, Executor executor, int capacity, OverflowPolicy overflowPolicy)
+    {
+        this(consumer, executor, capacity, overflowPolicy, () -> null);
+    }
+
+    /**
+     * Creates a new instance whichs exceptions are passed to the error handler returned by the given supplier.
+     *
+     * @param consumer
+     *            The consumer that the queued data is passed to.
+     * @param executor
+     *            The executor that runs the wrapped consumer.
+     * @param capacity
+     *            The maximum number of queued data elements.
+     * @param overflowPolicy
+     *            The policy to apply when the queue is full.
+     * @param errorHandler
+     *            Supplies the current error handler, which may be null.
+     */
+    AsyncConsumer(Consumer<T> consumer, Executor executor, int capacity, OverflowPolicy overflowPolicy,
+                  Supplier<DispatchErrorHandler> errorHandler)
+    {
+        this.consumer = consumer;
+        this.executor = executor;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.scheduled = new AtomicBoolean(false);
+        this.dropCount = new AtomicLong(0);
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Queues the given data and makes sure that a draining task is submitted to the executor.
+     *
+     * <p>
+     * This method only blocks if the queue is full and the overflow policy is {@link OverflowPolicy#BLOCK BLOCK}.
+     * If the executor rejects the draining task, the exception is passed on and the data stays queued until the next
+     * call of this method submits a new task.
+     * </p>
+     *
+     * @see java.util.function.Consumer#accept(java.lang.Object)
+     */
+    @Override
+    public void accept(T data)
+    {
+        if (!this.queue.offer(data))
+        {
+            switch (this.overflowPolicy)
+            {
+                case BLOCK:
+                    try
+                    {
+                        this.queue.put(data);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                        this.dropCount.incrementAndGet();
+                        return;
+                    }
+                    break;
+                case DROP:
+                    this.dropCount.incrementAndGet();
+                    return;
+                case DROP_OLDEST:
+                    while (!this.queue.offer(data))
+                    {
+                        if (this.queue.poll() != null)
+                        {
+                            this.dropCount.incrementAndGet();
+                        }
+                    }
+                    break;
+            }
+        }
+
+        schedule();
+    }
+
+    /**
+     * Submits a draining task to the executor if none is currently submitted or running.
+     */
+    private void schedule()
+    {
+        if (this.scheduled.compareAndSet(false, true))
+        {
+            try
+            {
+                this.executor.execute(this::drain);
+            }
+            catch (RuntimeException | Error e)
+            {
+                // the task will never run, so the next call has to submit a new one
+                this.scheduled.set(false);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Passes all queued data to the wrapped consumer until the queue is empty.
+     *
+     * <p>
+     * Data that is queued after the last poll but before the task gave up its flag is drained by the same task in
+     * another round, instead of submitting a new task from within this one, which would recurse on an executor that
+     * runs tasks on the calling thread.
+     * </p>
+     */
+    private void drain()
+    {
+        do
+        {
+            try
+            {
+                T data;
+
+                while ((data = this.queue.poll()) != null)
+                {
+                    try
+                    {
+                        this.consumer.accept(data);
+                    }
+                    catch (RuntimeException e)
+                    {
+                        handleError(data, e);
+                    }
+                }
+            }
+            finally
+            {
+                // reset even if an Error escapes, otherwise no task would ever be submitted again
+                this.scheduled.set(false);
+            }
+        }
+        while (!this.queue.isEmpty() && this.scheduled.compareAndSet(false, true));
+    }
+
+    /**
+     * Passes the given exception to the current error handler or logs it if there is none.
+     *
+     * @param data
+     *            The data that the wrapped consumer failed on.
+     * @param e
+     */
+    private void handleError(T data, RuntimeException e)
+    {
+        DispatchErrorHandler errorHandler = this.errorHandler.get();
+
+        if (errorHandler == null)
+        {
+            Log.error("Failed to dispatch data asynchronously", e);
+            return;
+        }
+
+        try
+        {
+            errorHandler.handle(data, this.consumer, e);
+        }
+        catch (RuntimeException handlerException)
+        {
+            handlerException.addSuppressed(e);
+            Log.error("Failed to handle exception of asynchronous dispatch", handlerException);
+        }
+    }
+
+    /**
+     * Gets the number of data elements that are currently queued.
+     *
+     * @return The current queue depth.
+     */
+    public int getQueueSize()
+    {
+        return this.queue.size();
+    }
+
+    /**
+     * Gets the maximum number of data elements that can be queued.
+     *
+     * @return The queue capacity.
+     */
+    public int getCapacity()
+    {
+        return this.capacity;
+    }
+
+    /**
+     * Gets the number of data elements that were discarded because the queue was full.
+     *
+     * @return The number of dropped elements.
+     */
+    public long getDropCount()
+    {
+        return this.dropCount.get();
+    }
+
+    /**
+     * Gets the policy that is applied when the queue is full.
+     *
+     * @return The overflow policy.
+     */
+    public OverflowPolicy getOverflowPolicy()
+    {
+        return this.overflowPolicy;
+    }
+}
@@ -0,0 +1,40 @@
+package bt.runtime.evnt;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A consumer that can receive multiple data elements at once.
+ *
+ * <p>
+ * If a subscriber of a {@link Dispatcher} implements this interface, {@link Dispatcher#dispatchAll(java.util.Collection)
+ * dispatchAll} passes all elements of a batch that belong to the same class in a single call to
+ * {@link #acceptAll(List)} instead of calling {@link #accept(Object)} for each of them.
+ * </p>
+ *
+ * @author &#8904
+ * @param <T>
+ *            The type of data that this consumer receives.
+ */
+public interface BatchConsumer<T> extends Consumer<T>
+{
+    /**
+     * Performs this operation on all given data elements.
+     *
+     * @param batch
+     *            An unmodifiable list of the data elements in the order they were dispatched.
+     */
+    public void acceptAll(List<T> batch);
+
+    /**
+     * Passes the given single data element to {@link #acceptAll(List)}.
+     *
+     * @see java.util.function.Consumer#accept(java.lang.Object)
+     */
+    @Override
+    public default void accept(T data)
+    {
+        acceptAll(Collections.singletonList(data));
+    }
+}
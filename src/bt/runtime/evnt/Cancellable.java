@@ -0,0 +1,27 @@
+package bt.runtime.evnt;
+
+/**
+ * An optional contract for dispatched data whichs propagation can be stopped by a subscriber.
+ *
+ * <p>
+ * If data that implements this interface is {@link #cancel() cancelled} by a subscriber, {@link Dispatcher} and
+ * {@link SubDispatcher} will not pass it to any further subscribers. Combined with subscriber priorities this allows
+ * cheap filtering subscribers to run first and spare the expensive low priority ones from unnecessary work.
+ * </p>
+ *
+ * @author &#8904
+ */
+public interface Cancellable
+{
+    /**
+     * Stops the propagation of this instance to further subscribers.
+     */
+    public void cancel();
+
+    /**
+     * Indicates whether this instance was {@link #cancel() cancelled}.
+     *
+     * @return true if no further subscribers should receive this instance.
+     */
+    public boolean isCancelled();
+}
@@ -0,0 +1,62 @@
+package bt.runtime.evnt;
+
+import java.util.function.Consumer;
+
+/**
+ * A failed delivery of data to a subscriber, as kept by a {@link DeadLetterQueue}.
+ *
+ * @author &#8904
+ */
+public class DeadLetter
+{
+    private final Object data;
+    private final Consumer<?> subscriber;
+    private final RuntimeException exception;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param data
+     *            The data that could not be delivered.
+     * @param subscriber
+     *            The subscriber that failed.
+     * @param exception
+     *            The thrown exception.
+     */
+    public DeadLetter(Object data, Consumer<?> subscriber, RuntimeException exception)
+    {
+        this.data = data;
+        this.subscriber = subscriber;
+        this.exception = exception;
+    }
+
+    /**
+     * Gets the data that could not be delivered.
+     *
+     * @return
+     */
+    public Object getData()
+    {
+        return this.data;
+    }
+
+    /**
+     * Gets the subscriber that failed.
+     *
+     * @return
+     */
+    public Consumer<?> getSubscriber()
+    {
+        return this.subscriber;
+    }
+
+    /**
+     * Gets the thrown exception.
+     *
+     * @return
+     */
+    public RuntimeException getException()
+    {
+        return this.exception;
+    }
+}
@@ -0,0 +1,100 @@
+package bt.runtime.evnt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A {@link DispatchErrorHandler} that keeps all failed deliveries in a bounded queue.
+ *
+ * <p>
+ * If the queue is full, the oldest {@link DeadLetter} is discarded to make space for the new one.
+ * </p>
+ *
+ * @author &#8904
+ */
+public class DeadLetterQueue implements DispatchErrorHandler
+{
+    /** The kept failed deliveries. */
+    private final BlockingQueue<DeadLetter> queue;
+
+    /** The number of discarded dead letters. */
+    private final AtomicLong dropCount;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param capacity
+     *            The maximum number of kept dead letters.
+     */
+    public DeadLetterQueue(int capacity)
+    {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.dropCount = new AtomicLong(0);
+    }
+
+    /**
+     * Adds a new {@link DeadLetter} for the given failed delivery.
+     *
+     * @see bt.runtime.evnt.DispatchErrorHandler#handle(java.lang.Object, java.util.function.Consumer,
+     *      java.lang.RuntimeException)
+     */
+    @Override
+    public void handle(Object data, Consumer<?> subscriber, RuntimeException e)
+    {
+        var letter = new DeadLetter(data, subscriber, e);
+
+        while (!this.queue.offer(letter))
+        {
+            if (this.queue.poll() != null)
+            {
+                this.dropCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Removes and returns the oldest dead letter.
+     *
+     * @return The oldest dead letter or null if the queue is empty.
+     */
+    public DeadLetter poll()
+    {
+        return this.queue.poll();
+    }
+
+    /**
+     * Removes and returns all dead letters, oldest first.
+     *
+     * @return
+     */
+    public List<DeadLetter> drain()
+    {
+        var list = new ArrayList<DeadLetter>(this.queue.size());
+        this.queue.drainTo(list);
+        return list;
+    }
+
+    /**
+     * Gets the number of currently kept dead letters.
+     *
+     * @return
+     */
+    public int size()
+    {
+        return this.queue.size();
+    }
+
+    /**
+     * Gets the number of dead letters that were discarded because the queue was full.
+     *
+     * @return
+     */
+    public long getDropCount()
+    {
+        return this.dropCount.get();
+    }
+}
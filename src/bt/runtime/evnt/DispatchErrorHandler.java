@@ -0,0 +1,38 @@
+package bt.runtime.evnt;
+
+import java.util.function.Consumer;
+
+/**
+ * Handles exceptions that are thrown by subscribers of a {@link Dispatcher}.
+ *
+ * <p>
+ * If a handler is {@link Dispatcher#setErrorHandler(DispatchErrorHandler) set}, a failing subscriber no longer stops
+ * the dispatching. The exception is passed to the handler and the remaining subscribers still receive the data. A
+ * {@link DeadLetterQueue} can be used to keep failed deliveries for later inspection, and a lambda like
+ * <code>(data, subscriber, e) -&gt; Log.error("Failed to dispatch " + data, e)</code> simply reports them.
+ * </p>
+ *
+ * @author &#8904
+ */
+@FunctionalInterface
+public interface DispatchErrorHandler
+{
+    /**
+     * Handles the given exception.
+     *
+     * <p>
+     * Exceptions thrown by this method are passed on to the caller of the dispatch method.
+     * </p>
+     *
+     * @param data
+     *            The dispatched data, or the list of data if the subscriber failed during batch dispatching.
+     * @param subscriber
+     *            The subscriber that threw the exception. {@link Runnable} subscribers are wrapped in a Consumer. If
+     *            the key extractor of {@link Dispatcher#subscribeTo(Class, java.util.function.Function, Object, Consumer)
+     *            keyed subscriptions} threw, this is a Consumer that applies the key extractor and none of the keyed
+     *            subscribers that share it received the data.
+     * @param e
+     *            The thrown exception.
+     */
+    public void handle(Object data, Consumer<?> subscriber, RuntimeException e);
+}
@@ -0,0 +1,249 @@
+package bt.runtime.evnt;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the number of dispatched data elements per type and the invocation statistics of all subscribers of a
+ * {@link Dispatcher}.
+ *
+ * <p>
+ * Instances are created via {@link Dispatcher#enableStatistics(int)}. To keep the overhead low, the time of a subscriber
+ * invocation is only measured for roughly one in every <i>sampleRate</i> invocations. For {@link AsyncConsumer
+ * asynchronous} subscribers only the time to queue the data is measured.
+ * </p>
+ *
+ * @author &#8904
+ */
+public class DispatchStatistics
+{
+    /** Roughly one in this many invocations is measured. */
+    private final int sampleRate;
+
+    /** A map of dispatched data class to the number of dispatched elements. */
+    private final Map<Class<?>, LongAdder> dispatchCounts;
+
+    /**
+     * A map of subscriber handle to its statistics. Handles are removed when they are unsubscribed, so that the
+     * statistics don't keep them reachable.
+     */
+    private final Map<Subscriber<?>, SubscriberStatistics> subscribers;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param sampleRate
+     *            Roughly one in this many invocations is measured. A value of 1 measures every invocation.
+     */
+    DispatchStatistics(int sampleRate)
+    {
+        this.sampleRate = Math.max(1, sampleRate);
+        this.dispatchCounts = new ConcurrentHashMap<>();
+        this.subscribers = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Records that the given number of data elements of the given class were dispatched.
+     *
+     * @param type
+     * @param count
+     */
+    void recordDispatch(Class<?> type, int count)
+    {
+        this.dispatchCounts.computeIfAbsent(type, t -> new LongAdder()).add(count);
+    }
+
+    /**
+     * Passes the given data to the given subscriber and records the invocation.
+     *
+     * @param subscriber
+     * @param type
+     *            The type that the subscriber is subscribed to.
+     * @param data
+     */
+    <T> void invoke(Subscriber<T> subscriber, Class<?> type, T data)
+    {
+        var statistics = getStatistics(subscriber, type);
+
+        try
+        {
+            if (isSampled())
+            {
+                long start = System.nanoTime();
+                subscriber.dispatch(data);
+                statistics.recordSample(System.nanoTime() - start);
+            }
+            else
+            {
+                subscriber.dispatch(data);
+                statistics.recordInvocation();
+            }
+        }
+        catch (Throwable t)
+        {
+            statistics.recordInvocation();
+            statistics.recordException();
+            throw t;
+        }
+    }
+
+    /**
+     * Passes the given batch to the given subscriber and records it as a single invocation.
+     *
+     * @param subscriber
+     * @param type
+     *            The type that the subscriber is subscribed to.
+     * @param batch
+     */
+    <T> void invokeAll(Subscriber<T> subscriber, Class<?> type, List<T> batch)
+    {
+        var statistics = getStatistics(subscriber, type);
+
+        try
+        {
+            if (isSampled())
+            {
+                long start = System.nanoTime();
+                subscriber.dispatchAll(batch);
+                statistics.recordSample(System.nanoTime() - start);
+            }
+            else
+            {
+                subscriber.dispatchAll(batch);
+                statistics.recordInvocation();
+            }
+        }
+        catch (Throwable t)
+        {
+            statistics.recordInvocation();
+            statistics.recordException();
+            throw t;
+        }
+    }
+
+    /**
+     * Discards the statistics of the given subscriber handle after it was unsubscribed.
+     *
+     * @param subscriber
+     */
+    void remove(Subscriber<?> subscriber)
+    {
+        this.subscribers.remove(subscriber);
+    }
+
+    /**
+     * Decides whether the current invocation is measured.
+     *
+     * @return
+     */
+    private boolean isSampled()
+    {
+        return this.sampleRate == 1 || ThreadLocalRandom.current().nextInt(this.sampleRate) == 0;
+    }
+
+    /**
+     * Gets the statistics of the given subscriber, creating them if needed.
+     *
+     * @param subscriber
+     * @param type
+     * @return
+     */
+    private SubscriberStatistics getStatistics(Subscriber<?> subscriber, Class<?> type)
+    {
+        var statistics = this.subscribers.get(subscriber);
+
+        if (statistics == null)
+        {
+            statistics = this.subscribers.computeIfAbsent(subscriber,
+                                                          s -> new SubscriberStatistics(s.getName(), type));
+
+            // a dispatch that raced with the unsubscription must not add the handle again
+            if (subscriber.isUnsubscribed())
+            {
+                this.subscribers.remove(subscriber);
+            }
+        }
+
+        return statistics;
+    }
+
+    /**
+     * Gets roughly how many invocations there are per measured invocation.
+     *
+     * @return
+     */
+    public int getSampleRate()
+    {
+        return this.sampleRate;
+    }
+
+    /**
+     * Gets a snapshot of the number of dispatched data elements per concrete data class.
+     *
+     * @return
+     */
+    public Map<Class<?>, Long> getDispatchCounts()
+    {
+        var counts = new HashMap<Class<?>, Long>();
+        this.dispatchCounts.forEach((type, count) -> counts.put(type, count.sum()));
+        return counts;
+    }
+
+    /**
+     * Gets the statistics of all subscribers that were invoked since the statistics were enabled or {@link #reset()}
+     * and are still subscribed. The statistics of a subscriber are discarded when it is unsubscribed or, for weak
+     * subscriptions, when it was garbage collected.
+     *
+     * @return
+     */
+    public List<SubscriberStatistics> getSubscriberStatistics()
+    {
+        return new ArrayList<>(this.subscribers.values());
+    }
+
+    /**
+     * Gets the statistics of the subscribers with the highest average invocation time, slowest first.
+     *
+     * @param count
+     *            The maximum number of subscribers to return.
+     * @return
+     */
+    public List<SubscriberStatistics> getSlowestSubscribers(int count)
+    {
+        var list = getSubscriberStatistics();
+        list.sort(Comparator.comparingLong(SubscriberStatistics::getAverageNanos).reversed());
+        return list.subList(0, Math.min(count, list.size()));
+    }
+
+    /**
+     * Gets the total number of subscriber invocations that threw an exception.
+     *
+     * @return
+     */
+    public long getExceptionCount()
+    {
+        long count = 0;
+
+        for (var statistics : this.subscribers.values())
+        {
+            count += statistics.getExceptionCount();
+        }
+
+        return count;
+    }
+
+    /**
+     * Discards all collected statistics.
+     */
+    public void reset()
+    {
+        this.dispatchCounts.clear();
+        this.subscribers.clear();
+    }
+}
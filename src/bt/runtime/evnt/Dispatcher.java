@@ -1,12 +1,20 @@
 package bt.runtime.evnt;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
-import bt.types.number.MutableInt;
 import bt.utils.Null;
 
 /**
@@ -17,8 +25,24 @@ import bt.utils.Null;
  */
 public class Dispatcher
 {
+    /** The priority of subscribers that were added without an explicit priority. */
+    public static final int DEFAULT_PRIORITY = 0;
+
     /** A map of class (type of the data that is dispatched) to SubDispatcher. */
-    private Map<Class, SubDispatcher> subDispatchers;
+    private Map<Class<?>, SubDispatcher<?>> subDispatchers;
+
+    /**
+     * A cache of concrete data class to all SubDispatchers whichs type is assignable from that class. The whole map is
+     * replaced whenever a new type is subscribed to, so that routes that are resolved concurrently can never be cached
+     * in a stale state.
+     */
+    private volatile Map<Class<?>, SubDispatcher<?>[]> routes;
+
+    /** The statistics that dispatches are recorded in or null if statistics are disabled. */
+    private volatile DispatchStatistics statistics;
+
+    /** The handler for exceptions thrown by subscribers or null to rethrow them. */
+    private volatile DispatchErrorHandler errorHandler;
 
     /**
      * Creates a new instance.
@@ -26,6 +50,7 @@ public class Dispatcher
     public Dispatcher()
     {
         this.subDispatchers = new ConcurrentHashMap<>();
+        this.routes = new ConcurrentHashMap<>();
     }
 
     /**
@@ -41,14 +66,26 @@ public class Dispatcher
      */
     public <T> void subscribeTo(Class<T> type, Consumer<T> consumer)
     {
-        if (!this.subDispatchers.containsKey(type))
-        {
-            this.subDispatchers.put(type,
-                                    new SubDispatcher<>(type));
-        }
+        getSubDispatcher(type).subscribe(consumer);
+    }
 
-        var dispatcher = (SubDispatcher<T>)this.subDispatchers.get(type);
-        dispatcher.subscribe(consumer);
+    /**
+     * Subscribes the given consumer implementation to the given data type with the given priority.
+     *
+     * <p>
+     * Subscribers of the same type with a higher priority are executed earlier. If the dispatched data is
+     * {@link Cancellable}, a subscriber can cancel it to prevent all following subscribers from receiving it.
+     * </p>
+     *
+     * @param type
+     * @param consumer
+     * @param priority
+     *            The higher the priority, the earlier the consumer is executed. Subscribers without an explicit priority
+     *            use {@link #DEFAULT_PRIORITY}.
+     */
+    public <T> void subscribeTo(Class<T> type, Consumer<T> consumer, int priority)
+    {
+        getSubDispatcher(type).subscribe(consumer, priority);
     }
 
     /**
@@ -66,7 +103,7 @@ public class Dispatcher
             return false;
         }
 
-        var dispatcher = (SubDispatcher<T>)this.subDispatchers.get(type);
+        var dispatcher = findSubDispatcher(type);
         return dispatcher.unsubscribe(consumer);
     }
 
@@ -83,14 +120,243 @@ public class Dispatcher
      */
     public <T> void subscribeTo(Class<T> type, Runnable runnable)
     {
-        if (!this.subDispatchers.containsKey(type))
+        getSubDispatcher(type).subscribe(runnable);
+    }
+
+    /**
+     * Subscribes the given runnable implementation to the given data type with the given priority.
+     *
+     * @param type
+     * @param runnable
+     * @param priority
+     *            The higher the priority, the earlier the runnable is executed. Subscribers without an explicit priority
+     *            use {@link #DEFAULT_PRIORITY}.
+     *
+     * @see #subscribeTo(Class, Consumer, int)
+     */
+    public <T> void subscribeTo(Class<T> type, Runnable runnable, int priority)
+    {
+        getSubDispatcher(type).subscribe(runnable, priority);
+    }
+
+    /**
+     * Subscribes the given consumer implementation to all data of the given type whichs key equals the given key.
+     *
+     * <p>
+     * Keyed subscribers are indexed by their key, so dispatching extracts the key once and only executes the subscribers
+     * of that key, instead of executing every subscriber and letting it discard unwanted data. Subscribers that use the
+     * same key extractor instance share one index, so the extractor should be stored in i.e. a constant and reused for
+     * all subscriptions of the type. Otherwise use {@link #subscribeTo(Class, String, Function, Object, Consumer) a
+     * named index}. Keyed subscribers are executed in the order of their priority together with the non-keyed
+     * subscribers of the same type. For equal priorities they are executed after the non-keyed consumers and before the
+     * runnables.
+     * </p>
+     *
+     * @param type
+     * @param keyExtractor
+     *            The function to extract the key from dispatched data.
+     * @param key
+     *            The key that data has to have to be passed to the consumer. Must not be null.
+     * @param consumer
+     */
+    public <T, K> void subscribeTo(Class<T> type, Function<T, K> keyExtractor, K key, Consumer<T> consumer)
+    {
+        subscribeTo(type, keyExtractor, key, consumer, DEFAULT_PRIORITY);
+    }
+
+    /**
+     * Subscribes the given consumer implementation to all data of the given type whichs key equals the given key.
+     *
+     * @param type
+     * @param keyExtractor
+     *            The function to extract the key from dispatched data.
+     * @param key
+     *            The key that data has to have to be passed to the consumer. Must not be null.
+     * @param consumer
+     * @param priority
+     *            The higher the priority, the earlier the consumer is executed.
+     *
+     * @see #subscribeTo(Class, Function, Object, Consumer)
+     */
+    public <T, K> void subscribeTo(Class<T> type, Function<T, K> keyExtractor, K key, Consumer<T> consumer,
+                                   int priority)
+    {
+        getSubDispatcher(type).subscribe(null, keyExtractor, key, consumer, priority);
+    }
+
+    /**
+     * Subscribes the given consumer implementation to all data of the given type whichs key equals the given key,
+     * using the key index with the given name.
+     *
+     * <p>
+     * All subscriptions with the same index name share one index, regardless of the key extractor instance that they
+     * pass. The index uses the key extractor of the subscription that created it, so all subscriptions of the same name
+     * have to extract the same key, i.e.
+     * {@code subscribeTo(PropertyChange.class, "field", PropertyChange::getField, "port", consumer)}. An index is
+     * removed once its last subscriber is unsubscribed.
+     * </p>
+     *
+     * @param type
+     * @param index
+     *            The name of the index.
+     * @param keyExtractor
+     *            The function to extract the key from dispatched data.
+     * @param key
+     *            The key that data has to have to be passed to the consumer. Must not be null.
+     * @param consumer
+     *
+     * @see #subscribeTo(Class, Function, Object, Consumer)
+     */
+    public <T, K> void subscribeTo(Class<T> type, String index, Function<T, K> keyExtractor, K key,
+                                   Consumer<T> consumer)
+    {
+        subscribeTo(type, index, keyExtractor, key, consumer, DEFAULT_PRIORITY);
+    }
+
+    /**
+     * Subscribes the given consumer implementation to all data of the given type whichs key equals the given key,
+     * using the key index with the given name.
+     *
+     * @param type
+     * @param index
+     *            The name of the index.
+     * @param keyExtractor
+     *            The function to extract the key from dispatched data.
+     * @param key
+     *            The key that data has to have to be passed to the consumer. Must not be null.
+     * @param consumer
+     * @param priority
+     *            The higher the priority, the earlier the consumer is executed.
+     *
+     * @see #subscribeTo(Class, String, Function, Object, Consumer)
+     */
+    public <T, K> void subscribeTo(Class<T> type, String index, Function<T, K> keyExtractor, K key,
+                                   Consumer<T> consumer, int priority)
+    {
+        getSubDispatcher(type).subscribe(Objects.requireNonNull(index), keyExtractor, key, consumer, priority);
+    }
+
+    /**
+     * Unsubscribes the given consumer from receiving data of the given type with the given key.
+     *
+     * <p>
+     * Keyed subscribers can also be removed via {@link #unsubscribeFrom(Class, Consumer)}, but this method only needs to
+     * check the subscribers of the given key.
+     * </p>
+     *
+     * @param type
+     * @param key
+     *            The key that the consumer was subscribed with.
+     * @param consumer
+     *
+     * @return true if the given consumer was subscribed to the given key.
+     */
+    public <T> boolean unsubscribeFrom(Class<T> type, Object key, Consumer<T> consumer)
+    {
+        var dispatcher = findSubDispatcher(type);
+        return dispatcher != null && dispatcher.unsubscribe(key, consumer);
+    }
+
+    /**
+     * Subscribes the given consumer implementation to all data of the given type that matches the given filter.
+     *
+     * <p>
+     * The filter is evaluated for every dispatched data element before the consumer, so
+     * {@link #subscribeTo(Class, Function, Object, Consumer) keyed subscriptions} should be preferred whenever the
+     * condition is an equality check on a key. Filtered subscribers count as having received the data in the return
+     * value of {@link #dispatch}, even if the filter rejected it. The subscription can be removed via
+     * {@link #unsubscribeFrom(Class, Consumer)} with the original consumer. A {@link BatchConsumer} still receives the
+     * matching elements of a {@link #dispatchAll(Collection) batch} in a single call.
+     * </p>
+     *
+     * @param type
+     * @param filter
+     *            The condition that data has to meet to be passed to the consumer.
+     * @param consumer
+     */
+    public <T> void subscribeTo(Class<T> type, Predicate<T> filter, Consumer<T> consumer)
+    {
+        Consumer<T> filtered;
+
+        if (consumer instanceof BatchConsumer)
         {
-            this.subDispatchers.put(type,
-                                    new SubDispatcher<>(type));
+            filtered = new FilteredBatchConsumer<>(filter, (BatchConsumer<T>)consumer);
         }
+        else
+        {
+            filtered = d ->
+            {
+                if (filter.test(d))
+                {
+                    consumer.accept(d);
+                }
+            };
+        }
+
+        getSubDispatcher(type).subscribe(new Subscriber<>(consumer, filtered, false, DEFAULT_PRIORITY));
+    }
+
+    /**
+     * Subscribes the given consumer implementation to the given data type while only holding a weak reference to it.
+     *
+     * <p>
+     * The subscription is removed automatically some time after the consumer was garbage collected, so forgetting to
+     * {@link #unsubscribeFrom(Class, Consumer) unsubscribe} short lived subscribers does not keep them reachable. The
+     * caller has to hold a strong reference to the consumer for as long as it should receive data, which means that
+     * lambdas which are not stored anywhere will stop receiving data almost immediately.
+     * </p>
+     *
+     * @param type
+     * @param consumer
+     */
+    public <T> void subscribeWeaklyTo(Class<T> type, Consumer<T> consumer)
+    {
+        subscribeWeaklyTo(type, consumer, DEFAULT_PRIORITY);
+    }
+
+    /**
+     * Subscribes the given consumer implementation to the given data type with the given priority while only holding a
+     * weak reference to it.
+     *
+     * @param type
+     * @param consumer
+     * @param priority
+     *            The higher the priority, the earlier the consumer is executed.
+     *
+     * @see #subscribeWeaklyTo(Class, Consumer)
+     */
+    public <T> void subscribeWeaklyTo(Class<T> type, Consumer<T> consumer, int priority)
+    {
+        getSubDispatcher(type).subscribeWeakly(consumer, priority);
+    }
 
-        var dispatcher = (SubDispatcher<T>)this.subDispatchers.get(type);
-        dispatcher.subscribe(runnable);
+    /**
+     * Subscribes the given runnable implementation to the given data type while only holding a weak reference to it.
+     *
+     * @param type
+     * @param runnable
+     *
+     * @see #subscribeWeaklyTo(Class, Consumer)
+     */
+    public <T> void subscribeWeaklyTo(Class<T> type, Runnable runnable)
+    {
+        subscribeWeaklyTo(type, runnable, DEFAULT_PRIORITY);
+    }
+
+    /**
+     * Subscribes the given runnable implementation to the given data type with the given priority while only holding a
+     * weak reference to it.
+     *
+     * @param type
+     * @param runnable
+     * @param priority
+     *            The higher the priority, the earlier the runnable is executed.
+     *
+     * @see #subscribeWeaklyTo(Class, Consumer)
+     */
+    public <T> void subscribeWeaklyTo(Class<T> type, Runnable runnable, int priority)
+    {
+        getSubDispatcher(type).subscribeWeakly(runnable, priority);
     }
 
     /**
@@ -108,27 +374,414 @@ public class Dispatcher
             return false;
         }
 
-        var dispatcher = (SubDispatcher<T>)this.subDispatchers.get(type);
+        var dispatcher = findSubDispatcher(type);
         return dispatcher.unsubscribe(runnable);
     }
 
+    /**
+     * Subscribes the given consumer implementation to the given data type so that it is executed asynchronously by the
+     * given executor.
+     *
+     * <p>
+     * Dispatched data is put into a bounded queue of the given capacity and {@link #dispatch} returns without waiting
+     * for the consumer. The queued data is passed to the consumer in order on a thread of the executor. The returned
+     * {@link AsyncConsumer} can be used to observe the queue depth and the number of dropped data elements. The
+     * subscription can be removed via {@link #unsubscribeFrom(Class, Consumer)} with the original consumer. Exceptions
+     * of the consumer are passed to the {@link #setErrorHandler(DispatchErrorHandler) error handler} on the thread of the
+     * executor, or logged if no handler is set.
+     * </p>
+     *
+     * @param type
+     * @param consumer
+     * @param executor
+     *            The executor that runs the consumer, i.e. <code>Threads.get()::executeCachedDaemon</code>.
+     * @param capacity
+     *            The maximum number of queued data elements.
+     * @param overflowPolicy
+     *            The policy to apply when the queue is full.
+     *
+     * @return The asynchronous wrapper of the given consumer.
+     */
+    public <T> AsyncConsumer<T> subscribeTo(Class<T> type, Consumer<T> consumer, Executor executor, int capacity,
+                                            OverflowPolicy overflowPolicy)
+    {
+        var async = new AsyncConsumer<>(consumer, executor, capacity, overflowPolicy, this::getErrorHandler);
+        getSubDispatcher(type).subscribe(new Subscriber<>(consumer, async, false, DEFAULT_PRIORITY));
+        return async;
+    }
+
+    /**
+     * Subscribes the given runnable implementation to the given data type so that it is executed asynchronously by the
+     * given executor.
+     *
+     * <p>
+     * See {@link #subscribeTo(Class, Consumer, Executor, int, OverflowPolicy)} for details. The subscription can be
+     * removed via {@link #unsubscribeFrom(Class, Runnable)} with the original runnable.
+     * </p>
+     *
+     * @param type
+     * @param runnable
+     * @param executor
+     *            The executor that runs the runnable, i.e. <code>Threads.get()::executeCachedDaemon</code>.
+     * @param capacity
+     *            The maximum number of queued data elements.
+     * @param overflowPolicy
+     *            The policy to apply when the queue is full.
+     *
+     * @return The asynchronous wrapper of the given runnable.
+     */
+    public <T> AsyncConsumer<T> subscribeTo(Class<T> type, Runnable runnable, Executor executor, int capacity,
+                                            OverflowPolicy overflowPolicy)
+    {
+        var async = new AsyncConsumer<T>(d -> runnable.run(),
+                                         executor,
+                                         capacity,
+                                         overflowPolicy,
+                                         this::getErrorHandler);
+        getSubDispatcher(type).subscribe(new Subscriber<>(runnable, async, true, DEFAULT_PRIORITY));
+        return async;
+    }
+
     /**
      * Dispatches the given data to all instances that are subscribed to that specific data type or any of its super
      * types.
      *
+     * <p>
+     * The subscribers of the class of the data are executed first, followed by the subscribers of its superclasses
+     * from the closest one up to Object and then the subscribers of its interfaces, breadth first and in declaration
+     * order. Within each type the subscribers are executed in the order of their priority. If the data is
+     * {@link Cancellable} and is cancelled by a subscriber, no further subscribers of any type will receive it.
+     * </p>
+     *
      * @param data
      * @return The number of subscribers that received the data.
      */
     public <T> int dispatch(T data)
     {
-        MutableInt dispatchCount = new MutableInt(0);
+        if (data == null)
+        {
+            return 0;
+        }
+
+        Class<?> dataType = data.getClass();
+        DispatchStatistics statistics = this.statistics;
+
+        if (statistics != null)
+        {
+            statistics.recordDispatch(dataType, 1);
+        }
+
+        return dispatch(data, getRoute(dataType));
+    }
+
+    /**
+     * Dispatches all given data elements to all instances that are subscribed to their specific data types or any of
+     * their super types.
+     *
+     * <p>
+     * The elements are grouped by their class and the matching subscribers are resolved once per class. Each subscriber
+     * receives all elements of a class before the next subscriber is executed, and {@link BatchConsumer}s receive them in
+     * a single call. The order of the elements is kept for each class, but not between elements of different classes.
+     * {@link Cancellable} elements are dispatched one by one to respect cancellation.
+     * </p>
+     *
+     * @param data
+     * @return The number of times that data was received by a subscriber.
+     */
+    public int dispatchAll(Collection<?> data)
+    {
+        var groups = new LinkedHashMap<Class<?>, List<Object>>();
+
+        for (Object element : data)
+        {
+            if (element != null)
+            {
+                groups.computeIfAbsent(element.getClass(), c -> new ArrayList<>()).add(element);
+            }
+        }
+
+        int dispatchCount = 0;
+        DispatchStatistics statistics = this.statistics;
+
+        for (var group : groups.entrySet())
+        {
+            SubDispatcher<?>[] route = getRoute(group.getKey());
+            List<Object> batch = group.getValue();
+
+            if (statistics != null)
+            {
+                statistics.recordDispatch(group.getKey(), batch.size());
+            }
+
+            if (Cancellable.class.isAssignableFrom(group.getKey()))
+            {
+                for (Object element : batch)
+                {
+                    dispatchCount += dispatch(element, route);
+                }
+            }
+            else
+            {
+                batch = Collections.unmodifiableList(batch);
+
+                for (int i = 0; i < route.length; i ++ )
+                {
+                    dispatchCount += route[i].dispatchAllRouted(batch);
+                }
+            }
+        }
+
+        return dispatchCount;
+    }
+
+    /**
+     * Dispatches all given data elements to all instances that are subscribed to their specific data types or any of
+     * their super types.
+     *
+     * @param data
+     * @return The number of times that data was received by a subscriber.
+     *
+     * @see #dispatchAll(Collection)
+     */
+    public int dispatchAll(Object[] data)
+    {
+        return dispatchAll(Arrays.asList(data));
+    }
+
+    /**
+     * Dispatches the given data to all SubDispatchers of the given route.
+     *
+     * @param data
+     * @param route
+     * @return The number of subscribers that received the data.
+     */
+    private int dispatch(Object data, SubDispatcher<?>[] route)
+    {
+        int dispatchCount = 0;
+
+        if (data instanceof Cancellable)
+        {
+            var cancellable = (Cancellable)data;
+
+            for (int i = 0; i < route.length && !cancellable.isCancelled(); i ++ )
+            {
+                dispatchCount += route[i].dispatchRouted(data);
+            }
+        }
+        else
+        {
+            for (int i = 0; i < route.length; i ++ )
+            {
+                dispatchCount += route[i].dispatchRouted(data);
+            }
+        }
+
+        return dispatchCount;
+    }
+
+    /**
+     * Starts recording the number of dispatched data elements per type and the invocation statistics of all subscribers
+     * of this instance.
+     *
+     * <p>
+     * While statistics are disabled, which is the default, dispatching does not record anything. If statistics are
+     * already enabled, the existing instance is returned and the sample rate is not changed.
+     * </p>
+     *
+     * @param sampleRate
+     *            Roughly one in this many subscriber invocations is timed. Higher values reduce the overhead.
+     *
+     * @return The statistics that will be recorded in.
+     */
+    public synchronized DispatchStatistics enableStatistics(int sampleRate)
+    {
+        if (this.statistics == null)
+        {
+            this.statistics = new DispatchStatistics(sampleRate);
 
-        this.subDispatchers.values()
-                           .stream()
-                           .filter(d -> d.getType().isInstance(data))
-                           .forEach(d -> dispatchCount.add(d.dispatch(data)));
+            for (var dispatcher : this.subDispatchers.values())
+            {
+                dispatcher.setStatistics(this.statistics);
+            }
+        }
+
+        return this.statistics;
+    }
+
+    /**
+     * Stops recording statistics. Statistics that were already recorded remain available in the instance returned by
+     * {@link #enableStatistics(int)}.
+     */
+    public synchronized void disableStatistics()
+    {
+        this.statistics = null;
+
+        for (var dispatcher : this.subDispatchers.values())
+        {
+            dispatcher.setStatistics(null);
+        }
+    }
+
+    /**
+     * Gets the statistics that are currently recorded.
+     *
+     * @return The statistics or null if they are disabled.
+     */
+    public DispatchStatistics getStatistics()
+    {
+        return this.statistics;
+    }
+
+    /**
+     * Sets the handler that receives exceptions thrown by subscribers of this instance.
+     *
+     * <p>
+     * Without a handler, which is the default, an exception thrown by a subscriber is passed on to the caller of
+     * {@link #dispatch} and all remaining subscribers are skipped. With a handler the exception is passed to it and the
+     * dispatching continues with the next subscriber. Use a {@link DeadLetterQueue} to keep failed deliveries.
+     * </p>
+     *
+     * @param errorHandler
+     *            The handler or null to fail fast.
+     */
+    public synchronized void setErrorHandler(DispatchErrorHandler errorHandler)
+    {
+        this.errorHandler = errorHandler;
+
+        for (var dispatcher : this.subDispatchers.values())
+        {
+            dispatcher.setErrorHandler(errorHandler);
+        }
+    }
+
+    /**
+     * Gets the handler that receives exceptions thrown by subscribers of this instance.
+     *
+     * @return The handler or null if exceptions are rethrown.
+     */
+    public DispatchErrorHandler getErrorHandler()
+    {
+        return this.errorHandler;
+    }
+
+    /**
+     * Gets the SubDispatcher for the given type, creating and registering a new one if none exists yet.
+     *
+     * <p>
+     * Creating a new SubDispatcher invalidates all cached routes.
+     * </p>
+     *
+     * @param type
+     * @return The SubDispatcher for the given type.
+     */
+    private <T> SubDispatcher<T> getSubDispatcher(Class<T> type)
+    {
+        var dispatcher = findSubDispatcher(type);
+
+        if (dispatcher == null)
+        {
+            var created = new SubDispatcher<>(type);
+
+            if (this.subDispatchers.putIfAbsent(type, created) != null)
+            {
+                // SubDispatchers are never removed, so the one that was registered concurrently is still there
+                dispatcher = findSubDispatcher(type);
+            }
+            else
+            {
+                dispatcher = created;
+
+                // set after publishing so that a concurrent enableStatistics or setErrorHandler either sees the new instance or is seen here
+                dispatcher.setStatistics(this.statistics);
+                dispatcher.setErrorHandler(this.errorHandler);
+                this.routes = new ConcurrentHashMap<>();
+            }
+        }
+
+        return dispatcher;
+    }
+
+    /**
+     * Gets the SubDispatcher for the given type.
+     *
+     * @param type
+     * @return The SubDispatcher for the given type or null if nothing was subscribed to it yet.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> SubDispatcher<T> findSubDispatcher(Class<T> type)
+    {
+        // SubDispatchers are only ever registered under their own type
+        return (SubDispatcher<T>)this.subDispatchers.get(type);
+    }
+
+    /**
+     * Gets all SubDispatchers that handle data of the given concrete class, resolving and caching them on first use.
+     *
+     * <p>
+     * The route is ordered like the type hierarchy: the class itself, its superclasses up to Object and then its
+     * interfaces breadth first in declaration order. Array types that are only assignable through covariance, like
+     * Object[] for a String[], come last, sorted by name.
+     * </p>
+     *
+     * @param dataType
+     * @return An array of all SubDispatchers whichs type is assignable from the given class.
+     */
+    private SubDispatcher<?>[] getRoute(Class<?> dataType)
+    {
+        var cache = this.routes;
+        SubDispatcher<?>[] route = cache.get(dataType);
+
+        if (route == null)
+        {
+            List<Class<?>> hierarchy = new ArrayList<>();
+
+            for (Class<?> type = dataType; type != null; type = type.getSuperclass())
+            {
+                hierarchy.add(type);
+            }
+
+            // the list grows while it is iterated, so the interfaces of interfaces are added breadth first
+            for (int i = 0; i < hierarchy.size(); i ++ )
+            {
+                for (Class<?> type : hierarchy.get(i).getInterfaces())
+                {
+                    if (!hierarchy.contains(type))
+                    {
+                        hierarchy.add(type);
+                    }
+                }
+            }
+
+            var matching = new ArrayList<SubDispatcher<?>>();
+
+            for (Class<?> type : hierarchy)
+            {
+                var dispatcher = this.subDispatchers.get(type);
+
+                if (dispatcher != null)
+                {
+                    matching.add(dispatcher);
+                }
+            }
+
+            var covariant = new ArrayList<SubDispatcher<?>>();
+
+            for (var dispatcher : this.subDispatchers.values())
+            {
+                if (dispatcher.getType().isAssignableFrom(dataType) && !hierarchy.contains(dispatcher.getType()))
+                {
+                    covariant.add(dispatcher);
+                }
+            }
+
+            covariant.sort(Comparator.comparing(dispatcher -> dispatcher.getType().getName()));
+            matching.addAll(covariant);
+
+            route = matching.toArray(new SubDispatcher<?>[matching.size()]);
+            cache.put(dataType, route);
+        }
 
-        return dispatchCount.get();
+        return route;
     }
 
     /**
@@ -148,7 +801,7 @@ public class Dispatcher
             return new ArrayList<>();
         }
 
-        var dispatcher = (SubDispatcher<T>)this.subDispatchers.get(type);
+        var dispatcher = findSubDispatcher(type);
         return dispatcher.getSubscribers();
     }
 
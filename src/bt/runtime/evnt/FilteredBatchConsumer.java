@@ -0,0 +1,86 @@
+package bt.runtime.evnt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A {@link BatchConsumer} that only passes data that matches a filter on to another BatchConsumer.
+ *
+ * <p>
+ * Used for filtered subscriptions of BatchConsumers, so that the subscriber still receives the matching elements of a
+ * batch in a single call.
+ * </p>
+ *
+ * @author &#8904
+ * @param <T>
+ *            The type of data that this consumer receives.
+ */
+class FilteredBatchConsumer<T> implements BatchConsumer<T>
+{
+    /** The condition that data has to meet to be passed on. */
+    private final Predicate<T> filter;
+
+    /** The consumer that receives the matching data. */
+    private final BatchConsumer<T> consumer;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param filter
+     *            The condition that data has to meet to be passed on.
+     * @param consumer
+     *            The consumer that receives the matching data.
+     */
+    FilteredBatchConsumer(Predicate<T> filter, BatchConsumer<T> consumer)
+    {
+        this.filter = filter;
+        this.consumer = consumer;
+    }
+
+    /**
+     * Passes the given data to the consumer if it matches the filter.
+     *
+     * @see java.util.function.Consumer#accept(java.lang.Object)
+     */
+    @Override
+    public void accept(T data)
+    {
+        if (this.filter.test(data))
+        {
+            this.consumer.accept(data);
+        }
+    }
+
+    /**
+     * Passes all elements of the given batch that match the filter to the consumer in a single call. Nothing is passed
+     * if no element matches.
+     *
+     * @see bt.runtime.evnt.BatchConsumer#acceptAll(java.util.List)
+     */
+    @Override
+    public void acceptAll(List<T> batch)
+    {
+        List<T> matching = new ArrayList<>(batch.size());
+
+        for (int i = 0; i < batch.size(); i ++ )
+        {
+            T data = batch.get(i);
+
+            if (this.filter.test(data))
+            {
+                matching.add(data);
+            }
+        }
+
+        if (matching.size() == batch.size())
+        {
+            this.consumer.acceptAll(batch);
+        }
+        else if (!matching.isEmpty())
+        {
+            this.consumer.acceptAll(Collections.unmodifiableList(matching));
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package bt.runtime.evnt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * An index of keyed subscribers of a {@link SubDispatcher} that share the same key extractor.
+ *
+ * <p>
+ * Indexes are either identified by a name or, if they don't have one, by the identity of their key extractor.
+ * </p>
+ *
+ * <p>
+ * On dispatch the key of the data is extracted once and only the subscribers that were registered for exactly that key
+ * are {@link #getSubscribers(Object) looked up} and executed, which takes a single hash lookup regardless of the number of keyed subscribers.
+ * </p>
+ *
+ * @author &#8904
+ * @param <T>
+ *            The type of data that this index dispatches.
+ */
+class KeyIndex<T>
+{
+    /** The name of this index or null if it is identified by its key extractor. */
+    private final String name;
+
+    /** The function that extracts the key from dispatched data. */
+    private final Function<T, ?> keyExtractor;
+
+    /** A map of key to an immutable array of the subscribers of that key in execution order. */
+    private final Map<Object, Subscriber<T>[]> subscribers;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param name
+     *            The name of the index or null.
+     * @param keyExtractor
+     */
+    KeyIndex(String name, Function<T, ?> keyExtractor)
+    {
+        this.name = name;
+        this.keyExtractor = keyExtractor;
+        this.subscribers = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Creates a new key index array of the given length.
+     *
+     * @param length
+     * @return
+     *
+     * @see Subscriber#newArray(int)
+     */
+    @SuppressWarnings("unchecked")
+    static <T> KeyIndex<T>[] newArray(int length)
+    {
+        return (KeyIndex<T>[])new KeyIndex<?>[length];
+    }
+
+    /**
+     * Indicates whether this index is the one identified by the given name or, if the name is null, by the given key
+     * extractor.
+     *
+     * @param name
+     * @param keyExtractor
+     * @return
+     */
+    boolean matches(String name, Function<T, ?> keyExtractor)
+    {
+        return name == null ? this.name == null && this.keyExtractor == keyExtractor : name.equals(this.name);
+    }
+
+    /**
+     * Indicates whether no subscriber is registered for any key.
+     *
+     * @return
+     */
+    boolean isEmpty()
+    {
+        return this.subscribers.isEmpty();
+    }
+
+    /**
+     * Adds the given subscriber for the given key.
+     *
+     * @param key
+     * @param subscriber
+     */
+    void subscribe(Object key, Subscriber<T> subscriber)
+    {
+        this.subscribers.compute(key,
+                                 (k, subs) -> Subscriber.insert(subs == null ? Subscriber.empty() : subs, subscriber));
+    }
+
+    /**
+     * Removes the given subscriber from the given key.
+     *
+     * @param key
+     * @param subscriber
+     * @return The removed handle or null if the subscriber was not registered for the key.
+     */
+    Subscriber<T> unsubscribe(Object key, Object subscriber)
+    {
+        Subscriber<T>[] removed = Subscriber.newArray(1);
+
+        this.subscribers.computeIfPresent(key,
+                                          (k, subs) ->
+                                          {
+                                              int i = Subscriber.indexOf(subs, subscriber);
+
+                                              if (i < 0)
+                                              {
+                                                  return subs;
+                                              }
+
+                                              removed[0] = subs[i];
+                                              Subscriber<T>[] updated = Subscriber.remove(subs, subscriber);
+                                              return updated.length == 0 ? null : updated;
+                                          });
+
+        return removed[0];
+    }
+
+    /**
+     * Removes the given subscriber from the first key that it is registered for.
+     *
+     * @param subscriber
+     * @return The removed handle or null if the subscriber was not registered for any key.
+     */
+    Subscriber<T> unsubscribe(Object subscriber)
+    {
+        for (var key : this.subscribers.keySet())
+        {
+            Subscriber<T> removed = unsubscribe(key, subscriber);
+
+            if (removed != null)
+            {
+                return removed;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets the subscribers of the key of the given data.
+     *
+     * @param data
+     * @return The subscribers in execution order, which is an empty array if there are none.
+     */
+    Subscriber<T>[] getSubscribers(T data)
+    {
+        Object key = this.keyExtractor.apply(data);
+        Subscriber<T>[] subs = key == null ? null : this.subscribers.get(key);
+
+        return subs == null ? Subscriber.empty() : subs;
+    }
+
+    /**
+     * Gets a consumer that applies the key extractor of this index. It is reported to the {@link DispatchErrorHandler}
+     * in place of a subscriber if the key extractor throws an exception.
+     *
+     * @return
+     */
+    Consumer<T> getKeyExtractorConsumer()
+    {
+        return this.keyExtractor::apply;
+    }
+
+    /**
+     * Gets the handles of all subscribers of this index.
+     *
+     * @return
+     */
+    List<Subscriber<T>> getAllSubscribers()
+    {
+        var list = new ArrayList<Subscriber<T>>();
+
+        for (var subs : this.subscribers.values())
+        {
+            list.addAll(Arrays.asList(subs));
+        }
+
+        return list;
+    }
+
+    /**
+     * Adds the consumers of all subscribers of this index to the given list.
+     *
+     * @param list
+     */
+    void addSubscribersTo(List<Consumer<T>> list)
+    {
+        for (var subs : this.subscribers.values())
+        {
+            for (var sub : subs)
+            {
+                list.add(sub.getConsumer());
+            }
+        }
+    }
+}
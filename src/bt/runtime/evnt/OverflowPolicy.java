@@ -0,0 +1,24 @@
+package bt.runtime.evnt;
+
+/**
+ * Defines how an {@link AsyncConsumer} reacts to new data while its queue is full.
+ *
+ * @author &#8904
+ */
+public enum OverflowPolicy
+{
+    /**
+     * The dispatching thread blocks until there is space in the queue.
+     */
+    BLOCK,
+
+    /**
+     * The new data is discarded.
+     */
+    DROP,
+
+    /**
+     * The oldest queued data is discarded to make space for the new data.
+     */
+    DROP_OLDEST
+}
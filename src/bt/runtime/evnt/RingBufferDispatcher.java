@@ -0,0 +1,396 @@
+package bt.runtime.evnt;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import bt.scheduler.Threads;
+import bt.types.Killable;
+
+/**
+ * A dispatcher for data of a single type that hands the data to its subscribers via a preallocated ring buffer.
+ *
+ * <p>
+ * Unlike {@link Dispatcher} this class does not execute the subscribers on the dispatching thread. Every subscriber
+ * consumes the data on its own thread in the order it was dispatched, in batches of all data that became available
+ * since its last check. No objects are allocated to pass data between threads.
+ * </p>
+ *
+ * <p>
+ * Subscribers can depend on other subscribers, in which case they will only receive data after all of their
+ * dependencies have consumed it. This allows building processing graphs like i.e. a journaling and a replicating
+ * subscriber that both have to finish before a business logic subscriber sees the data.
+ * </p>
+ *
+ * <p>
+ * All subscribers need to be added before {@link #start()} is called, and data can only be dispatched after that. If
+ * the ring buffer is full {@link #dispatch} blocks until the slowest subscriber has made space. The instance should be
+ * {@link #kill() killed} when it is no longer needed to stop the subscriber threads. Dispatching to a killed instance,
+ * or to one whichs subscriber thread died, fails instead of blocking forever.
+ * </p>
+ *
+ * <p>
+ * Subscribers that implement {@link BatchConsumer} receive all data that became available since their last check in a
+ * single call.
+ * </p>
+ *
+ * <h2>Example of usage:</h2>
+ *
+ * <pre>
+ * var dispatcher = new RingBufferDispatcher&lt;Event&gt;(1024, WaitStrategy.YIELD);
+ * var journal = dispatcher.subscribeTo(journaler::write);
+ * dispatcher.subscribeTo(handler::handle, journal);
+ * dispatcher.start();
+ *
+ * dispatcher.dispatch(event);
+ * </pre>
+ *
+ * @author &#8904
+ * @param <T>
+ *            The type of data that this instance will dispatch.
+ */
+public class RingBufferDispatcher<T> implements Killable
+{
+    /** The preallocated slots of the ring buffer. */
+    private final Object[] entries;
+
+    /** The mask to get the slot index of a sequence. */
+    private final int mask;
+
+    /** The number of bits to shift a sequence to get the number of times the buffer wrapped around. */
+    private final int shift;
+
+    /**
+     * For each slot the wrap count of the sequence that was last published into it. Used to determine whether a
+     * claimed sequence was actually published yet.
+     */
+    private final AtomicIntegerArray published;
+
+    /** The highest sequence that was claimed by a dispatching thread. */
+    private final AtomicLong cursor;
+
+    /** A cached minimum of all subscriber sequences to avoid checking them on every dispatch. */
+    private volatile long gatingCache;
+
+    /** The strategy that subscribers use while waiting for data. */
+    private final WaitStrategy waitStrategy;
+
+    /** The executor that runs the subscribers. */
+    private final Executor executor;
+
+    /** All subscribers of this instance. The array is replaced instead of modified when a subscriber is added. */
+    private volatile RingSubscriber<?>[] subscribers;
+
+    /** Indicates whether {@link #start()} was called. */
+    private volatile boolean started;
+
+    /** Indicates whether {@link #kill()} was called. */
+    private volatile boolean killed;
+
+    /**
+     * Creates a new instance whichs subscribers will run in new daemon threads via {@link Threads#executeDaemon}.
+     *
+     * @param size
+     *            The number of slots of the ring buffer. Must be a power of two.
+     * @param waitStrategy
+     *            The strategy that subscribers use while waiting for data.
+     */
+    public RingBufferDispatcher(int size, WaitStrategy waitStrategy)
+    {
+        this(size,
+             waitStrategy,
+             Threads.get()::executeDaemon);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * <p>
+     * The executor has to be able to run one task per subscriber concurrently, since every subscriber blocks its thread
+     * until the instance is killed.
+     * </p>
+     *
+     * @param size
+     *            The number of slots of the ring buffer. Must be a power of two.
+     * @param waitStrategy
+     *            The strategy that subscribers use while waiting for data.
+     * @param executor
+     *            The executor that runs the subscribers.
+     */
+    public RingBufferDispatcher(int size, WaitStrategy waitStrategy, Executor executor)
+    {
+        if (size < 1 || Integer.bitCount(size) != 1)
+        {
+            throw new IllegalArgumentException("Size must be a power of two.");
+        }
+
+        this.entries = new Object[size];
+        this.mask = size - 1;
+        this.shift = Integer.numberOfTrailingZeros(size);
+        this.published = new AtomicIntegerArray(size);
+
+        for (int i = 0; i < size; i ++ )
+        {
+            this.published.set(i, -1);
+        }
+
+        this.cursor = new AtomicLong(-1);
+        this.gatingCache = -1;
+        this.waitStrategy = waitStrategy;
+        this.executor = executor;
+        this.subscribers = new RingSubscriber<?>[0];
+    }
+
+    /**
+     * Subscribes the given consumer implementation to the data of this instance.
+     *
+     * <p>
+     * If dependencies are given the consumer will only receive data after all of the dependencies have consumed it.
+     * </p>
+     *
+     * @param consumer
+     *            The consumer that receives the data.
+     * @param dependencies
+     *            Subscribers of this instance that have to consume the data first.
+     *
+     * @return The new subscriber which can be used as a dependency for other subscribers.
+     *
+     * @throws IllegalStateException
+     *             If this instance was already started.
+     */
+    @SafeVarargs
+    public final synchronized RingSubscriber<T> subscribeTo(Consumer<T> consumer, RingSubscriber<T>... dependencies)
+    {
+        if (this.started)
+        {
+            throw new IllegalStateException("Subscribers can only be added before the dispatcher is started.");
+        }
+
+        var gating = new Sequence[dependencies.length];
+
+        for (int i = 0; i < dependencies.length; i ++ )
+        {
+            gating[i] = dependencies[i].sequence();
+        }
+
+        var subscriber = new RingSubscriber<>(this, consumer, gating);
+        RingSubscriber<?>[] updated = Arrays.copyOf(this.subscribers, this.subscribers.length + 1);
+        updated[this.subscribers.length] = subscriber;
+        this.subscribers = updated;
+
+        return subscriber;
+    }
+
+    /**
+     * Subscribes the given runnable implementation to the data of this instance.
+     *
+     * @param runnable
+     *            The runnable that is executed for each dispatched data element.
+     * @param dependencies
+     *            Subscribers of this instance that have to consume the data first.
+     *
+     * @return The new subscriber which can be used as a dependency for other subscribers.
+     *
+     * @see #subscribeTo(Consumer, RingSubscriber...)
+     */
+    @SafeVarargs
+    public final RingSubscriber<T> subscribeTo(Runnable runnable, RingSubscriber<T>... dependencies)
+    {
+        return subscribeTo(d -> runnable.run(),
+                           dependencies);
+    }
+
+    /**
+     * Starts all subscribers on the executor of this instance.
+     */
+    public synchronized void start()
+    {
+        if (!this.started)
+        {
+            this.started = true;
+
+            for (var subscriber : this.subscribers)
+            {
+                subscriber.start(this.executor);
+            }
+        }
+    }
+
+    /**
+     * Publishes the given data to all subscribers of this instance.
+     *
+     * <p>
+     * This method returns as soon as the data is published and does not wait for the subscribers to consume it. If the
+     * ring buffer is full it blocks until the slowest subscriber has made space. This method can safely be called from
+     * multiple threads.
+     * </p>
+     *
+     * @param data
+     * @return The number of subscribers that will receive the data.
+     *
+     * @throws IllegalStateException
+     *             If this instance was not started yet, or if it was killed or a subscriber stopped while the ring buffer
+     *             was full.
+     */
+    public int dispatch(T data)
+    {
+        if (!this.started)
+        {
+            // without running subscribers nothing keeps data from being overwritten before anyone consumed it
+            throw new IllegalStateException("Data can only be dispatched after the dispatcher was started.");
+        }
+
+        if (this.killed)
+        {
+            throw new IllegalStateException("The dispatcher was killed.");
+        }
+
+        long sequence = this.cursor.incrementAndGet();
+        long wrapPoint = sequence - this.entries.length;
+
+        if (wrapPoint > this.gatingCache)
+        {
+            long min;
+
+            while (wrapPoint > (min = getMinimumSequence(sequence - 1)))
+            {
+                checkRunning();
+                LockSupport.parkNanos(1);
+            }
+
+            this.gatingCache = min;
+        }
+
+        int index = (int)(sequence & this.mask);
+        this.entries[index] = data;
+        this.published.lazySet(index, (int)(sequence >>> this.shift));
+
+        return this.subscribers.length;
+    }
+
+    /**
+     * Halts all subscribers after their current batch. Data that was not consumed yet is discarded.
+     *
+     * @see bt.types.Killable#kill()
+     */
+    @Override
+    public void kill()
+    {
+        this.killed = true;
+
+        for (var subscriber : this.subscribers)
+        {
+            subscriber.halt();
+        }
+    }
+
+    /**
+     * Makes sure that all subscribers are still consuming, so that a dispatching thread that waits for space does not
+     * wait forever.
+     *
+     * @throws IllegalStateException
+     *             If this instance was killed or a subscriber stopped.
+     */
+    private void checkRunning()
+    {
+        if (this.killed)
+        {
+            throw new IllegalStateException("The dispatcher was killed while waiting for space in the ring buffer.");
+        }
+
+        for (var subscriber : this.subscribers)
+        {
+            if (!subscriber.isRunning())
+            {
+                throw new IllegalStateException("A subscriber stopped while waiting for space in the ring buffer.");
+            }
+        }
+    }
+
+    /**
+     * Gets the strategy that subscribers use while waiting for data.
+     *
+     * @return
+     */
+    public WaitStrategy getWaitStrategy()
+    {
+        return this.waitStrategy;
+    }
+
+    /**
+     * Gets the number of slots of the ring buffer.
+     *
+     * @return
+     */
+    public int getSize()
+    {
+        return this.entries.length;
+    }
+
+    /**
+     * Gets the number of dispatched data elements that were not consumed by all subscribers yet.
+     *
+     * @return
+     */
+    public long getBacklog()
+    {
+        long cursor = this.cursor.get();
+        return cursor - getMinimumSequence(cursor);
+    }
+
+    /**
+     * Gets the data at the given sequence.
+     *
+     * @param sequence
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    T get(long sequence)
+    {
+        return (T)this.entries[(int)(sequence & this.mask)];
+    }
+
+    /**
+     * Gets the highest sequence starting at the given one up to which all data has been published.
+     *
+     * @param lowerBound
+     * @return The highest published sequence or a value lower than the given one if the data at the given sequence
+     *         has not been published yet.
+     */
+    long getHighestPublished(long lowerBound)
+    {
+        long upperBound = this.cursor.get();
+
+        for (long sequence = lowerBound; sequence <= upperBound; sequence ++ )
+        {
+            if (this.published.get((int)(sequence & this.mask)) != (int)(sequence >>> this.shift))
+            {
+                return sequence - 1;
+            }
+        }
+
+        return upperBound;
+    }
+
+    /**
+     * Gets the lowest sequence of all subscribers.
+     *
+     * @param defaultValue
+     *            The value to return if there are no subscribers.
+     * @return
+     */
+    private long getMinimumSequence(long defaultValue)
+    {
+        long min = defaultValue;
+
+        for (var subscriber : this.subscribers)
+        {
+            min = Math.min(min, subscriber.sequence().get());
+        }
+
+        return min;
+    }
+}
@@ -0,0 +1,268 @@
+package bt.runtime.evnt;
+
+import java.util.AbstractList;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+import bt.log.Log;
+
+/**
+ * A subscriber of a {@link RingBufferDispatcher} that consumes the published data on its own thread.
+ *
+ * <p>
+ * Each instance tracks its progress through the ring buffer in its own sequence. It waits until new data is available
+ * and then passes all of the available data to its consumer as one batch before it publishes its new progress. If the
+ * subscriber depends on other subscribers it only receives data after all of them have consumed it.
+ * </p>
+ *
+ * <p>
+ * A {@link BatchConsumer} receives the whole batch in a single call. The list is a view of the ring buffer that is
+ * reused for every batch, so it must not be kept after the call returns. Other consumers receive the data one by one.
+ * If the consumer throws an {@link Error} the subscriber stops, which makes further dispatches fail instead of
+ * blocking.
+ * </p>
+ *
+ * @author &#8904
+ * @param <T>
+ *            The type of data that this subscriber receives.
+ */
+public class RingSubscriber<T>
+{
+    /** The dispatcher that this subscriber consumes from. */
+    private final RingBufferDispatcher<T> dispatcher;
+
+    /** The consumer that the data is passed to. */
+    private final Consumer<T> consumer;
+
+    /** The consumer cast to a {@link BatchConsumer} or null if it does not implement that interface. */
+    private final BatchConsumer<T> batchConsumer;
+
+    /** The reusable view of the current batch. */
+    private final Batch batch;
+
+    /** The sequences of the subscribers that have to consume data before this one. */
+    private final Sequence[] dependencies;
+
+    /** The sequence of the last consumed data. */
+    private final Sequence sequence;
+
+    /** Indicates whether this subscriber is still consuming. */
+    private volatile boolean running;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param dispatcher
+     * @param consumer
+     * @param dependencies
+     *            The sequences of the subscribers that have to consume data before this one.
+     */
+    RingSubscriber(RingBufferDispatcher<T> dispatcher, Consumer<T> consumer, Sequence[] dependencies)
+    {
+        this.dispatcher = dispatcher;
+        this.consumer = consumer;
+        this.batchConsumer = consumer instanceof BatchConsumer ? (BatchConsumer<T>)consumer : null;
+        this.batch = new Batch();
+        this.sequence = new Sequence(-1);
+        this.dependencies = dependencies;
+    }
+
+    /**
+     * Starts consuming on a thread of the given executor.
+     *
+     * @param executor
+     */
+    void start(Executor executor)
+    {
+        this.running = true;
+        executor.execute(this::consume);
+    }
+
+    /**
+     * Consumes data until this subscriber is {@link #halt() halted}.
+     */
+    private void consume()
+    {
+        try
+        {
+            long next = this.sequence.get() + 1;
+
+            while (this.running)
+            {
+                long available = waitFor(next);
+
+                if (available < next)
+                {
+                    continue;
+                }
+
+                if (this.batchConsumer != null)
+                {
+                    consumeBatch(next, available);
+                }
+                else
+                {
+                    for (long s = next; s <= available; s ++ )
+                    {
+                        try
+                        {
+                            this.consumer.accept(this.dispatcher.get(s));
+                        }
+                        catch (Exception e)
+                        {
+                            Log.error("Failed to consume data", e);
+                        }
+                    }
+                }
+
+                this.sequence.set(available);
+                next = available + 1;
+            }
+        }
+        finally
+        {
+            // also reached if the consumer threw an Error, so that dispatching threads notice that this one is gone
+            this.running = false;
+        }
+    }
+
+    /**
+     * Passes the data from the given first to the given last sequence to the batch consumer in a single call.
+     *
+     * @param first
+     * @param last
+     */
+    private void consumeBatch(long first, long last)
+    {
+        this.batch.first = first;
+        this.batch.size = (int)(last - first + 1);
+
+        try
+        {
+            this.batchConsumer.acceptAll(this.batch);
+        }
+        catch (Exception e)
+        {
+            Log.error("Failed to consume data", e);
+        }
+    }
+
+    /**
+     * Waits until data at the given sequence can be consumed.
+     *
+     * @param next
+     *            The sequence of the next data to consume.
+     * @return The highest sequence that can be consumed, which is lower than the given one if this subscriber was
+     *         halted while waiting.
+     */
+    private long waitFor(long next)
+    {
+        WaitStrategy waitStrategy = this.dispatcher.getWaitStrategy();
+        int counter = 0;
+        long available;
+
+        while ((available = getAvailable(next)) < next && this.running)
+        {
+            waitStrategy.idle(counter ++ );
+        }
+
+        return available;
+    }
+
+    /**
+     * Gets the highest sequence that this subscriber could consume right now.
+     *
+     * @param next
+     * @return
+     */
+    private long getAvailable(long next)
+    {
+        if (this.dependencies.length == 0)
+        {
+            return this.dispatcher.getHighestPublished(next);
+        }
+
+        long min = Long.MAX_VALUE;
+
+        for (int i = 0; i < this.dependencies.length; i ++ )
+        {
+            min = Math.min(min, this.dependencies[i].get());
+        }
+
+        return min;
+    }
+
+    /**
+     * Stops this subscriber after the current batch.
+     */
+    void halt()
+    {
+        this.running = false;
+    }
+
+    /**
+     * Gets the sequence of the last data that was consumed by this subscriber.
+     *
+     * @return
+     */
+    public long getSequence()
+    {
+        return this.sequence.get();
+    }
+
+    /**
+     * Gets the consumer that the data is passed to.
+     *
+     * @return
+     */
+    public Consumer<T> getConsumer()
+    {
+        return this.consumer;
+    }
+
+    /**
+     * Indicates whether this subscriber is currently consuming.
+     *
+     * @return
+     */
+    public boolean isRunning()
+    {
+        return this.running;
+    }
+
+    /**
+     * Gets the internal sequence.
+     *
+     * @return
+     */
+    Sequence sequence()
+    {
+        return this.sequence;
+    }
+
+    /**
+     * An unmodifiable view of a range of sequences of the ring buffer.
+     */
+    private final class Batch extends AbstractList<T>
+    {
+        private long first;
+        private int size;
+
+        @Override
+        public T get(int index)
+        {
+            if (index < 0 || index >= this.size)
+            {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + this.size);
+            }
+
+            return RingSubscriber.this.dispatcher.get(this.first + index);
+        }
+
+        @Override
+        public int size()
+        {
+            return this.size;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package bt.runtime.evnt;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Padding to keep the sequence value on its own cache line.
+ */
+abstract class SequenceLeftPadding
+{
+    protected long p1, p2, p3, p4, p5, p6, p7;
+}
+
+/**
+ * The actual sequence value.
+ */
+abstract class SequenceValue extends SequenceLeftPadding
+{
+    protected volatile long value;
+}
+
+/**
+ * Padding to keep the sequence value on its own cache line.
+ */
+abstract class SequenceRightPadding extends SequenceValue
+{
+    protected long p9, p10, p11, p12, p13, p14, p15;
+}
+
+/**
+ * A cache line padded sequence number that is used to track the progress of a {@link RingSubscriber}.
+ *
+ * @author &#8904
+ */
+class Sequence extends SequenceRightPadding
+{
+    private static final VarHandle VALUE;
+
+    static
+    {
+        try
+        {
+            VALUE = MethodHandles.lookup().findVarHandle(SequenceValue.class, "value", long.class);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Creates a new instance with the given initial value.
+     *
+     * @param initial
+     */
+    Sequence(long initial)
+    {
+        this.value = initial;
+    }
+
+    /**
+     * Gets the current value with volatile semantics.
+     *
+     * @return
+     */
+    long get()
+    {
+        return this.value;
+    }
+
+    /**
+     * Sets the given value with release semantics, which is enough for a single writer.
+     *
+     * @param value
+     */
+    void set(long value)
+    {
+        VALUE.setRelease(this, value);
+    }
+}
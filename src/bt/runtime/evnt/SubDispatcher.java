@@ -1,9 +1,16 @@
 package bt.runtime.evnt;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Dispatches data of a specific type to all subscribers.
@@ -14,23 +21,43 @@ import java.util.function.Consumer;
  */
 public class SubDispatcher<T>
 {
-    /** A list of {@link Consumer} subscribers. */
-    private List<Consumer<T>> consumers;
+    /**
+     * The current immutable snapshot of all subscribers, sorted in execution order. The array is never modified after
+     * it was published, changes swap in a new array instead.
+     */
+    private final AtomicReference<Subscriber<T>[]> subscribers;
 
-    /** A list of {@link Runnable} subscribers. */
-    private List<Runnable> runnables;
+    /**
+     * The current immutable snapshot of all key indexes, one per name or distinct unnamed key extractor. The matching
+     * keyed subscribers are merged into the execution order of the subscribers in {@link #subscribers}. Changes of the
+     * set of indexes and new keyed subscriptions synchronize on this reference, so that an index is never removed
+     * while a subscriber is added to it.
+     */
+    private final AtomicReference<KeyIndex<T>[]> keyIndexes;
 
     /** The subscribed type. */
     private Class<T> type;
 
+    /**
+     * The queue of references to weakly subscribed instances that were garbage collected. Only created once the first
+     * weak subscription is made, so that instances without weak subscribers do not need to check it.
+     */
+    private volatile ReferenceQueue<Object> referenceQueue;
+
+    /** The statistics to record invocations in or null if statistics are disabled. */
+    private volatile DispatchStatistics statistics;
+
+    /** The handler for exceptions thrown by subscribers or null to rethrow them. */
+    private volatile DispatchErrorHandler errorHandler;
+
     /**
      * Creates a new instance.
      */
     protected SubDispatcher(Class<T> type)
     {
         this.type = type;
-        this.consumers = new CopyOnWriteArrayList<>();
-        this.runnables = new CopyOnWriteArrayList<>();
+        this.subscribers = new AtomicReference<>(Subscriber.empty());
+        this.keyIndexes = new AtomicReference<>(KeyIndex.newArray(0));
     }
 
     /**
@@ -52,7 +79,75 @@ public class SubDispatcher<T>
      */
     protected void subscribe(Consumer<T> consumer)
     {
-        this.consumers.add(consumer);
+        subscribe(consumer, Dispatcher.DEFAULT_PRIORITY);
+    }
+
+    /**
+     * Adds the given consumer to the list of subscribers with the given priority. Subscribers with a higher priority
+     * are executed earlier.
+     *
+     * @param consumer
+     *            The new subscriber.
+     * @param priority
+     *            The priority of the subscriber.
+     */
+    protected void subscribe(Consumer<T> consumer, int priority)
+    {
+        subscribe(new Subscriber<>(consumer, priority));
+    }
+
+    /**
+     * Adds the given consumer to the list of subscribers while only holding a weak reference to it.
+     *
+     * <p>
+     * The subscription is removed automatically after the consumer was garbage collected, so the caller has to keep a
+     * strong reference to the consumer for as long as it should receive data.
+     * </p>
+     *
+     * @param consumer
+     *            The new subscriber.
+     * @param priority
+     *            The priority of the subscriber.
+     */
+    protected void subscribeWeakly(Consumer<T> consumer, int priority)
+    {
+        var weak = new WeakConsumer<T>(consumer, getReferenceQueue());
+        subscribe(new Subscriber<>(weak.getReference(), weak, false, priority));
+
+        // if the consumer was collected before the handle was published, purging its reference would not find the
+        // handle and the subscription would never be removed
+        Reference.reachabilityFence(consumer);
+    }
+
+    /**
+     * Adds the given consumer as a subscriber that only receives data whichs extracted key equals the given key.
+     *
+     * <p>
+     * Subscribers of the same index share its key extractor, so that dispatching only needs to extract the key once per
+     * index and look up the matching subscribers. Named indexes are identified by their name and only use the key
+     * extractor of the first subscription. Unnamed indexes are identified by the key extractor instance, which should
+     * therefore be stored and reused instead of i.e. writing a new method reference for every subscription. Keyed
+     * subscribers are executed in the order of their priority together with all other subscribers of this instance. For
+     * equal priorities they are executed after the non-keyed {@link Consumer} subscribers.
+     * </p>
+     *
+     * @param index
+     *            The name of the index or null to identify it by the key extractor.
+     * @param keyExtractor
+     *            The function to extract the key from dispatched data.
+     * @param key
+     *            The key that data has to have to be passed to the consumer. Must not be null.
+     * @param consumer
+     *            The new subscriber.
+     * @param priority
+     *            The priority of the subscriber.
+     */
+    protected <K> void subscribe(String index, Function<T, K> keyExtractor, K key, Consumer<T> consumer, int priority)
+    {
+        synchronized (this.keyIndexes)
+        {
+            getKeyIndex(index, keyExtractor).subscribe(key, new Subscriber<>(consumer, priority));
+        }
     }
 
     /**
@@ -68,7 +163,38 @@ public class SubDispatcher<T>
      */
     protected boolean unsubscribe(Consumer<T> consumer)
     {
-        return this.consumers.remove(consumer);
+        return remove(consumer);
+    }
+
+    /**
+     * Removes the given consumer from the subscribers of the given key.
+     *
+     * <p>
+     * This is faster than {@link #unsubscribe(Consumer)} for keyed subscribers, since only the subscribers of the given
+     * key need to be checked.
+     * </p>
+     *
+     * @param key
+     *            The key that the consumer was subscribed with.
+     * @param consumer
+     *            The subscriber to remove.
+     * @return true if the given consumer was subscribed to the given key.
+     */
+    protected boolean unsubscribe(Object key, Consumer<T> consumer)
+    {
+        for (var index : this.keyIndexes.get())
+        {
+            Subscriber<T> removed = index.unsubscribe(key, consumer);
+
+            if (removed != null)
+            {
+                removed(removed);
+                prune(index);
+                return true;
+            }
+        }
+
+        return false;
     }
 
     /**
@@ -80,7 +206,38 @@ public class SubDispatcher<T>
      */
     protected void subscribe(Runnable runnable)
     {
-        this.runnables.add(runnable);
+        subscribe(runnable, Dispatcher.DEFAULT_PRIORITY);
+    }
+
+    /**
+     * Adds the given runnable to the list of subscribers with the given priority. Subscribers with a higher priority
+     * are executed earlier.
+     *
+     * @param runnable
+     *            The new subscriber.
+     * @param priority
+     *            The priority of the subscriber.
+     */
+    protected void subscribe(Runnable runnable, int priority)
+    {
+        subscribe(new Subscriber<>(runnable, priority));
+    }
+
+    /**
+     * Adds the given runnable to the list of subscribers while only holding a weak reference to it.
+     *
+     * @param runnable
+     *            The new subscriber.
+     * @param priority
+     *            The priority of the subscriber.
+     *
+     * @see #subscribeWeakly(Consumer, int)
+     */
+    protected void subscribeWeakly(Runnable runnable, int priority)
+    {
+        var weak = new WeakConsumer<T>(runnable, getReferenceQueue());
+        subscribe(new Subscriber<>(weak.getReference(), weak, true, priority));
+        Reference.reachabilityFence(runnable);
     }
 
     /**
@@ -96,14 +253,23 @@ public class SubDispatcher<T>
      */
     protected boolean unsubscribe(Runnable runnable)
     {
-        return this.runnables.remove(runnable);
+        return remove(runnable);
     }
 
     /**
      * Dispatches the given data to all subscribers.
      *
      * <p>
-     * The {@link Consumer} subscribers will be executed before the {@link Runnable} ones.
+     * Subscribers are executed in the order of their priority, highest first. For equal priorities the {@link Consumer}
+     * subscribers will be executed before the {@link Runnable} ones, and the non-keyed Consumers before the keyed
+     * subscribers of the key of the data. If the data is {@link Cancellable} and is cancelled by a subscriber, no
+     * further subscribers will receive it.
+     * </p>
+     *
+     * <p>
+     * If a subscriber or a key extractor throws an exception and an {@link DispatchErrorHandler error handler} is set,
+     * the exception is passed to the handler and the remaining subscribers still receive the data. Without a handler the exception is
+     * rethrown and the remaining subscribers are skipped.
      * </p>
      *
      * @param data
@@ -112,28 +278,552 @@ public class SubDispatcher<T>
      * @return The number of subscribers that received the data.
      */
     protected int dispatch(T data)
+    {
+        if (this.referenceQueue != null)
+        {
+            purge();
+        }
+
+        Subscriber<T>[] subs = this.subscribers.get();
+        KeyIndex<T>[] indexes = this.keyIndexes.get();
+
+        for (int i = 0; i < indexes.length; i ++ )
+        {
+            subs = Subscriber.merge(subs, getKeyedSubscribers(indexes[i], data));
+        }
+
+        DispatchStatistics statistics = this.statistics;
+
+        if (statistics != null)
+        {
+            return dispatch(data, subs, statistics, data instanceof Cancellable ? (Cancellable)data : null);
+        }
+
+        if (data instanceof Cancellable)
+        {
+            return dispatchUntilCancelled(data, (Cancellable)data, subs);
+        }
+
+        return dispatch(data, subs);
+    }
+
+    /**
+     * Dispatches the given data to the given subscribers.
+     *
+     * <p>
+     * The try block surrounds the whole loop instead of each invocation, so that the loop is left and re-entered at the
+     * next subscriber only if an exception is actually thrown.
+     * </p>
+     *
+     * @param data
+     * @param subs
+     * @return The number of subscribers that received the data.
+     */
+    private int dispatch(T data, Subscriber<T>[] subs)
     {
         int i = 0;
 
-        for (var consumer : this.consumers)
+        while (i < subs.length)
         {
-            consumer.accept(data);
-            i ++ ;
+            try
+            {
+                for (; i < subs.length; i ++ )
+                {
+                    subs[i].dispatch(data);
+                }
+            }
+            catch (RuntimeException e)
+            {
+                handleError(subs[i ++ ], data, e);
+            }
         }
 
-        for (var runnable : this.runnables)
+        return subs.length;
+    }
+
+    /**
+     * Dispatches the given cancellable data to the given subscribers until it is cancelled.
+     *
+     * @param data
+     * @param cancellable
+     *            The same instance as data.
+     * @param subs
+     * @return The number of subscribers that received the data.
+     */
+    private int dispatchUntilCancelled(T data, Cancellable cancellable, Subscriber<T>[] subs)
+    {
+        int i = 0;
+
+        while (i < subs.length && !cancellable.isCancelled())
         {
-            runnable.run();
-            i ++ ;
+            try
+            {
+                for (; i < subs.length && !cancellable.isCancelled(); i ++ )
+                {
+                    subs[i].dispatch(data);
+                }
+            }
+            catch (RuntimeException e)
+            {
+                handleError(subs[i ++ ], data, e);
+            }
         }
 
         return i;
     }
 
+    /**
+     * Dispatches the given data to the given subscribers while recording each invocation in the given statistics.
+     *
+     * @param data
+     * @param subs
+     * @param statistics
+     * @param cancellable
+     *            The data if it is {@link Cancellable}, otherwise null.
+     * @return The number of subscribers that received the data.
+     */
+    private int dispatch(T data, Subscriber<T>[] subs, DispatchStatistics statistics, Cancellable cancellable)
+    {
+        int i = 0;
+
+        for (; i < subs.length; i ++ )
+        {
+            if (cancellable != null && cancellable.isCancelled())
+            {
+                break;
+            }
+
+            try
+            {
+                statistics.invoke(subs[i], this.type, data);
+            }
+            catch (RuntimeException e)
+            {
+                handleError(subs[i], data, e);
+            }
+        }
+
+        return i;
+    }
+
+    /**
+     * Dispatches data that a {@link Dispatcher} routed to this instance.
+     *
+     * <p>
+     * Routes only contain SubDispatchers whichs type is assignable from the class of the data, so the data is always of
+     * type T.
+     * </p>
+     *
+     * @param data
+     * @return The number of subscribers that received the data.
+     */
+    @SuppressWarnings("unchecked")
+    int dispatchRouted(Object data)
+    {
+        return dispatch((T)data);
+    }
+
+    /**
+     * Dispatches all of the given data to all subscribers.
+     *
+     * <p>
+     * Subscribers are executed in the same order as in {@link #dispatch(Object)}. Each subscriber receives the whole
+     * batch before the next one is executed. Keyed subscribers only receive the elements of their key. {@link
+     * BatchConsumer}s receive their elements in a single call. Cancellation is not checked, so {@link Cancellable} data
+     * should be passed to {@link #dispatch(Object)} instead. If a subscriber fails, the error handler receives the
+     * elements that were passed to it.
+     * </p>
+     *
+     * @param batch
+     *            The objects to dispatch.
+     *
+     * @return The number of times that data was received by a subscriber.
+     */
+    protected int dispatchAll(List<T> batch)
+    {
+        if (this.referenceQueue != null)
+        {
+            purge();
+        }
+
+        Subscriber<T>[] subs = this.subscribers.get();
+        Map<Subscriber<T>, List<T>> keyedBatches = getKeyedBatches(batch);
+
+        if (!keyedBatches.isEmpty())
+        {
+            Subscriber<T>[] keyed = keyedBatches.keySet().toArray(Subscriber.newArray(keyedBatches.size()));
+            Arrays.sort(keyed, (a, b) -> a.runsBefore(b) ? -1 : b.runsBefore(a) ? 1 : 0);
+            subs = Subscriber.merge(subs, keyed);
+        }
+
+        DispatchStatistics statistics = this.statistics;
+        int count = 0;
+        int i = 0;
+
+        while (i < subs.length)
+        {
+            List<T> data = batch;
+
+            try
+            {
+                for (; i < subs.length; i ++ )
+                {
+                    List<T> keyedBatch = keyedBatches.get(subs[i]);
+                    data = keyedBatch == null ? batch : keyedBatch;
+                    count += data.size();
+
+                    if (statistics != null)
+                    {
+                        statistics.invokeAll(subs[i], this.type, data);
+                    }
+                    else
+                    {
+                        subs[i].dispatchAll(data);
+                    }
+                }
+            }
+            catch (RuntimeException e)
+            {
+                handleError(subs[i ++ ], data, e);
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Dispatches a batch that a {@link Dispatcher} routed to this instance.
+     *
+     * @param batch
+     *            Data elements whichs class is assignable to the type of this instance.
+     * @return The number of times that data was received by a subscriber.
+     *
+     * @see #dispatchRouted(Object)
+     */
+    @SuppressWarnings("unchecked")
+    int dispatchAllRouted(List<?> batch)
+    {
+        return dispatchAll((List<T>)batch);
+    }
+
+    /**
+     * Collects the elements of the given batch per keyed subscriber that they have to be passed to.
+     *
+     * @param batch
+     * @return A map of keyed subscriber handle to its unmodifiable list of elements in the order of the batch. Handles
+     *         are compared by identity.
+     */
+    private Map<Subscriber<T>, List<T>> getKeyedBatches(List<T> batch)
+    {
+        KeyIndex<T>[] indexes = this.keyIndexes.get();
+
+        if (indexes.length == 0)
+        {
+            return Collections.emptyMap();
+        }
+
+        var keyedBatches = new LinkedHashMap<Subscriber<T>, List<T>>();
+
+        for (int j = 0; j < batch.size(); j ++ )
+        {
+            T data = batch.get(j);
+
+            for (var index : indexes)
+            {
+                for (var sub : getKeyedSubscribers(index, data))
+                {
+                    keyedBatches.computeIfAbsent(sub, s -> new ArrayList<>()).add(data);
+                }
+            }
+        }
+
+        keyedBatches.replaceAll((sub, list) -> Collections.unmodifiableList(list));
+
+        return keyedBatches;
+    }
+
+    /**
+     * Gets the subscribers of the given index for the key of the given data.
+     *
+     * <p>
+     * If the key extractor of the index throws an exception, the exception is passed to the error handler like one
+     * thrown by a subscriber and the data is not passed to any subscriber of the index.
+     * </p>
+     *
+     * @param index
+     * @param data
+     * @return The subscribers in execution order, which is an empty array if there are none or the key extractor
+     *         failed.
+     */
+    private Subscriber<T>[] getKeyedSubscribers(KeyIndex<T> index, T data)
+    {
+        try
+        {
+            return index.getSubscribers(data);
+        }
+        catch (RuntimeException e)
+        {
+            handleError(index.getKeyExtractorConsumer(), data, e);
+            return Subscriber.empty();
+        }
+    }
+
+    /**
+     * Passes the given exception to the error handler or rethrows it if no handler is set.
+     *
+     * @param subscriber
+     *            The subscriber that threw the exception.
+     * @param data
+     *            The data or batch that the subscriber received.
+     * @param e
+     */
+    private void handleError(Subscriber<T> subscriber, Object data, RuntimeException e)
+    {
+        handleError(subscriber.getConsumer(), data, e);
+    }
+
+    /**
+     * Passes the given exception to the error handler or rethrows it if no handler is set.
+     *
+     * @param consumer
+     *            The consumer that is reported as the failed subscriber.
+     * @param data
+     *            The data or batch that could not be delivered.
+     * @param e
+     */
+    private void handleError(Consumer<T> consumer, Object data, RuntimeException e)
+    {
+        DispatchErrorHandler errorHandler = this.errorHandler;
+
+        if (errorHandler == null)
+        {
+            throw e;
+        }
+
+        errorHandler.handle(data, consumer, e);
+    }
+
+    /**
+     * Sets the handler that receives exceptions thrown by subscribers of this instance.
+     *
+     * @param errorHandler
+     *            The handler or null to rethrow exceptions.
+     */
+    void setErrorHandler(DispatchErrorHandler errorHandler)
+    {
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Sets the statistics that all invocations of subscribers of this instance are recorded in.
+     *
+     * @param statistics
+     *            The statistics or null to stop recording.
+     */
+    void setStatistics(DispatchStatistics statistics)
+    {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Removes all subscribers from this instance.
+     */
     public void clear()
     {
-        this.consumers.clear();
-        this.runnables.clear();
+        for (var subscriber : this.subscribers.getAndSet(Subscriber.empty()))
+        {
+            removed(subscriber);
+        }
+
+        KeyIndex<T>[] indexes;
+
+        synchronized (this.keyIndexes)
+        {
+            indexes = this.keyIndexes.getAndSet(KeyIndex.newArray(0));
+        }
+
+        for (var index : indexes)
+        {
+            for (var subscriber : index.getAllSubscribers())
+            {
+                removed(subscriber);
+            }
+        }
+    }
+
+    /**
+     * Atomically publishes a new snapshot that contains the given subscriber.
+     *
+     * <p>
+     * The subscriber is inserted behind all subscribers that {@link Subscriber#runsBefore run before} it or have the
+     * same order, so that the execution order is resolved here instead of during {@link #dispatch(Object)}.
+     * </p>
+     *
+     * @param subscriber
+     */
+    void subscribe(Subscriber<T> subscriber)
+    {
+        if (this.referenceQueue != null)
+        {
+            purge();
+        }
+
+        Subscriber<T>[] current;
+        Subscriber<T>[] updated;
+
+        do
+        {
+            current = this.subscribers.get();
+            updated = Subscriber.insert(current, subscriber);
+        }
+        while (!this.subscribers.compareAndSet(current, updated));
+    }
+
+    /**
+     * Gets the key index with the given name or, if the name is null, the unnamed index of the given key extractor
+     * instance, creating and publishing a new one if needed. Callers must synchronize on {@link #keyIndexes}.
+     *
+     * @param name
+     * @param keyExtractor
+     * @return
+     */
+    private KeyIndex<T> getKeyIndex(String name, Function<T, ?> keyExtractor)
+    {
+        KeyIndex<T>[] current = this.keyIndexes.get();
+
+        for (var index : current)
+        {
+            if (index.matches(name, keyExtractor))
+            {
+                return index;
+            }
+        }
+
+        var created = new KeyIndex<>(name, keyExtractor);
+        KeyIndex<T>[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = created;
+        this.keyIndexes.set(updated);
+
+        return created;
+    }
+
+    /**
+     * Removes the given key index if it no longer has any subscribers.
+     *
+     * @param index
+     */
+    private void prune(KeyIndex<T> index)
+    {
+        synchronized (this.keyIndexes)
+        {
+            KeyIndex<T>[] current = this.keyIndexes.get();
+
+            if (!index.isEmpty())
+            {
+                return;
+            }
+
+            for (int i = 0; i < current.length; i ++ )
+            {
+                if (current[i] == index)
+                {
+                    KeyIndex<T>[] updated = KeyIndex.newArray(current.length - 1);
+                    System.arraycopy(current, 0, updated, 0, i);
+                    System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                    this.keyIndexes.set(updated);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the queue for references to weakly subscribed instances, creating it if needed.
+     *
+     * @return
+     */
+    private synchronized ReferenceQueue<Object> getReferenceQueue()
+    {
+        if (this.referenceQueue == null)
+        {
+            this.referenceQueue = new ReferenceQueue<>();
+        }
+
+        return this.referenceQueue;
+    }
+
+    /**
+     * Removes the subscriptions of all weakly subscribed instances that were garbage collected.
+     */
+    private void purge()
+    {
+        Reference<?> reference;
+
+        while ((reference = this.referenceQueue.poll()) != null)
+        {
+            remove(reference);
+        }
+    }
+
+    /**
+     * Atomically publishes a new snapshot that no longer contains the first handle wrapping the given subscriber. If
+     * no such handle is found, the given subscriber is removed from the first key index that contains it.
+     *
+     * @param subscriber
+     * @return true if the given subscriber was found and removed.
+     */
+    private boolean remove(Object subscriber)
+    {
+        Subscriber<T>[] current;
+        Subscriber<T>[] updated;
+        int i;
+
+        do
+        {
+            current = this.subscribers.get();
+            i = Subscriber.indexOf(current, subscriber);
+
+            if (i < 0)
+            {
+                for (var index : this.keyIndexes.get())
+                {
+                    Subscriber<T> removed = index.unsubscribe(subscriber);
+
+                    if (removed != null)
+                    {
+                        removed(removed);
+                        prune(index);
+                        return true;
+                    }
+                }
+
+                return false;
+            }
+
+            updated = Subscriber.remove(current, subscriber);
+        }
+        while (!this.subscribers.compareAndSet(current, updated));
+
+        removed(current[i]);
+
+        return true;
+    }
+
+    /**
+     * Discards the statistics of the given handle after it was removed, so that the statistics don't keep the
+     * subscriber reachable.
+     *
+     * @param subscriber
+     */
+    private void removed(Subscriber<T> subscriber)
+    {
+        subscriber.markUnsubscribed();
+        DispatchStatistics statistics = this.statistics;
+
+        if (statistics != null)
+        {
+            statistics.remove(subscriber);
+        }
     }
 
     /**
@@ -148,9 +838,18 @@ public class SubDispatcher<T>
      */
     public List<Consumer<T>> getSubscribers()
     {
-        var list = new ArrayList<Consumer<T>>();
-        list.addAll(this.consumers);
-        this.runnables.forEach(r -> list.add((d) -> r.run()));
+        Subscriber<T>[] subs = this.subscribers.get();
+        var list = new ArrayList<Consumer<T>>(subs.length);
+
+        for (var sub : subs)
+        {
+            list.add(sub.getConsumer());
+        }
+
+        for (var index : this.keyIndexes.get())
+        {
+            index.addSubscribersTo(list);
+        }
 
         return list;
     }
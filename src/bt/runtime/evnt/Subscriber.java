@@ -0,0 +1,363 @@
+package bt.runtime.evnt;
+
+import java.lang.ref.Reference;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * An immutable handle for a single subscriber of a {@link SubDispatcher}.
+ *
+ * <p>
+ * The handle keeps the originally subscribed instance (either a {@link Consumer} or a {@link Runnable}) so that it can
+ * be found again on unsubscription, and a consumer that is used to actually pass the data during dispatching.
+ * </p>
+ *
+ * @author &#8904
+ * @param <T>
+ *            The type of data that this subscriber receives.
+ */
+class Subscriber<T>
+{
+    /** An empty subscriber array shared by all types, see {@link #empty()}. */
+    private static final Subscriber<?>[] EMPTY = new Subscriber<?>[0];
+
+    /** The instance that was originally subscribed or a {@link Reference} to it. */
+    private final Object subscriber;
+
+    /** The consumer that is executed during dispatching. */
+    private final Consumer<T> consumer;
+
+    /** The consumer cast to a {@link BatchConsumer} or null if it does not implement that interface. */
+    private final BatchConsumer<T> batchConsumer;
+
+    /** Indicates whether the original subscriber is a {@link Runnable}. */
+    private final boolean runnable;
+
+    /** The priority of this subscriber. The higher the priority, the earlier the subscriber is executed. */
+    private final int priority;
+
+    /** Indicates whether this handle was unsubscribed. */
+    private volatile boolean unsubscribed;
+
+    /**
+     * Creates a new handle for the given consumer.
+     *
+     * @param consumer
+     * @param priority
+     */
+    Subscriber(Consumer<T> consumer, int priority)
+    {
+        this(consumer, consumer, false, priority);
+    }
+
+    /**
+     * Creates a new handle for the given runnable.
+     *
+     * @param runnable
+     * @param priority
+     */
+    Subscriber(Runnable runnable, int priority)
+    {
+        this(runnable, d -> runnable.run(), true, priority);
+    }
+
+    /**
+     * Creates a new handle for the given subscriber which is executed via the given consumer.
+     *
+     * @param subscriber
+     *            The originally subscribed instance or a {@link Reference} to it for weak subscriptions.
+     * @param consumer
+     *            The consumer that is executed during dispatching, i.e. an {@link AsyncConsumer} or
+     *            {@link WeakConsumer} wrapping the subscriber.
+     * @param runnable
+     *            true if the original subscriber is a {@link Runnable}.
+     * @param priority
+     *            The higher the priority, the earlier the subscriber is executed.
+     */
+    Subscriber(Object subscriber, Consumer<T> consumer, boolean runnable, int priority)
+    {
+        this.subscriber = subscriber;
+        this.consumer = consumer;
+        this.batchConsumer = consumer instanceof BatchConsumer ? (BatchConsumer<T>)consumer : null;
+        this.runnable = runnable;
+        this.priority = priority;
+    }
+
+    /**
+     * Passes the given data to the subscriber.
+     *
+     * @param data
+     */
+    void dispatch(T data)
+    {
+        this.consumer.accept(data);
+    }
+
+    /**
+     * Passes all of the given data to the subscriber, in a single call if it is a {@link BatchConsumer}.
+     *
+     * @param batch
+     */
+    void dispatchAll(List<T> batch)
+    {
+        if (this.batchConsumer != null)
+        {
+            this.batchConsumer.acceptAll(batch);
+        }
+        else
+        {
+            for (int i = 0; i < batch.size(); i ++ )
+            {
+                this.consumer.accept(batch.get(i));
+            }
+        }
+    }
+
+    /**
+     * Indicates whether this handle wraps the given subscriber instance.
+     *
+     * <p>
+     * For weak subscriptions this is true for both the subscriber itself while it is still reachable and for the
+     * {@link Reference} to it.
+     * </p>
+     *
+     * @param subscriber
+     * @return true if the wrapped subscriber equals the given one.
+     */
+    boolean wraps(Object subscriber)
+    {
+        if (this.subscriber.equals(subscriber))
+        {
+            return true;
+        }
+
+        return this.subscriber instanceof Reference && Objects.equals(((Reference<?>)this.subscriber).get(), subscriber);
+    }
+
+    /**
+     * Gets the class name of the subscribed instance.
+     *
+     * @return
+     */
+    String getName()
+    {
+        Object subscriber = this.subscriber;
+
+        if (subscriber instanceof Reference)
+        {
+            subscriber = ((Reference<?>)subscriber).get();
+
+            if (subscriber == null)
+            {
+                return "<collected>";
+            }
+        }
+
+        return subscriber.getClass().getName();
+    }
+
+    /**
+     * Marks this handle as unsubscribed.
+     */
+    void markUnsubscribed()
+    {
+        this.unsubscribed = true;
+    }
+
+    /**
+     * Indicates whether this handle was unsubscribed. A dispatch that started before may still pass data to it.
+     *
+     * @return
+     */
+    boolean isUnsubscribed()
+    {
+        return this.unsubscribed;
+    }
+
+    /**
+     * Gets the priority of this subscriber.
+     *
+     * @return
+     */
+    int getPriority()
+    {
+        return this.priority;
+    }
+
+    /**
+     * Indicates whether this subscriber has to be executed before the given one.
+     *
+     * <p>
+     * Subscribers with a higher priority run first. For equal priorities {@link Consumer} subscribers run before
+     * {@link Runnable} ones.
+     * </p>
+     *
+     * @param other
+     * @return true if this subscriber has to be executed first.
+     */
+    boolean runsBefore(Subscriber<?> other)
+    {
+        if (this.priority != other.priority)
+        {
+            return this.priority > other.priority;
+        }
+
+        return !this.runnable && other.runnable;
+    }
+
+    /**
+     * Gets the consumer that is executed during dispatching.
+     *
+     * @return
+     */
+    Consumer<T> getConsumer()
+    {
+        return this.consumer;
+    }
+
+    /**
+     * Gets an empty subscriber array. The array is shared, which is safe because an empty array can't be modified.
+     *
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Subscriber<T>[] empty()
+    {
+        return (Subscriber<T>[])EMPTY;
+    }
+
+    /**
+     * Creates a new subscriber array of the given length.
+     *
+     * <p>
+     * Arrays of a generic type can't be created directly, but since subscriber arrays never leave this package and
+     * only ever contain subscribers of a single type the cast is safe.
+     * </p>
+     *
+     * @param length
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Subscriber<T>[] newArray(int length)
+    {
+        return (Subscriber<T>[])new Subscriber<?>[length];
+    }
+
+    /**
+     * Creates a new array that contains all of the given subscribers and the new one at its sorted position.
+     *
+     * <p>
+     * The new subscriber is inserted behind all subscribers that {@link #runsBefore run before} it or have the same
+     * order.
+     * </p>
+     *
+     * @param subscribers
+     *            The current subscribers in execution order. This array is not modified.
+     * @param subscriber
+     *            The subscriber to add.
+     * @return A new array with the subscribers in execution order.
+     */
+    static <T> Subscriber<T>[] insert(Subscriber<T>[] subscribers, Subscriber<T> subscriber)
+    {
+        int index = 0;
+
+        while (index < subscribers.length && !subscriber.runsBefore(subscribers[index]))
+        {
+            index ++ ;
+        }
+
+        Subscriber<T>[] updated = newArray(subscribers.length + 1);
+        System.arraycopy(subscribers, 0, updated, 0, index);
+        updated[index] = subscriber;
+        System.arraycopy(subscribers, index, updated, index + 1, subscribers.length - index);
+
+        return updated;
+    }
+
+    /**
+     * Merges the given arrays of subscribers into a single array in execution order.
+     *
+     * <p>
+     * Subscribers of the second array are placed behind subscribers of the first array that have the same order, just
+     * like {@link #insert inserting} them one by one would.
+     * </p>
+     *
+     * @param first
+     *            Subscribers in execution order. This array is not modified.
+     * @param second
+     *            Subscribers in execution order. This array is not modified.
+     * @return A new array with all subscribers in execution order, or the first array if the second one is empty.
+     */
+    static <T> Subscriber<T>[] merge(Subscriber<T>[] first, Subscriber<T>[] second)
+    {
+        if (second.length == 0)
+        {
+            return first;
+        }
+
+        Subscriber<T>[] merged = newArray(first.length + second.length);
+        int i = 0;
+        int j = 0;
+
+        for (int k = 0; k < merged.length; k ++ )
+        {
+            if (j < second.length && (i == first.length || second[j].runsBefore(first[i])))
+            {
+                merged[k] = second[j ++ ];
+            }
+            else
+            {
+                merged[k] = first[i ++ ];
+            }
+        }
+
+        return merged;
+    }
+
+    /**
+     * Creates a new array that contains all of the given subscribers except for the first handle that
+     * {@link #wraps(Object) wraps} the given subscriber.
+     *
+     * @param subscribers
+     *            The current subscribers. This array is not modified.
+     * @param subscriber
+     *            The subscriber to remove.
+     * @return A new array without the subscriber or the given array itself if the subscriber was not found.
+     */
+    static <T> Subscriber<T>[] remove(Subscriber<T>[] subscribers, Object subscriber)
+    {
+        int i = indexOf(subscribers, subscriber);
+
+        if (i < 0)
+        {
+            return subscribers;
+        }
+
+        Subscriber<T>[] updated = newArray(subscribers.length - 1);
+        System.arraycopy(subscribers, 0, updated, 0, i);
+        System.arraycopy(subscribers, i + 1, updated, i, subscribers.length - i - 1);
+
+        return updated;
+    }
+
+    /**
+     * Finds the first handle that {@link #wraps(Object) wraps} the given subscriber.
+     *
+     * @param subscribers
+     * @param subscriber
+     * @return The index of the handle or -1 if there is none.
+     */
+    static int indexOf(Subscriber<?>[] subscribers, Object subscriber)
+    {
+        for (int i = 0; i < subscribers.length; i ++ )
+        {
+            if (subscribers[i].wraps(subscriber))
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,168 @@
+package bt.runtime.evnt;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Invocation statistics of a single subscriber of a {@link Dispatcher}, collected while {@link DispatchStatistics} are
+ * enabled.
+ *
+ * <p>
+ * Invocations are counted exactly, while invocation times are only measured for a random sample of them. All getters
+ * return the current values, which may change concurrently.
+ * </p>
+ *
+ * @author &#8904
+ */
+public class SubscriberStatistics
+{
+    /** The class name of the subscriber. */
+    private final String name;
+
+    /** The data type that the subscriber is subscribed to. */
+    private final Class<?> type;
+
+    /** The number of invocations. */
+    private final LongAdder invocations;
+
+    /** The number of invocations whichs time was measured. */
+    private final LongAdder samples;
+
+    /** The sum of all measured invocation times in nanoseconds. */
+    private final LongAdder sampledNanos;
+
+    /** The highest measured invocation time in nanoseconds. */
+    private final LongAccumulator maxNanos;
+
+    /** The number of invocations that threw an exception. */
+    private final LongAdder exceptions;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param name
+     * @param type
+     */
+    SubscriberStatistics(String name, Class<?> type)
+    {
+        this.name = name;
+        this.type = type;
+        this.invocations = new LongAdder();
+        this.samples = new LongAdder();
+        this.sampledNanos = new LongAdder();
+        this.maxNanos = new LongAccumulator(Math::max, 0);
+        this.exceptions = new LongAdder();
+    }
+
+    /**
+     * Records an invocation that was not measured.
+     */
+    void recordInvocation()
+    {
+        this.invocations.increment();
+    }
+
+    /**
+     * Records a measured invocation.
+     *
+     * @param nanos
+     *            The time that the invocation took.
+     */
+    void recordSample(long nanos)
+    {
+        this.invocations.increment();
+        this.samples.increment();
+        this.sampledNanos.add(nanos);
+        this.maxNanos.accumulate(nanos);
+    }
+
+    /**
+     * Records an invocation that threw an exception.
+     */
+    void recordException()
+    {
+        this.exceptions.increment();
+    }
+
+    /**
+     * Gets the class name of the subscriber.
+     *
+     * @return
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+
+    /**
+     * Gets the data type that the subscriber is subscribed to.
+     *
+     * @return
+     */
+    public Class<?> getType()
+    {
+        return this.type;
+    }
+
+    /**
+     * Gets the number of times that the subscriber was invoked.
+     *
+     * @return
+     */
+    public long getInvocationCount()
+    {
+        return this.invocations.sum();
+    }
+
+    /**
+     * Gets the number of invocations whichs time was measured.
+     *
+     * @return
+     */
+    public long getSampleCount()
+    {
+        return this.samples.sum();
+    }
+
+    /**
+     * Gets the average time of the measured invocations.
+     *
+     * @return The average time in nanoseconds or 0 if no invocation was measured yet.
+     */
+    public long getAverageNanos()
+    {
+        long samples = this.samples.sum();
+        return samples == 0 ? 0 : this.sampledNanos.sum() / samples;
+    }
+
+    /**
+     * Gets the longest time of the measured invocations.
+     *
+     * @return The maximum time in nanoseconds.
+     */
+    public long getMaxNanos()
+    {
+        return this.maxNanos.get();
+    }
+
+    /**
+     * Gets the number of invocations that threw an exception.
+     *
+     * @return
+     */
+    public long getExceptionCount()
+    {
+        return this.exceptions.sum();
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString()
+    {
+        return this.name + " [" + this.type.getName() + "]: " + getInvocationCount() + " invocations, "
+               + getAverageNanos() + " ns average, " + getMaxNanos() + " ns max, " + getExceptionCount()
+               + " exceptions";
+    }
+}
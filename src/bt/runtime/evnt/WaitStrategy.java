@@ -0,0 +1,80 @@
+package bt.runtime.evnt;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Defines how a {@link RingSubscriber} waits for new data of its {@link RingBufferDispatcher}.
+ *
+ * @author &#8904
+ */
+public enum WaitStrategy
+{
+    /**
+     * Spins in a tight loop. Gives the lowest latency but keeps a core busy while waiting.
+     */
+    BUSY_SPIN
+    {
+        @Override
+        void idle(int counter)
+        {
+            Thread.onSpinWait();
+        }
+    },
+
+    /**
+     * Spins for a short while and then yields the thread between checks.
+     */
+    YIELD
+    {
+        @Override
+        void idle(int counter)
+        {
+            if (counter < SPIN_TRIES)
+            {
+                Thread.onSpinWait();
+            }
+            else
+            {
+                Thread.yield();
+            }
+        }
+    },
+
+    /**
+     * Spins and yields for a short while and then parks the thread between checks. Gives the lowest CPU usage at the
+     * cost of latency.
+     */
+    PARK
+    {
+        @Override
+        void idle(int counter)
+        {
+            if (counter < SPIN_TRIES)
+            {
+                Thread.onSpinWait();
+            }
+            else if (counter < SPIN_TRIES * 2)
+            {
+                Thread.yield();
+            }
+            else
+            {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    };
+
+    /** The number of checks that are spun before backing off. */
+    private static final int SPIN_TRIES = 100;
+
+    /** The time in nanoseconds that a parked thread waits before checking again. */
+    private static final long PARK_NANOS = 50_000;
+
+    /**
+     * Waits once before the next check.
+     *
+     * @param counter
+     *            The number of times this method was called while waiting for the current sequence.
+     */
+    abstract void idle(int counter);
+}
@@ -0,0 +1,133 @@
+package bt.runtime.evnt;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A consumer that only holds a weak reference to a subscribed {@link Consumer} or {@link Runnable}.
+ *
+ * <p>
+ * Once the subscriber was garbage collected this consumer does nothing and its reference is enqueued in the given
+ * queue, so that the owning {@link SubDispatcher} can remove the subscription.
+ * </p>
+ *
+ * <p>
+ * Batches are forwarded in a single call if the subscriber is a {@link BatchConsumer}.
+ * </p>
+ *
+ * @author &#8904
+ * @param <T>
+ *            The type of data that this consumer receives.
+ */
+class WeakConsumer<T> implements BatchConsumer<T>
+{
+    /** The weak reference to the subscribed consumer or null if a {@link Runnable} was subscribed. */
+    private final WeakReference<Consumer<T>> consumer;
+
+    /** The weak reference to the subscribed runnable or null if a {@link Consumer} was subscribed. */
+    private final WeakReference<Runnable> runnable;
+
+    /**
+     * Creates a new instance for the given consumer.
+     *
+     * @param consumer
+     *            The consumer to reference weakly.
+     * @param queue
+     *            The queue that the reference is enqueued in after the consumer was collected.
+     */
+    WeakConsumer(Consumer<T> consumer, ReferenceQueue<Object> queue)
+    {
+        this.consumer = new WeakReference<>(consumer, queue);
+        this.runnable = null;
+    }
+
+    /**
+     * Creates a new instance for the given runnable.
+     *
+     * @param runnable
+     *            The runnable to reference weakly.
+     * @param queue
+     *            The queue that the reference is enqueued in after the runnable was collected.
+     */
+    WeakConsumer(Runnable runnable, ReferenceQueue<Object> queue)
+    {
+        this.consumer = null;
+        this.runnable = new WeakReference<>(runnable, queue);
+    }
+
+    /**
+     * Passes the given data to the subscriber if it was not collected yet.
+     *
+     * @see java.util.function.Consumer#accept(java.lang.Object)
+     */
+    @Override
+    public void accept(T data)
+    {
+        if (this.runnable != null)
+        {
+            Runnable subscriber = this.runnable.get();
+
+            if (subscriber != null)
+            {
+                subscriber.run();
+            }
+        }
+        else
+        {
+            Consumer<T> subscriber = this.consumer.get();
+
+            if (subscriber != null)
+            {
+                subscriber.accept(data);
+            }
+        }
+    }
+
+    /**
+     * Passes all of the given data to the subscriber if it was not collected yet, in a single call if it is a
+     * {@link BatchConsumer}.
+     *
+     * @see bt.runtime.evnt.BatchConsumer#acceptAll(java.util.List)
+     */
+    @Override
+    public void acceptAll(List<T> batch)
+    {
+        if (this.runnable != null)
+        {
+            Runnable subscriber = this.runnable.get();
+
+            for (int i = 0; i < batch.size() && subscriber != null; i ++ )
+            {
+                subscriber.run();
+            }
+        }
+        else
+        {
+            Consumer<T> subscriber = this.consumer.get();
+
+            if (subscriber instanceof BatchConsumer)
+            {
+                ((BatchConsumer<T>)subscriber).acceptAll(batch);
+            }
+            else if (subscriber != null)
+            {
+                for (int i = 0; i < batch.size(); i ++ )
+                {
+                    subscriber.accept(batch.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the weak reference to the subscribed instance.
+     *
+     * @return
+     */
+    WeakReference<?> getReference()
+    {
+        return this.runnable != null ? this.runnable : this.consumer;
+    }
+}
@@ -0,0 +1,94 @@
+package bt.types;
+
+/**
+ * Case insensitive hashing and comparison of character sequences that works on the characters in place instead of
+ * creating upper or lower case copies.
+ *
+ * <p>
+ * Two sequences are considered equal if they have the same length and all characters at the same index are equal
+ * after {@link #fold(char) folding}. The hash code is consistent with that definition.
+ * </p>
+ *
+ * @author &#8904
+ */
+final class CaseInsensitive
+{
+    private CaseInsensitive()
+    {
+    }
+
+    /**
+     * Maps the given character to a representative of all characters that only differ in case from it.
+     *
+     * <p>
+     * ASCII characters are mapped by a simple range check. All other characters fall back to
+     * {@code Character.toLowerCase(Character.toUpperCase(c))}, which is independent of the default locale.
+     * </p>
+     *
+     * @param c
+     * @return The case folded character.
+     */
+    static char fold(char c)
+    {
+        if (c < 128)
+        {
+            return c >= 'A' && c <= 'Z' ? (char)(c + 32) : c;
+        }
+
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * Calculates a case insensitive hash code for the given sequence.
+     *
+     * @param chars
+     * @return
+     */
+    static int hash(CharSequence chars)
+    {
+        int hash = 0;
+
+        for (int i = 0; i < chars.length(); i ++ )
+        {
+            hash = 31 * hash + fold(chars.charAt(i));
+        }
+
+        return hash;
+    }
+
+    /**
+     * Compares the given sequences case insensitively.
+     *
+     * @param first
+     * @param second
+     * @return true if both sequences contain the same characters ignoring case.
+     */
+    static boolean equals(CharSequence first, CharSequence second)
+    {
+        // keys are usually looked up with the spelling they were stored with, which String compares fastest
+        if (first == second || first instanceof String && first.equals(second))
+        {
+            return true;
+        }
+
+        int length = first.length();
+
+        if (length != second.length())
+        {
+            return false;
+        }
+
+        for (int i = 0; i < length; i ++ )
+        {
+            char c1 = first.charAt(i);
+            char c2 = second.charAt(i);
+
+            if (c1 != c2 && fold(c1) != fold(c2))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
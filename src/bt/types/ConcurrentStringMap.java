@@ -1,630 +1,1120 @@
 package bt.types;
 
-import java.util.concurrent.ConcurrentHashMap;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
-public class ConcurrentStringMap<V> extends ConcurrentHashMap<String, V>
+/**
+ * A thread safe map with case insensitive String keys.
+ *
+ * <p>
+ * Keys are hashed and compared {@link CaseInsensitive case insensitively} directly on their characters, so lookups do
+ * not create upper case copies of the key. Keys are stored with the spelling they were first inserted with, which is
+ * the spelling that is returned during iteration. Putting a value for an existing key with a different spelling only
+ * replaces the value.
+ * </p>
+ *
+ * <p>
+ * Lookups with a {@link StringKey} reuse its precomputed hash code.
+ * </p>
+ *
+ * <p>
+ * The map is split into a fixed number of segments with their own lock. Reads are not blocking, writes only lock the
+ * segment of the key. Like {@link java.util.concurrent.ConcurrentHashMap} this map does not allow null keys or values
+ * and its iterators are weakly consistent.
+ * </p>
+ *
+ * <p>
+ * All methods that take a key, including those of the {@link #keySet() key set} and {@link #entrySet() entry set}
+ * views, match it case insensitively. {@link #compute(String, BiFunction) compute}, {@link #computeIfAbsent(String,
+ * Function) computeIfAbsent}, {@link #computeIfPresent(String, BiFunction) computeIfPresent} and
+ * {@link #merge(String, Object, BiFunction) merge} are atomic and call their function at most once while holding the
+ * lock of the key's segment. Those functions must therefore be short and must not update this map. Like in
+ * {@link java.util.concurrent.ConcurrentHashMap} an update of the same segment from within such a function, or from
+ * within the function of {@link #replaceAll(BiFunction) replaceAll}, throws an {@link IllegalStateException}.
+ * </p>
+ *
+ * <p>
+ * {@link #equals(Object) equals} matches the keys of the other map case insensitively, so two maps whose keys only
+ * differ in case are equal, just like with a {@link java.util.TreeMap} using {@link String#CASE_INSENSITIVE_ORDER}.
+ * {@link #hashCode() hashCode} however follows the {@link Map#hashCode()} contract with the original spelling of the
+ * keys, so that it equals the hash code of any other map with the same mappings. Such case insensitively equal maps
+ * may therefore have different hash codes and should not be mixed as keys of a hash based collection.
+ * </p>
+ *
+ * <p>
+ * This class no longer extends {@link java.util.concurrent.ConcurrentHashMap}. Code that needs an abstraction of it
+ * should use {@link ConcurrentMap} instead. The map is still {@link Serializable}.
+ * </p>
+ *
+ * @author &#8904
+ * @param <V>
+ *            The type of the values.
+ */
+public class ConcurrentStringMap<V> extends AbstractMap<String, V> implements ConcurrentMap<String, V>, Serializable
 {
+    private static final long serialVersionUID = 1L;
+    private static final int SEGMENT_COUNT = 16;
+    private static final int SEGMENT_SHIFT = 28;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private transient Segment<V>[] segments;
+    private transient Set<String> keySet;
+    private transient Collection<V> values;
+    private transient Set<Entry<String, V>> entrySet;
+
     /**
-     * Returns {@code true} if this map contains a mapping for the specified
-     * key.  More formally, returns {@code true} if and only if
-     * this map contains a mapping for a key {@code k} such that
-     * {@code Objects.equals(key, k)}.  (There can be
-     * at most one such mapping.)
-     *
-     * @param key key whose presence in this map is to be tested
-     * @return {@code true} if this map contains a mapping for the specified
-     * key
-     * @throws ClassCastException   if the key is of an inappropriate type for
-     *                              this map
-     *                              (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @throws NullPointerException if the specified key is null and this map
-     *                              does not permit null keys
-     *                              (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
+     * Creates a new empty map.
      */
-    @Override
-    public boolean containsKey(Object key)
+    public ConcurrentStringMap()
     {
-        return super.containsKey(key.toString().toUpperCase());
+        this(16);
     }
 
     /**
-     * Returns the value to which the specified key is mapped,
-     * or {@code null} if this map contains no mapping for the key.
-     *
-     * <p>More formally, if this map contains a mapping from a key
-     * {@code k} to a value {@code v} such that
-     * {@code Objects.equals(key, k)},
-     * then this method returns {@code v}; otherwise
-     * it returns {@code null}.  (There can be at most one such mapping.)
+     * Creates a new empty map that can hold the given number of entries without resizing.
      *
-     * <p>If this map permits null values, then a return value of
-     * {@code null} does not <i>necessarily</i> indicate that the map
-     * contains no mapping for the key; it's also possible that the map
-     * explicitly maps the key to {@code null}.  The {@link #containsKey
-     * containsKey} operation may be used to distinguish these two cases.
-     *
-     * @param key the key whose associated value is to be returned
-     * @return the value to which the specified key is mapped, or
-     * {@code null} if this map contains no mapping for the key
-     * @throws ClassCastException   if the key is of an inappropriate type for
-     *                              this map
-     *                              (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @throws NullPointerException if the specified key is null and this map
-     *                              does not permit null keys
-     *                              (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
+     * @param initialCapacity
      */
+    public ConcurrentStringMap(int initialCapacity)
+    {
+        if (initialCapacity < 0)
+        {
+            throw new IllegalArgumentException("Initial capacity must not be negative.");
+        }
+
+        init(initialCapacity);
+    }
+
+    private void init(int initialCapacity)
+    {
+        int perSegment = (int)Math.min(MAXIMUM_CAPACITY, (long)(initialCapacity / SEGMENT_COUNT / LOAD_FACTOR) + 1);
+        int capacity = 2;
+
+        while (capacity < perSegment)
+        {
+            capacity <<= 1;
+        }
+
+        this.segments = newSegments(SEGMENT_COUNT);
+
+        for (int i = 0; i < SEGMENT_COUNT; i ++ )
+        {
+            this.segments[i] = new Segment<>(capacity);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Segment<V>[] newSegments(int length)
+    {
+        // generic arrays can't be created directly, the empty array only ever receives Segment<V> instances
+        return (Segment<V>[])new Segment<?>[length];
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        CharSequence chars = chars(key);
+        int hash = hash(key, chars);
+        return segmentFor(hash).find(chars, hash) != null;
+    }
+
     @Override
     public V get(Object key)
     {
-        return super.get(key.toString().toUpperCase());
+        CharSequence chars = chars(key);
+        int hash = hash(key, chars);
+        Node<V> node = segmentFor(hash).find(chars, hash);
+        return node == null ? null : node.value;
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue)
+    {
+        V value = get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public boolean containsValue(Object value)
+    {
+        checkValue(value);
+        return search(Long.MAX_VALUE, (k, v) -> value.equals(v) ? Boolean.TRUE : null) != null;
     }
 
-    /**
-     * Associates the specified value with the specified key in this map
-     * (optional operation).  If the map previously contained a mapping for
-     * the key, the old value is replaced by the specified value.  (A map
-     * {@code m} is said to contain a mapping for a key {@code k} if and only
-     * if {@link #containsKey(Object) m.containsKey(k)} would return
-     * {@code true}.)
-     *
-     * @param key   key with which the specified value is to be associated
-     * @param value value to be associated with the specified key
-     * @return the previous value associated with {@code key}, or
-     * {@code null} if there was no mapping for {@code key}.
-     * (A {@code null} return can also indicate that the map
-     * previously associated {@code null} with {@code key},
-     * if the implementation supports {@code null} values.)
-     * @throws UnsupportedOperationException if the {@code put} operation
-     *                                       is not supported by this map
-     * @throws ClassCastException            if the class of the specified key or value
-     *                                       prevents it from being stored in this map
-     * @throws NullPointerException          if the specified key or value is null
-     *                                       and this map does not permit null keys or values
-     * @throws IllegalArgumentException      if some property of the specified key
-     *                                       or value prevents it from being stored in this map
-     */
     @Override
     public V put(String key, V value)
     {
-        return super.put(key.toUpperCase(), value);
+        checkValue(value);
+        int hash = hash(key);
+        return segmentFor(hash).put(key, hash, value, false);
+    }
+
+    @Override
+    public V putIfAbsent(String key, V value)
+    {
+        checkValue(value);
+        int hash = hash(key);
+        return segmentFor(hash).put(key, hash, value, true);
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends V> map)
+    {
+        for (Entry<? extends String, ? extends V> entry : map.entrySet())
+        {
+            put(entry.getKey(), entry.getValue());
+        }
     }
 
-    /**
-     * Removes the mapping for a key from this map if it is present
-     * (optional operation).   More formally, if this map contains a mapping
-     * from key {@code k} to value {@code v} such that
-     * {@code Objects.equals(key, k)}, that mapping
-     * is removed.  (The map can contain at most one such mapping.)
-     *
-     * <p>Returns the value to which this map previously associated the key,
-     * or {@code null} if the map contained no mapping for the key.
-     *
-     * <p>If this map permits null values, then a return value of
-     * {@code null} does not <i>necessarily</i> indicate that the map
-     * contained no mapping for the key; it's also possible that the map
-     * explicitly mapped the key to {@code null}.
-     *
-     * <p>The map will not contain a mapping for the specified key once the
-     * call returns.
-     *
-     * @param key key whose mapping is to be removed from the map
-     * @return the previous value associated with {@code key}, or
-     * {@code null} if there was no mapping for {@code key}.
-     * @throws UnsupportedOperationException if the {@code remove} operation
-     *                                       is not supported by this map
-     * @throws ClassCastException            if the key is of an inappropriate type for
-     *                                       this map
-     *                                       (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @throws NullPointerException          if the specified key is null and this
-     *                                       map does not permit null keys
-     *                                       (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     */
     @Override
     public V remove(Object key)
     {
-        return super.remove(key.toString().toUpperCase());
+        CharSequence chars = chars(key);
+        int hash = hash(key, chars);
+        return segmentFor(hash).remove(chars, hash, null);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value)
+    {
+        if (value == null)
+        {
+            return false;
+        }
+
+        CharSequence chars = chars(key);
+        int hash = hash(key, chars);
+        return segmentFor(hash).remove(chars, hash, value) != null;
+    }
+
+    @Override
+    public boolean replace(String key, V oldValue, V newValue)
+    {
+        checkValue(oldValue);
+        checkValue(newValue);
+        int hash = hash(key);
+        return segmentFor(hash).replace(key, hash, oldValue, newValue) != null;
+    }
+
+    @Override
+    public V replace(String key, V value)
+    {
+        checkValue(value);
+        int hash = hash(key);
+        return segmentFor(hash).replace(key, hash, null, value);
+    }
+
+    @Override
+    public V computeIfAbsent(String key, Function<? super String, ? extends V> mappingFunction)
+    {
+        Objects.requireNonNull(mappingFunction);
+        V value = get(key);
+
+        if (value != null)
+        {
+            return value;
+        }
+
+        return compute(key, (k, v) -> v == null ? mappingFunction.apply(k) : v);
+    }
+
+    @Override
+    public V computeIfPresent(String key, BiFunction<? super String, ? super V, ? extends V> remappingFunction)
+    {
+        Objects.requireNonNull(remappingFunction);
+        return compute(key, (k, v) -> v == null ? null : remappingFunction.apply(k, v));
+    }
+
+    @Override
+    public V compute(String key, BiFunction<? super String, ? super V, ? extends V> remappingFunction)
+    {
+        Objects.requireNonNull(remappingFunction);
+        int hash = hash(key);
+        return segmentFor(hash).compute(key, hash, remappingFunction);
+    }
+
+    @Override
+    public V merge(String key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction)
+    {
+        checkValue(value);
+        Objects.requireNonNull(remappingFunction);
+        return compute(key, (k, v) -> v == null ? value : remappingFunction.apply(v, value));
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super V> action)
+    {
+        forEach(Long.MAX_VALUE, action);
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super String, ? super V, ? extends V> function)
+    {
+        Objects.requireNonNull(function);
+
+        for (Segment<V> segment : this.segments)
+        {
+            segment.replaceAll(function);
+        }
     }
 
     /**
-     * Returns the value to which the specified key is mapped, or
-     * {@code defaultValue} if this map contains no mapping for the key.
+     * Performs the given action for each mapping.
      *
-     * @param key          the key whose associated value is to be returned
-     * @param defaultValue the default mapping of the key
-     * @return the value to which the specified key is mapped, or
-     * {@code defaultValue} if this map contains no mapping for the key
-     * @throws ClassCastException   if the key is of an inappropriate type for
-     *                              this map
-     *                              (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @throws NullPointerException if the specified key is null and this map
-     *                              does not permit null keys
-     *                              (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @implSpec The default implementation makes no guarantees about synchronization
-     * or atomicity properties of this method. Any implementation providing
-     * atomicity guarantees must override this method and document its
-     * concurrency properties.
-     * @since 1.8
+     * @param parallelismThreshold
+     *            The minimum number of mappings for which the segments are processed in parallel. Use
+     *            {@link Long#MAX_VALUE} to always process them sequentially.
+     * @param action
      */
-    @Override
-    public V getOrDefault(Object key, V defaultValue)
+    public void forEach(long parallelismThreshold, BiConsumer<? super String, ? super V> action)
     {
-        return super.getOrDefault(key.toString().toUpperCase(), defaultValue);
+        Objects.requireNonNull(action);
+        segments(parallelismThreshold).forEach(segment -> segment.forEach(action));
     }
 
     /**
-     * If the specified key is not already associated with a value (or is mapped
-     * to {@code null}) associates it with the given value and returns
-     * {@code null}, else returns the current value.
-     *
-     * @param key   key with which the specified value is to be associated
-     * @param value value to be associated with the specified key
-     * @return the previous value associated with the specified key, or
-     * {@code null} if there was no mapping for the key.
-     * (A {@code null} return can also indicate that the map
-     * previously associated {@code null} with the key,
-     * if the implementation supports null values.)
-     * @throws UnsupportedOperationException if the {@code put} operation
-     *                                       is not supported by this map
-     *                                       (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @throws ClassCastException            if the key or value is of an inappropriate
-     *                                       type for this map
-     *                                       (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @throws NullPointerException          if the specified key or value is null,
-     *                                       and this map does not permit null keys or values
-     *                                       (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @throws IllegalArgumentException      if some property of the specified key
-     *                                       or value prevents it from being stored in this map
-     *                                       (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @implSpec The default implementation is equivalent to, for this {@code
-     * map}:
+     * Returns a non-null result of applying the given function to the mappings or null if the function returns null
+     * for all of them. Once a result is found further calls of the function are skipped.
      *
-     * <pre> {@code
-     * V v = map.get(key);
-     * if (v == null)
-     *     v = map.put(key, value);
-     *
-     * return v;
-     * }</pre>
-     *
-     * <p>The default implementation makes no guarantees about synchronization
-     * or atomicity properties of this method. Any implementation providing
-     * atomicity guarantees must override this method and document its
-     * concurrency properties.
-     * @since 1.8
+     * @param parallelismThreshold
+     *            The minimum number of mappings for which the segments are processed in parallel. Use
+     *            {@link Long#MAX_VALUE} to always process them sequentially.
+     * @param searchFunction
+     * @return
      */
-    @Override
-    public V putIfAbsent(String key, V value)
+    public <U> U search(long parallelismThreshold, BiFunction<? super String, ? super V, ? extends U> searchFunction)
     {
-        return putIfAbsent(key.toUpperCase(), value);
+        Objects.requireNonNull(searchFunction);
+        return segments(parallelismThreshold).map(segment -> segment.<U> search(searchFunction))
+                                             .filter(Objects::nonNull)
+                                             .findAny()
+                                             .orElse(null);
     }
 
     /**
-     * Removes the entry for the specified key only if it is currently
-     * mapped to the specified value.
-     *
-     * @param key   key with which the specified value is associated
-     * @param value value expected to be associated with the specified key
-     * @return {@code true} if the value was removed
-     * @throws UnsupportedOperationException if the {@code remove} operation
-     *                                       is not supported by this map
-     *                                       (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @throws ClassCastException            if the key or value is of an inappropriate
-     *                                       type for this map
-     *                                       (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @throws NullPointerException          if the specified key or value is null,
-     *                                       and this map does not permit null keys or values
-     *                                       (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @implSpec The default implementation is equivalent to, for this {@code map}:
+     * Returns the result of accumulating the non-null transformations of all mappings using the given reducer, or
+     * null if there are none.
      *
-     * <pre> {@code
-     * if (map.containsKey(key) && Objects.equals(map.get(key), value)) {
-     *     map.remove(key);
-     *     return true;
-     * } else
-     *     return false;
-     * }</pre>
-     *
-     * <p>The default implementation makes no guarantees about synchronization
-     * or atomicity properties of this method. Any implementation providing
-     * atomicity guarantees must override this method and document its
-     * concurrency properties.
-     * @since 1.8
+     * @param parallelismThreshold
+     *            The minimum number of mappings for which the segments are processed in parallel. Use
+     *            {@link Long#MAX_VALUE} to always process them sequentially.
+     * @param transformer
+     * @param reducer
+     * @return
      */
-    @Override
-    public boolean remove(Object key, Object value)
+    public <U> U reduce(long parallelismThreshold, BiFunction<? super String, ? super V, ? extends U> transformer,
+                        BiFunction<? super U, ? super U, ? extends U> reducer)
     {
-        return super.remove(key.toString().toUpperCase(), value);
+        Objects.requireNonNull(transformer);
+        Objects.requireNonNull(reducer);
+        return segments(parallelismThreshold).map(segment -> segment.<U> reduce(transformer, reducer))
+                                             .filter(Objects::nonNull)
+                                             .reduce((u1, u2) -> reducer.apply(u1, u2))
+                                             .orElse(null);
     }
 
     /**
-     * Replaces the entry for the specified key only if currently
-     * mapped to the specified value.
-     *
-     * @param key      key with which the specified value is associated
-     * @param oldValue value expected to be associated with the specified key
-     * @param newValue value to be associated with the specified key
-     * @return {@code true} if the value was replaced
-     * @throws UnsupportedOperationException if the {@code put} operation
-     *                                       is not supported by this map
-     *                                       (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @throws ClassCastException            if the class of a specified key or value
-     *                                       prevents it from being stored in this map
-     * @throws NullPointerException          if a specified key or newValue is null,
-     *                                       and this map does not permit null keys or values
-     * @throws NullPointerException          if oldValue is null and this map does not
-     *                                       permit null values
-     *                                       (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @throws IllegalArgumentException      if some property of a specified key
-     *                                       or value prevents it from being stored in this map
-     * @implSpec The default implementation is equivalent to, for this {@code map}:
-     *
-     * <pre> {@code
-     * if (map.containsKey(key) && Objects.equals(map.get(key), value)) {
-     *     map.put(key, newValue);
-     *     return true;
-     * } else
-     *     return false;
-     * }</pre>
-     * <p>
-     * The default implementation does not throw NullPointerException
-     * for maps that do not support null values if oldValue is null unless
-     * newValue is also null.
+     * Returns the number of mappings. Unlike {@link #size()} the result is not limited to {@link Integer#MAX_VALUE}.
      *
-     * <p>The default implementation makes no guarantees about synchronization
-     * or atomicity properties of this method. Any implementation providing
-     * atomicity guarantees must override this method and document its
-     * concurrency properties.
-     * @since 1.8
+     * @return
      */
+    public long mappingCount()
+    {
+        long count = 0;
+
+        for (Segment<V> segment : this.segments)
+        {
+            count += segment.count;
+        }
+
+        return count;
+    }
+
     @Override
-    public boolean replace(String key, V oldValue, V newValue)
+    public int size()
     {
-        return super.replace(key.toUpperCase(), oldValue, newValue);
+        return (int)Math.min(mappingCount(), Integer.MAX_VALUE);
     }
 
     /**
-     * Replaces the entry for the specified key only if it is
-     * currently mapped to some value.
-     *
-     * @param key   key with which the specified value is associated
-     * @param value value to be associated with the specified key
-     * @return the previous value associated with the specified key, or
-     * {@code null} if there was no mapping for the key.
-     * (A {@code null} return can also indicate that the map
-     * previously associated {@code null} with the key,
-     * if the implementation supports null values.)
-     * @throws UnsupportedOperationException if the {@code put} operation
-     *                                       is not supported by this map
-     *                                       (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @throws ClassCastException            if the class of the specified key or value
-     *                                       prevents it from being stored in this map
-     *                                       (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @throws NullPointerException          if the specified key or value is null,
-     *                                       and this map does not permit null keys or values
-     * @throws IllegalArgumentException      if some property of the specified key
-     *                                       or value prevents it from being stored in this map
-     * @implSpec The default implementation is equivalent to, for this {@code map}:
-     *
-     * <pre> {@code
-     * if (map.containsKey(key)) {
-     *     return map.put(key, value);
-     * } else
-     *     return null;
-     * }</pre>
-     *
-     * <p>The default implementation makes no guarantees about synchronization
-     * or atomicity properties of this method. Any implementation providing
-     * atomicity guarantees must override this method and document its
-     * concurrency properties.
-     * @since 1.8
+     * Returns the sum of the hash codes of all entries as defined by {@link Map#hashCode()}, using the stored spelling
+     * of the keys.
      */
     @Override
-    public V replace(String key, V value)
+    public int hashCode()
     {
-        return super.replace(key.toUpperCase(), value);
+        Integer hash = reduce(Long.MAX_VALUE, (k, v) -> k.hashCode() ^ v.hashCode(), Integer::sum);
+        return hash == null ? 0 : hash;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        for (Segment<V> segment : this.segments)
+        {
+            if (segment.count != 0)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public void clear()
+    {
+        for (Segment<V> segment : this.segments)
+        {
+            segment.clear();
+        }
     }
 
     /**
-     * If the specified key is not already associated with a value (or is mapped
-     * to {@code null}), attempts to compute its value using the given mapping
-     * function and enters it into this map unless {@code null}.
-     *
-     * <p>If the mapping function returns {@code null}, no mapping is recorded.
-     * If the mapping function itself throws an (unchecked) exception, the
-     * exception is rethrown, and no mapping is recorded.  The most
-     * common usage is to construct a new object serving as an initial
-     * mapped value or memoized result, as in:
-     *
-     * <pre> {@code
-     * map.computeIfAbsent(key, k -> new Value(f(k)));
-     * }</pre>
-     *
-     * <p>Or to implement a multi-value map, {@code Map<K,Collection<V>>},
-     * supporting multiple values per key:
-     *
-     * <pre> {@code
-     * map.computeIfAbsent(key, k -> new HashSet<V>()).add(v);
-     * }</pre>
-     *
-     * <p>The mapping function should not modify this map during computation.
-     *
-     * @param key             key with which the specified value is to be associated
-     * @param mappingFunction the mapping function to compute a value
-     * @return the current (existing or computed) value associated with
-     * the specified key, or null if the computed value is null
-     * @throws NullPointerException          if the specified key is null and
-     *                                       this map does not support null keys, or the mappingFunction
-     *                                       is null
-     * @throws UnsupportedOperationException if the {@code put} operation
-     *                                       is not supported by this map
-     *                                       (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @throws ClassCastException            if the class of the specified key or value
-     *                                       prevents it from being stored in this map
-     *                                       (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @throws IllegalArgumentException      if some property of the specified key
-     *                                       or value prevents it from being stored in this map
-     *                                       (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @implSpec The default implementation is equivalent to the following steps for this
-     * {@code map}, then returning the current value or {@code null} if now
-     * absent:
-     *
-     * <pre> {@code
-     * if (map.get(key) == null) {
-     *     V newValue = mappingFunction.apply(key);
-     *     if (newValue != null)
-     *         map.put(key, newValue);
-     * }
-     * }</pre>
-     *
-     * <p>The default implementation makes no guarantees about detecting if the
-     * mapping function modifies this map during computation and, if
-     * appropriate, reporting an error. Non-concurrent implementations should
-     * override this method and, on a best-effort basis, throw a
-     * {@code ConcurrentModificationException} if it is detected that the
-     * mapping function modifies this map during computation. Concurrent
-     * implementations should override this method and, on a best-effort basis,
-     * throw an {@code IllegalStateException} if it is detected that the
-     * mapping function modifies this map during computation and as a result
-     * computation would never complete.
-     *
-     * <p>The default implementation makes no guarantees about synchronization
-     * or atomicity properties of this method. Any implementation providing
-     * atomicity guarantees must override this method and document its
-     * concurrency properties. In particular, all implementations of
-     * subinterface {@link ConcurrentMap} must document
-     * whether the mapping function is applied once atomically only if the value
-     * is not present.
-     * @since 1.8
+     * Returns a view of the keys of this map. Keys have the spelling that they were first inserted with, but
+     * {@code contains} and {@code remove} match them case insensitively.
      */
     @Override
-    public V computeIfAbsent(String key, Function<? super String, ? extends V> mappingFunction)
+    public Set<String> keySet()
+    {
+        Set<String> keySet = this.keySet;
+
+        if (keySet == null)
+        {
+            keySet = new KeySet();
+            this.keySet = keySet;
+        }
+
+        return keySet;
+    }
+
+    @Override
+    public Collection<V> values()
     {
-        return super.computeIfAbsent(key.toUpperCase(), mappingFunction);
+        Collection<V> values = this.values;
+
+        if (values == null)
+        {
+            values = new Values();
+            this.values = values;
+        }
+
+        return values;
     }
 
     /**
-     * If the value for the specified key is present and non-null, attempts to
-     * compute a new mapping given the key and its current mapped value.
-     *
-     * <p>If the remapping function returns {@code null}, the mapping is removed.
-     * If the remapping function itself throws an (unchecked) exception, the
-     * exception is rethrown, and the current mapping is left unchanged.
-     *
-     * <p>The remapping function should not modify this map during computation.
-     *
-     * @param key               key with which the specified value is to be associated
-     * @param remappingFunction the remapping function to compute a value
-     * @return the new value associated with the specified key, or null if none
-     * @throws NullPointerException          if the specified key is null and
-     *                                       this map does not support null keys, or the
-     *                                       remappingFunction is null
-     * @throws UnsupportedOperationException if the {@code put} operation
-     *                                       is not supported by this map
-     *                                       (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @throws ClassCastException            if the class of the specified key or value
-     *                                       prevents it from being stored in this map
-     *                                       (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @throws IllegalArgumentException      if some property of the specified key
-     *                                       or value prevents it from being stored in this map
-     *                                       (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @implSpec The default implementation is equivalent to performing the following
-     * steps for this {@code map}, then returning the current value or
-     * {@code null} if now absent:
-     *
-     * <pre> {@code
-     * if (map.get(key) != null) {
-     *     V oldValue = map.get(key);
-     *     V newValue = remappingFunction.apply(key, oldValue);
-     *     if (newValue != null)
-     *         map.put(key, newValue);
-     *     else
-     *         map.remove(key);
-     * }
-     * }</pre>
-     *
-     * <p>The default implementation makes no guarantees about detecting if the
-     * remapping function modifies this map during computation and, if
-     * appropriate, reporting an error. Non-concurrent implementations should
-     * override this method and, on a best-effort basis, throw a
-     * {@code ConcurrentModificationException} if it is detected that the
-     * remapping function modifies this map during computation. Concurrent
-     * implementations should override this method and, on a best-effort basis,
-     * throw an {@code IllegalStateException} if it is detected that the
-     * remapping function modifies this map during computation and as a result
-     * computation would never complete.
-     *
-     * <p>The default implementation makes no guarantees about synchronization
-     * or atomicity properties of this method. Any implementation providing
-     * atomicity guarantees must override this method and document its
-     * concurrency properties. In particular, all implementations of
-     * subinterface {@link ConcurrentMap} must document
-     * whether the remapping function is applied once atomically only if the
-     * value is not present.
-     * @since 1.8
+     * Returns a view of the mappings of this map. Entry keys have the spelling that the key was first inserted with.
+     * Setting the value of an entry writes through to this map.
      */
     @Override
-    public V computeIfPresent(String key, BiFunction<? super String, ? super V, ? extends V> remappingFunction)
+    public Set<Entry<String, V>> entrySet()
+    {
+        Set<Entry<String, V>> entrySet = this.entrySet;
+
+        if (entrySet == null)
+        {
+            entrySet = new EntrySet();
+            this.entrySet = entrySet;
+        }
+
+        return entrySet;
+    }
+
+    private Stream<Segment<V>> segments(long parallelismThreshold)
+    {
+        Stream<Segment<V>> segments = Arrays.stream(this.segments);
+        return mappingCount() >= parallelismThreshold ? segments.parallel() : segments;
+    }
+
+    private Segment<V> segmentFor(int hash)
     {
-        return super.computeIfPresent(key.toUpperCase(), remappingFunction);
+        return this.segments[(hash >>> SEGMENT_SHIFT) & (SEGMENT_COUNT - 1)];
     }
 
     /**
-     * Attempts to compute a mapping for the specified key and its current
-     * mapped value (or {@code null} if there is no current mapping). For
-     * example, to either create or append a {@code String} msg to a value
-     * mapping:
-     *
-     * <pre> {@code
-     * map.compute(key, (k, v) -> (v == null) ? msg : v.concat(msg))}</pre>
-     * (Method {@link #merge merge()} is often simpler to use for such purposes.)
-     *
-     * <p>If the remapping function returns {@code null}, the mapping is removed
-     * (or remains absent if initially absent).  If the remapping function
-     * itself throws an (unchecked) exception, the exception is rethrown, and
-     * the current mapping is left unchanged.
-     *
-     * <p>The remapping function should not modify this map during computation.
-     *
-     * @param key               key with which the specified value is to be associated
-     * @param remappingFunction the remapping function to compute a value
-     * @return the new value associated with the specified key, or null if none
-     * @throws NullPointerException          if the specified key is null and
-     *                                       this map does not support null keys, or the
-     *                                       remappingFunction is null
-     * @throws UnsupportedOperationException if the {@code put} operation
-     *                                       is not supported by this map
-     *                                       (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @throws ClassCastException            if the class of the specified key or value
-     *                                       prevents it from being stored in this map
-     *                                       (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @throws IllegalArgumentException      if some property of the specified key
-     *                                       or value prevents it from being stored in this map
-     *                                       (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @implSpec The default implementation is equivalent to performing the following
-     * steps for this {@code map}, then returning the current value or
-     * {@code null} if absent:
-     *
-     * <pre> {@code
-     * V oldValue = map.get(key);
-     * V newValue = remappingFunction.apply(key, oldValue);
-     * if (oldValue != null) {
-     *    if (newValue != null)
-     *       map.put(key, newValue);
-     *    else
-     *       map.remove(key);
-     * } else {
-     *    if (newValue != null)
-     *       map.put(key, newValue);
-     *    else
-     *       return null;
-     * }
-     * }</pre>
-     *
-     * <p>The default implementation makes no guarantees about detecting if the
-     * remapping function modifies this map during computation and, if
-     * appropriate, reporting an error. Non-concurrent implementations should
-     * override this method and, on a best-effort basis, throw a
-     * {@code ConcurrentModificationException} if it is detected that the
-     * remapping function modifies this map during computation. Concurrent
-     * implementations should override this method and, on a best-effort basis,
-     * throw an {@code IllegalStateException} if it is detected that the
-     * remapping function modifies this map during computation and as a result
-     * computation would never complete.
-     *
-     * <p>The default implementation makes no guarantees about synchronization
-     * or atomicity properties of this method. Any implementation providing
-     * atomicity guarantees must override this method and document its
-     * concurrency properties. In particular, all implementations of
-     * subinterface {@link ConcurrentMap} must document
-     * whether the remapping function is applied once atomically only if the
-     * value is not present.
-     * @since 1.8
+     * Spreads the case insensitive hash of the given key so that both the high bits (used to select the segment) and
+     * the low bits (used to select the bucket) depend on all characters.
      */
-    @Override
-    public V compute(String key, BiFunction<? super String, ? super V, ? extends V> remappingFunction)
+    private static int hash(CharSequence key)
     {
-        return super.compute(key.toUpperCase(), remappingFunction);
+        return spread(CaseInsensitive.hash(key));
     }
 
     /**
-     * If the specified key is not already associated with a value or is
-     * associated with null, associates it with the given non-null value.
-     * Otherwise, replaces the associated value with the results of the given
-     * remapping function, or removes if the result is {@code null}. This
-     * method may be of use when combining multiple mapped values for a key.
-     * For example, to either create or append a {@code String msg} to a
-     * value mapping:
-     *
-     * <pre> {@code
-     * map.merge(key, msg, String::concat)
-     * }</pre>
-     *
-     * <p>If the remapping function returns {@code null}, the mapping is removed.
-     * If the remapping function itself throws an (unchecked) exception, the
-     * exception is rethrown, and the current mapping is left unchanged.
-     *
-     * <p>The remapping function should not modify this map during computation.
-     *
-     * @param key               key with which the resulting value is to be associated
-     * @param value             the non-null value to be merged with the existing value
-     *                          associated with the key or, if no existing value or a null value
-     *                          is associated with the key, to be associated with the key
-     * @param remappingFunction the remapping function to recompute a value if
-     *                          present
-     * @return the new value associated with the specified key, or null if no
-     * value is associated with the key
-     * @throws UnsupportedOperationException if the {@code put} operation
-     *                                       is not supported by this map
-     *                                       (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @throws ClassCastException            if the class of the specified key or value
-     *                                       prevents it from being stored in this map
-     *                                       (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @throws IllegalArgumentException      if some property of the specified key
-     *                                       or value prevents it from being stored in this map
-     *                                       (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @throws NullPointerException          if the specified key is null and this map
-     *                                       does not support null keys or the value or remappingFunction is
-     *                                       null
-     * @implSpec The default implementation is equivalent to performing the following
-     * steps for this {@code map}, then returning the current value or
-     * {@code null} if absent:
-     *
-     * <pre> {@code
-     * V oldValue = map.get(key);
-     * V newValue = (oldValue == null) ? value :
-     *              remappingFunction.apply(oldValue, value);
-     * if (newValue == null)
-     *     map.remove(key);
-     * else
-     *     map.put(key, newValue);
-     * }</pre>
-     *
-     * <p>The default implementation makes no guarantees about detecting if the
-     * remapping function modifies this map during computation and, if
-     * appropriate, reporting an error. Non-concurrent implementations should
-     * override this method and, on a best-effort basis, throw a
-     * {@code ConcurrentModificationException} if it is detected that the
-     * remapping function modifies this map during computation. Concurrent
-     * implementations should override this method and, on a best-effort basis,
-     * throw an {@code IllegalStateException} if it is detected that the
-     * remapping function modifies this map during computation and as a result
-     * computation would never complete.
-     *
-     * <p>The default implementation makes no guarantees about synchronization
-     * or atomicity properties of this method. Any implementation providing
-     * atomicity guarantees must override this method and document its
-     * concurrency properties. In particular, all implementations of
-     * subinterface {@link ConcurrentMap} must document
-     * whether the remapping function is applied once atomically only if the
-     * value is not present.
-     * @since 1.8
+     * Gets the hash for a lookup key, reusing the precomputed hash code of {@link StringKey}s.
      */
-    @Override
-    public V merge(String key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction)
+    private static int hash(Object key, CharSequence chars)
+    {
+        return spread(key instanceof StringKey ? key.hashCode() : CaseInsensitive.hash(chars));
+    }
+
+    private static int spread(int hash)
+    {
+        return (hash ^ (hash >>> 16)) * 0x9E3779B9;
+    }
+
+    /**
+     * Gets the characters of a lookup key. {@link StringKey}s are unwrapped to their String so that they compare
+     * fastest against the stored keys.
+     */
+    private static CharSequence chars(Object key)
+    {
+        if (key instanceof StringKey)
+        {
+            return key.toString();
+        }
+
+        if (key instanceof CharSequence)
+        {
+            return (CharSequence)key;
+        }
+
+        return key.toString();
+    }
+
+    private static void checkValue(Object value)
+    {
+        if (value == null)
+        {
+            throw new NullPointerException("Null values are not supported.");
+        }
+    }
+
+    /**
+     * Writes all mappings as key value pairs followed by a null key.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException
+    {
+        out.defaultWriteObject();
+
+        for (Entry<String, V> entry : entrySet())
+        {
+            out.writeObject(entry.getKey());
+            out.writeObject(entry.getValue());
+        }
+
+        out.writeObject(null);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        init(16);
+
+        String key;
+
+        while ((key = (String)in.readObject()) != null)
+        {
+            // the values were written by writeObject of a map with the same value type
+            @SuppressWarnings("unchecked")
+            V value = (V)in.readObject();
+            put(key, value);
+        }
+    }
+
+    /**
+     * A single mapping. Key, hash and successor are immutable so that readers can traverse a bucket without locking.
+     * Removing a node copies all nodes in front of it.
+     */
+    private static final class Node<V>
+    {
+        private final int hash;
+        private final String key;
+        private volatile V value;
+        private final Node<V> next;
+
+        private Node(int hash, String key, V value, Node<V> next)
+        {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    /**
+     * A hash table for a part of the hash space, guarded by its own lock.
+     */
+    private static final class Segment<V>
+    {
+        private volatile AtomicReferenceArray<Node<V>> table;
+        private volatile int count;
+        private int threshold;
+
+        /**
+         * Indicates whether a user function is currently applied while holding the lock. Since the lock is reentrant,
+         * an update while this is set can only come from within that function.
+         */
+        private boolean updating;
+
+        private Segment(int capacity)
+        {
+            this.table = new AtomicReferenceArray<>(capacity);
+            this.threshold = (int)(capacity * LOAD_FACTOR);
+        }
+
+        private Node<V> find(CharSequence key, int hash)
+        {
+            AtomicReferenceArray<Node<V>> table = this.table;
+            Node<V> node = table.get(hash & (table.length() - 1));
+
+            while (node != null)
+            {
+                if (node.hash == hash && CaseInsensitive.equals(node.key, key))
+                {
+                    return node;
+                }
+
+                node = node.next;
+            }
+
+            return null;
+        }
+
+        private synchronized V put(String key, int hash, V value, boolean onlyIfAbsent)
+        {
+            checkNotUpdating();
+            Node<V> node = find(key, hash);
+
+            if (node != null)
+            {
+                V old = node.value;
+
+                if (!onlyIfAbsent)
+                {
+                    node.value = value;
+                }
+
+                return old;
+            }
+
+            insert(key, hash, value);
+
+            return null;
+        }
+
+        /**
+         * Computes the new value of the given key and stores it or removes the mapping if it is null.
+         *
+         * @return The new value.
+         */
+        private synchronized V compute(String key, int hash, BiFunction<? super String, ? super V, ? extends V> function)
+        {
+            checkNotUpdating();
+            Node<V> node = find(key, hash);
+            V value;
+            this.updating = true;
+
+            try
+            {
+                value = function.apply(key, node == null ? null : node.value);
+            }
+            finally
+            {
+                this.updating = false;
+            }
+
+            if (value == null)
+            {
+                if (node != null)
+                {
+                    remove(key, hash, null);
+                }
+            }
+            else if (node != null)
+            {
+                node.value = value;
+            }
+            else
+            {
+                insert(key, hash, value);
+            }
+
+            return value;
+        }
+
+        private synchronized void replaceAll(BiFunction<? super String, ? super V, ? extends V> function)
+        {
+            checkNotUpdating();
+            AtomicReferenceArray<Node<V>> table = this.table;
+
+            for (int i = 0; i < table.length(); i ++ )
+            {
+                for (Node<V> node = table.get(i); node != null; node = node.next)
+                {
+                    V value;
+                    this.updating = true;
+
+                    try
+                    {
+                        value = function.apply(node.key, node.value);
+                    }
+                    finally
+                    {
+                        this.updating = false;
+                    }
+
+                    checkValue(value);
+                    node.value = value;
+                }
+            }
+        }
+
+        /**
+         * Fails if the current thread is applying a user function of this segment. Callers must hold the lock of this
+         * segment.
+         */
+        private void checkNotUpdating()
+        {
+            if (this.updating)
+            {
+                throw new IllegalStateException("Recursive update");
+            }
+        }
+
+        private void forEach(BiConsumer<? super String, ? super V> action)
+        {
+            AtomicReferenceArray<Node<V>> table = this.table;
+
+            for (int i = 0; i < table.length(); i ++ )
+            {
+                for (Node<V> node = table.get(i); node != null; node = node.next)
+                {
+                    action.accept(node.key, node.value);
+                }
+            }
+        }
+
+        private <U> U search(BiFunction<? super String, ? super V, ? extends U> function)
+        {
+            AtomicReferenceArray<Node<V>> table = this.table;
+
+            for (int i = 0; i < table.length(); i ++ )
+            {
+                for (Node<V> node = table.get(i); node != null; node = node.next)
+                {
+                    U result = function.apply(node.key, node.value);
+
+                    if (result != null)
+                    {
+                        return result;
+                    }
+                }
+            }
+
+            return null;
+        }
+
+        private <U> U reduce(BiFunction<? super String, ? super V, ? extends U> transformer,
+                             BiFunction<? super U, ? super U, ? extends U> reducer)
+        {
+            AtomicReferenceArray<Node<V>> table = this.table;
+            U result = null;
+
+            for (int i = 0; i < table.length(); i ++ )
+            {
+                for (Node<V> node = table.get(i); node != null; node = node.next)
+                {
+                    U transformed = transformer.apply(node.key, node.value);
+
+                    if (transformed != null)
+                    {
+                        result = result == null ? transformed : reducer.apply(result, transformed);
+                    }
+                }
+            }
+
+            return result;
+        }
+
+        /**
+         * Adds a new node for a key that is not contained yet. Callers must hold the lock of this segment.
+         */
+        private void insert(String key, int hash, V value)
+        {
+            if (this.count >= this.threshold)
+            {
+                rehash();
+            }
+
+            AtomicReferenceArray<Node<V>> table = this.table;
+            int index = hash & (table.length() - 1);
+            table.set(index, new Node<>(hash, key, value, table.get(index)));
+            this.count ++ ;
+        }
+
+        /**
+         * Removes the mapping for the given key if its value equals the expected one.
+         *
+         * @param expected
+         *            The expected value or null to remove the mapping regardless of its value.
+         * @return The removed value or null if nothing was removed.
+         */
+        private synchronized V remove(CharSequence key, int hash, Object expected)
+        {
+            checkNotUpdating();
+            AtomicReferenceArray<Node<V>> table = this.table;
+            int index = hash & (table.length() - 1);
+            Node<V> first = table.get(index);
+            Node<V> node = first;
+
+            while (node != null && !(node.hash == hash && CaseInsensitive.equals(node.key, key)))
+            {
+                node = node.next;
+            }
+
+            if (node == null || expected != null && !expected.equals(node.value))
+            {
+                return null;
+            }
+
+            Node<V> head = node.next;
+
+            for (Node<V> current = first; current != node; current = current.next)
+            {
+                head = new Node<>(current.hash, current.key, current.value, head);
+            }
+
+            table.set(index, head);
+            this.count -- ;
+
+            return node.value;
+        }
+
+        /**
+         * Replaces the value of the given key if it is mapped to the expected value.
+         *
+         * @param expected
+         *            The expected value or null to replace the value regardless of its current value.
+         * @return The replaced value or null if nothing was replaced.
+         */
+        private synchronized V replace(CharSequence key, int hash, V expected, V value)
+        {
+            checkNotUpdating();
+            Node<V> node = find(key, hash);
+
+            if (node == null || expected != null && !expected.equals(node.value))
+            {
+                return null;
+            }
+
+            V old = node.value;
+            node.value = value;
+
+            return old;
+        }
+
+        private synchronized void clear()
+        {
+            checkNotUpdating();
+            this.table = new AtomicReferenceArray<>(this.table.length());
+            this.count = 0;
+        }
+
+        /**
+         * Doubles the size of the table. The nodes are copied so that concurrent readers of the old table are not
+         * affected.
+         */
+        private void rehash()
+        {
+            AtomicReferenceArray<Node<V>> old = this.table;
+
+            if (old.length() >= MAXIMUM_CAPACITY)
+            {
+                this.threshold = Integer.MAX_VALUE;
+                return;
+            }
+
+            int capacity = old.length() << 1;
+            AtomicReferenceArray<Node<V>> table = new AtomicReferenceArray<>(capacity);
+
+            for (int i = 0; i < old.length(); i ++ )
+            {
+                for (Node<V> node = old.get(i); node != null; node = node.next)
+                {
+                    int index = node.hash & (capacity - 1);
+                    table.lazySet(index, new Node<>(node.hash, node.key, node.value, table.get(index)));
+                }
+            }
+
+            this.threshold = (int)(capacity * LOAD_FACTOR);
+            this.table = table;
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<String, V>>
+    {
+        @Override
+        public Iterator<Entry<String, V>> iterator()
+        {
+            return new EntryIterator();
+        }
+
+        @Override
+        public boolean contains(Object o)
+        {
+            if (!(o instanceof Entry))
+            {
+                return false;
+            }
+
+            Entry<?, ?> entry = (Entry<?, ?>)o;
+            Object key = entry.getKey();
+            V value = key == null ? null : get(key);
+
+            return value != null && value.equals(entry.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o)
+        {
+            if (!(o instanceof Entry))
+            {
+                return false;
+            }
+
+            Entry<?, ?> entry = (Entry<?, ?>)o;
+            Object key = entry.getKey();
+
+            return key != null && ConcurrentStringMap.this.remove(key, entry.getValue());
+        }
+
+        @Override
+        public int size()
+        {
+            return ConcurrentStringMap.this.size();
+        }
+
+        @Override
+        public boolean isEmpty()
+        {
+            return ConcurrentStringMap.this.isEmpty();
+        }
+
+        @Override
+        public void clear()
+        {
+            ConcurrentStringMap.this.clear();
+        }
+    }
+
+    private final class KeySet extends AbstractSet<String>
     {
-        return super.merge(key.toUpperCase(), value, remappingFunction);
+        @Override
+        public Iterator<String> iterator()
+        {
+            return new KeyIterator();
+        }
+
+        @Override
+        public boolean contains(Object o)
+        {
+            return o != null && containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o)
+        {
+            return o != null && ConcurrentStringMap.this.remove(o) != null;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            Integer hash = reduce(Long.MAX_VALUE, (k, v) -> k.hashCode(), Integer::sum);
+            return hash == null ? 0 : hash;
+        }
+
+        @Override
+        public int size()
+        {
+            return ConcurrentStringMap.this.size();
+        }
+
+        @Override
+        public boolean isEmpty()
+        {
+            return ConcurrentStringMap.this.isEmpty();
+        }
+
+        @Override
+        public void clear()
+        {
+            ConcurrentStringMap.this.clear();
+        }
+    }
+
+    private final class Values extends AbstractCollection<V>
+    {
+        @Override
+        public Iterator<V> iterator()
+        {
+            return new ValueIterator();
+        }
+
+        @Override
+        public boolean contains(Object o)
+        {
+            return o != null && containsValue(o);
+        }
+
+        @Override
+        public int size()
+        {
+            return ConcurrentStringMap.this.size();
+        }
+
+        @Override
+        public boolean isEmpty()
+        {
+            return ConcurrentStringMap.this.isEmpty();
+        }
+
+        @Override
+        public void clear()
+        {
+            ConcurrentStringMap.this.clear();
+        }
+    }
+
+    /**
+     * Traverses the nodes of all segments. Each segment table is read once when the iterator reaches it.
+     */
+    private abstract class NodeIterator<E> implements Iterator<E>
+    {
+        private int segmentIndex;
+        private AtomicReferenceArray<Node<V>> table;
+        private int bucketIndex;
+        private Node<V> next;
+        private Node<V> lastReturned;
+
+        private NodeIterator()
+        {
+            advance();
+        }
+
+        private void advance()
+        {
+            if (this.next != null && (this.next = this.next.next) != null)
+            {
+                return;
+            }
+
+            while (true)
+            {
+                if (this.table != null && this.bucketIndex < this.table.length())
+                {
+                    if ((this.next = this.table.get(this.bucketIndex ++ )) != null)
+                    {
+                        return;
+                    }
+                }
+                else if (this.segmentIndex < segments.length)
+                {
+                    this.table = segments[this.segmentIndex ++ ].table;
+                    this.bucketIndex = 0;
+                }
+                else
+                {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return this.next != null;
+        }
+
+        protected Node<V> nextNode()
+        {
+            if (this.next == null)
+            {
+                throw new NoSuchElementException();
+            }
+
+            this.lastReturned = this.next;
+            advance();
+
+            return this.lastReturned;
+        }
+
+        @Override
+        public void remove()
+        {
+            if (this.lastReturned == null)
+            {
+                throw new IllegalStateException();
+            }
+
+            ConcurrentStringMap.this.remove(this.lastReturned.key);
+            this.lastReturned = null;
+        }
+    }
+
+    private final class EntryIterator extends NodeIterator<Entry<String, V>>
+    {
+        @Override
+        public Entry<String, V> next()
+        {
+            Node<V> node = nextNode();
+            return new MapEntry(node.key, node.value);
+        }
+    }
+
+    private final class KeyIterator extends NodeIterator<String>
+    {
+        @Override
+        public String next()
+        {
+            return nextNode().key;
+        }
+    }
+
+    private final class ValueIterator extends NodeIterator<V>
+    {
+        @Override
+        public V next()
+        {
+            return nextNode().value;
+        }
+    }
+
+    private final class MapEntry extends SimpleEntry<String, V>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private MapEntry(String key, V value)
+        {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value)
+        {
+            checkValue(value);
+            put(getKey(), value);
+            return super.setValue(value);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,322 @@
+package bt.types;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable map with case insensitive String keys, created by {@link StringMap#freeze()}.
+ *
+ * <p>
+ * Keys, their hash codes and values are stored in dense arrays in iteration order. An open addressing table with
+ * linear probing maps hash codes to positions in those arrays. Compared to a {@link java.util.HashMap} there are no
+ * node objects per entry and lookups do not follow chains of nodes.
+ * </p>
+ *
+ * <p>
+ * Keys are stored in the upper case form of {@link StringMap} and hashed with {@link String#hashCode()}. Lookups with
+ * ASCII keys compute the hash code of the upper case form and compare against it character by character without
+ * creating an upper case copy. Only keys with other characters, whose upper case form may differ in length like the
+ * German sharp s, and lookups under a Turkic default locale are converted with {@link String#toUpperCase()} exactly like
+ * {@link StringMap} does, so that a frozen map always finds the same mappings as its source. Lookups with a
+ * {@link StringKey} reuse its precomputed upper case form.
+ * </p>
+ *
+ * <p>
+ * All methods that would modify the map throw an {@link UnsupportedOperationException}.
+ * </p>
+ *
+ * @author &#8904
+ * @param <V>
+ *            The type of the values.
+ */
+public final class FrozenStringMap<V> extends AbstractMap<String, V>
+{
+    private final String[] keys;
+    private final Object[] values;
+    private final int[] hashes;
+
+    /** Positions in the dense arrays plus one, zero marks an empty slot. */
+    private final int[] slots;
+    private final int mask;
+    private Set<Entry<String, V>> entrySet;
+
+    /**
+     * Creates a snapshot of the given mappings. The keys have to be in the upper case form that {@link StringMap}
+     * stores them in.
+     *
+     * @param map
+     */
+    FrozenStringMap(Map<String, V> map)
+    {
+        int size = map.size();
+        int capacity = 2;
+
+        // keep the load factor at or below 0.5 so that probe sequences stay short
+        while (capacity < size * 2)
+        {
+            capacity <<= 1;
+        }
+
+        this.keys = new String[size];
+        this.values = new Object[size];
+        this.hashes = new int[size];
+        this.slots = new int[capacity];
+        this.mask = capacity - 1;
+
+        int index = 0;
+
+        for (Entry<String, V> entry : map.entrySet())
+        {
+            String key = entry.getKey();
+            int hash = key.hashCode();
+            int slot = spread(hash) & this.mask;
+
+            while (this.slots[slot] != 0)
+            {
+                slot = (slot + 1) & this.mask;
+            }
+
+            this.keys[index] = key;
+            this.values[index] = entry.getValue();
+            this.hashes[index] = hash;
+            this.slots[slot] = ++ index;
+        }
+    }
+
+    @Override
+    public V get(Object key)
+    {
+        int index = indexOf(key);
+        return index < 0 ? null : valueAt(index);
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue)
+    {
+        int index = indexOf(key);
+        return index < 0 ? defaultValue : valueAt(index);
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Always throws, {@link AbstractMap#remove(Object)} would otherwise search the entries case sensitively and only
+     * fail if it found one.
+     */
+    @Override
+    public V remove(Object key)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean containsValue(Object value)
+    {
+        for (Object v : this.values)
+        {
+            if (value == null ? v == null : value.equals(v))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public int size()
+    {
+        return this.keys.length;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super V> action)
+    {
+        for (int i = 0; i < this.keys.length; i ++ )
+        {
+            action.accept(this.keys[i], valueAt(i));
+        }
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet()
+    {
+        Set<Entry<String, V>> entrySet = this.entrySet;
+
+        if (entrySet == null)
+        {
+            entrySet = new EntrySet();
+            this.entrySet = entrySet;
+        }
+
+        return entrySet;
+    }
+
+    /**
+     * Finds the position of the given key in the dense arrays.
+     *
+     * @param key
+     * @return The position or -1 if the key is not contained.
+     */
+    private int indexOf(Object key)
+    {
+        if (key instanceof StringKey)
+        {
+            return indexOfNormalized(((StringKey)key).upperCase());
+        }
+
+        CharSequence chars = key instanceof CharSequence ? (CharSequence)key : key.toString();
+        int length = chars.length();
+        int hash = 0;
+
+        for (int i = 0; i < length; i ++ )
+        {
+            char c = chars.charAt(i);
+
+            if (c >= 128)
+            {
+                return indexOfNormalized(StringMap.normalize(chars));
+            }
+
+            hash = 31 * hash + toUpperCase(c);
+        }
+
+        // Turkic locales upper case the ASCII i to a dotted capital I
+        if (isTurkicLocale())
+        {
+            return indexOfNormalized(StringMap.normalize(chars));
+        }
+
+        int slot = spread(hash) & this.mask;
+        int index;
+
+        while ((index = this.slots[slot] - 1) >= 0)
+        {
+            if (this.hashes[index] == hash && equalsUpperCase(this.keys[index], chars))
+            {
+                return index;
+            }
+
+            slot = (slot + 1) & this.mask;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Finds the position of a key that is already in upper case form.
+     *
+     * @param normalized
+     * @return The position or -1 if the key is not contained.
+     */
+    private int indexOfNormalized(String normalized)
+    {
+        int hash = normalized.hashCode();
+        int slot = spread(hash) & this.mask;
+        int index;
+
+        while ((index = this.slots[slot] - 1) >= 0)
+        {
+            if (this.hashes[index] == hash && this.keys[index].equals(normalized))
+            {
+                return index;
+            }
+
+            slot = (slot + 1) & this.mask;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Checks whether the stored key equals the upper case form of the given ASCII sequence.
+     */
+    private static boolean equalsUpperCase(String stored, CharSequence ascii)
+    {
+        int length = ascii.length();
+
+        if (stored.length() != length)
+        {
+            return false;
+        }
+
+        for (int i = 0; i < length; i ++ )
+        {
+            if (stored.charAt(i) != toUpperCase(ascii.charAt(i)))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static char toUpperCase(char ascii)
+    {
+        return ascii >= 'a' && ascii <= 'z' ? (char)(ascii - 32) : ascii;
+    }
+
+    private static boolean isTurkicLocale()
+    {
+        String language = Locale.getDefault().getLanguage();
+        return language.equals("tr") || language.equals("az");
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int index)
+    {
+        // the constructor only copies values of the source map into the array
+        return (V)this.values[index];
+    }
+
+    private static int spread(int hash)
+    {
+        return (hash ^ (hash >>> 16)) * 0x9E3779B9;
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<String, V>>
+    {
+        @Override
+        public Iterator<Entry<String, V>> iterator()
+        {
+            return new Iterator<Entry<String, V>>()
+            {
+                private int index;
+
+                @Override
+                public boolean hasNext()
+                {
+                    return this.index < keys.length;
+                }
+
+                @Override
+                public Entry<String, V> next()
+                {
+                    if (this.index >= keys.length)
+                    {
+                        throw new NoSuchElementException();
+                    }
+
+                    int i = this.index ++ ;
+                    return new SimpleImmutableEntry<>(keys[i], valueAt(i));
+                }
+            };
+        }
+
+        @Override
+        public int size()
+        {
+            return keys.length;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package bt.types;
+
+/**
+ * A precomputed lookup key for {@link StringMap} and {@link ConcurrentStringMap}.
+ *
+ * <p>
+ * The key stores its normalized form and its case insensitive hash code when it is created. Passing it instead of a
+ * String to {@code get}, {@code containsKey}, {@code getOrDefault} or {@code remove} of those maps skips normalizing
+ * and hashing the key on every access. Keys that are looked up repeatedly, i.e. header or property names, should be
+ * created once and kept in constants.
+ * </p>
+ *
+ * <p>
+ * Two keys are equal if their strings are equal ignoring case.
+ * </p>
+ *
+ * @author &#8904
+ */
+public final class StringKey implements CharSequence
+{
+    private final String key;
+    private final String upperCase;
+    private final int hash;
+
+    private StringKey(String key)
+    {
+        this.key = key;
+        this.upperCase = key.toUpperCase();
+        this.hash = CaseInsensitive.hash(key);
+    }
+
+    /**
+     * Creates a key for the given String.
+     *
+     * @param key
+     * @return
+     */
+    public static StringKey of(String key)
+    {
+        if (key == null)
+        {
+            throw new NullPointerException("Key must not be null.");
+        }
+
+        return new StringKey(key);
+    }
+
+    /**
+     * Gets the key in the upper case form that {@link StringMap} stores its keys in.
+     *
+     * @return
+     */
+    String upperCase()
+    {
+        return this.upperCase;
+    }
+
+    @Override
+    public int length()
+    {
+        return this.key.length();
+    }
+
+    @Override
+    public char charAt(int index)
+    {
+        return this.key.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end)
+    {
+        return this.key.subSequence(start, end);
+    }
+
+    /**
+     * Returns the case insensitive hash code that was calculated on creation.
+     */
+    @Override
+    public int hashCode()
+    {
+        return this.hash;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o)
+        {
+            return true;
+        }
+
+        if (!(o instanceof StringKey))
+        {
+            return false;
+        }
+
+        StringKey other = (StringKey)o;
+        return this.hash == other.hash && CaseInsensitive.equals(this.key, other.key);
+    }
+
+    /**
+     * Returns the key with its original spelling.
+     */
+    @Override
+    public String toString()
+    {
+        return this.key;
+    }
+}
@@ -1,6 +1,7 @@
 package bt.types;
 
 import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
 import java.util.function.BiFunction;
 import java.util.function.Function;
@@ -27,7 +28,7 @@ public class StringMap<V> extends HashMap<String, V>
     @Override
     public boolean containsKey(Object key)
     {
-        return super.containsKey(key.toString().toUpperCase());
+        return super.containsKey(normalize(key));
     }
 
     /**
@@ -59,7 +60,7 @@ public class StringMap<V> extends HashMap<String, V>
     @Override
     public V get(Object key)
     {
-        return super.get(key.toString().toUpperCase());
+        return super.get(normalize(key));
     }
 
     /**
@@ -92,6 +93,22 @@ public class StringMap<V> extends HashMap<String, V>
         return super.put(key.toUpperCase(), value);
     }
 
+    /**
+     * Copies all of the mappings from the specified map to this map. Every key is normalized like in
+     * {@link #put(String, Object)}, which {@link HashMap#putAll(Map)} would bypass.
+     *
+     * @param map mappings to be stored in this map
+     * @throws NullPointerException if the specified map is null
+     */
+    @Override
+    public void putAll(Map<? extends String, ? extends V> map)
+    {
+        for (Entry<? extends String, ? extends V> entry : map.entrySet())
+        {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
     /**
      * Removes the mapping for a key from this map if it is present
      * (optional operation).   More formally, if this map contains a mapping
@@ -125,7 +142,7 @@ public class StringMap<V> extends HashMap<String, V>
     @Override
     public V remove(Object key)
     {
-        return super.remove(key.toString().toUpperCase());
+        return super.remove(normalize(key));
     }
 
     /**
@@ -151,7 +168,7 @@ public class StringMap<V> extends HashMap<String, V>
     @Override
     public V getOrDefault(Object key, V defaultValue)
     {
-        return super.getOrDefault(key.toString().toUpperCase(), defaultValue);
+        return super.getOrDefault(normalize(key), defaultValue);
     }
 
     /**
@@ -198,7 +215,7 @@ public class StringMap<V> extends HashMap<String, V>
     @Override
     public V putIfAbsent(String key, V value)
     {
-        return putIfAbsent(key.toUpperCase(), value);
+        return super.putIfAbsent(key.toUpperCase(), value);
     }
 
     /**
@@ -236,7 +253,7 @@ public class StringMap<V> extends HashMap<String, V>
     @Override
     public boolean remove(Object key, Object value)
     {
-        return super.remove(key.toString().toUpperCase(), value);
+        return super.remove(normalize(key), value);
     }
 
     /**
@@ -627,4 +644,37 @@ public class StringMap<V> extends HashMap<String, V>
     {
         return super.merge(key.toUpperCase(), value, remappingFunction);
     }
-}
\ No newline at end of file
+
+    /**
+     * Creates an immutable snapshot of this map that is optimized for lookups.
+     *
+     * <p>
+     * The snapshot finds exactly the same keys as this map. Lookups with ASCII keys don't create an upper case copy of
+     * the key and no node object is needed per entry. Later changes to this map are not reflected in the snapshot.
+     * </p>
+     *
+     * @return
+     */
+    public FrozenStringMap<V> freeze()
+    {
+        return new FrozenStringMap<>(this);
+    }
+
+    /**
+     * Converts the given lookup key to the upper case form that keys are stored in. {@link StringKey}s provide that
+     * form precomputed. {@link FrozenStringMap} uses the same conversion so that a frozen map answers exactly like
+     * the map it was created from.
+     *
+     * @param key
+     * @return
+     */
+    static String normalize(Object key)
+    {
+        if (key instanceof StringKey)
+        {
+            return ((StringKey)key).upperCase();
+        }
+
+        return key.toString().toUpperCase();
+    }
+}
@@ -0,0 +1,461 @@
+package bt.types;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A map with case insensitive String keys that additionally supports prefix queries, range scans and longest prefix
+ * matches.
+ *
+ * <p>
+ * Keys are normalized to upper case like in {@link StringMap}. Every key is a node in a trie whose children are sorted
+ * by character. A hash map from the upper case keys to their trie nodes serves {@link #get(Object) get},
+ * {@link #containsKey(Object) containsKey} and updates of existing keys, so those do not need to walk the trie. Only
+ * adding and removing keys touches the trie, in time proportional to the key length. Every key is converted to upper
+ * case only once per call.
+ * </p>
+ *
+ * <p>
+ * {@link #withPrefix(String)}, {@link #range(String, String)} and {@link #longestPrefixOf(String)} run in time
+ * proportional to the length of the query plus the number of results and return the entries in the order of their
+ * upper case keys. Iterating the map itself does not follow any particular order. None of them recurse, so keys of
+ * any length can be queried.
+ * </p>
+ *
+ * @author &#8904
+ * @param <V>
+ *            The type of the values.
+ */
+public class TrieStringMap<V> extends AbstractMap<String, V>
+{
+    private final Map<String, Node<V>> index = new HashMap<>();
+    private Node<V> root = new Node<>();
+    private Set<Entry<String, V>> entrySet;
+
+    @Override
+    public V get(Object key)
+    {
+        Node<V> node = this.index.get(StringMap.normalize(key));
+        return node == null ? null : node.value;
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return this.index.containsKey(StringMap.normalize(key));
+    }
+
+    @Override
+    public V put(String key, V value)
+    {
+        String upperCase = StringMap.normalize(key);
+        Node<V> node = this.index.get(upperCase);
+
+        if (node != null)
+        {
+            V old = node.value;
+            node.value = value;
+            return old;
+        }
+
+        node = this.root;
+
+        for (int i = 0; i < upperCase.length(); i ++ )
+        {
+            node = node.getOrAddChild(upperCase.charAt(i));
+        }
+
+        node.key = upperCase;
+        node.value = value;
+        this.index.put(upperCase, node);
+
+        return null;
+    }
+
+    @Override
+    public V remove(Object key)
+    {
+        Node<V> node = this.index.remove(StringMap.normalize(key));
+
+        if (node == null)
+        {
+            return null;
+        }
+
+        V old = node.value;
+        unlink(node.key);
+
+        return old;
+    }
+
+    @Override
+    public int size()
+    {
+        return this.index.size();
+    }
+
+    @Override
+    public void clear()
+    {
+        this.index.clear();
+        this.root = new Node<>();
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet()
+    {
+        Set<Entry<String, V>> entrySet = this.entrySet;
+
+        if (entrySet == null)
+        {
+            entrySet = new EntrySet();
+            this.entrySet = entrySet;
+        }
+
+        return entrySet;
+    }
+
+    /**
+     * Gets all entries whose key starts with the given prefix, ignoring case.
+     *
+     * @param prefix
+     * @return The matching entries ordered by their upper case keys.
+     */
+    public List<Entry<String, V>> withPrefix(String prefix)
+    {
+        String upperCase = StringMap.normalize(prefix);
+        Node<V> node = this.root;
+
+        for (int i = 0; i < upperCase.length() && node != null; i ++ )
+        {
+            node = node.getChild(upperCase.charAt(i));
+        }
+
+        List<Entry<String, V>> entries = new ArrayList<>();
+
+        if (node != null)
+        {
+            collect(node, entries);
+        }
+
+        return entries;
+    }
+
+    /**
+     * Gets all entries whose upper case key lies within the given bounds.
+     *
+     * @param from
+     *            The inclusive lower bound or null to start at the smallest key.
+     * @param to
+     *            The exclusive upper bound or null to end at the largest key.
+     * @return The matching entries ordered by their upper case keys.
+     */
+    public List<Entry<String, V>> range(String from, String to)
+    {
+        List<Entry<String, V>> entries = new ArrayList<>();
+        collect(this.root,
+                from == null ? null : StringMap.normalize(from),
+                to == null ? null : StringMap.normalize(to),
+                entries);
+        return entries;
+    }
+
+    /**
+     * Gets the entry with the longest key that is a prefix of the given text, ignoring case. This is typically used
+     * to find the most specific route for a path or command.
+     *
+     * @param text
+     * @return The entry or null if no key is a prefix of the text.
+     */
+    public Entry<String, V> longestPrefixOf(String text)
+    {
+        String upperCase = StringMap.normalize(text);
+        Node<V> node = this.root;
+        Node<V> match = node.key == null ? null : node;
+
+        for (int i = 0; i < upperCase.length(); i ++ )
+        {
+            node = node.getChild(upperCase.charAt(i));
+
+            if (node == null)
+            {
+                break;
+            }
+
+            if (node.key != null)
+            {
+                match = node;
+            }
+        }
+
+        return match == null ? null : new SimpleImmutableEntry<>(match.key, match.value);
+    }
+
+    /**
+     * Adds the entries of the given node and all of its descendants in order.
+     */
+    private void collect(Node<V> start, List<Entry<String, V>> entries)
+    {
+        Deque<Node<V>> stack = new ArrayDeque<>();
+        stack.push(start);
+
+        while (!stack.isEmpty())
+        {
+            Node<V> node = stack.pop();
+
+            if (node.key != null)
+            {
+                entries.add(new SimpleImmutableEntry<>(node.key, node.value));
+            }
+
+            // pushed in reverse so that the smallest child is visited next
+            for (int i = node.childCount - 1; i >= 0; i -- )
+            {
+                stack.push(node.children[i]);
+            }
+        }
+    }
+
+    /**
+     * Adds the entries of the given node and its descendants that lie within the given bounds in order.
+     */
+    private void collect(Node<V> start, String from, String to, List<Entry<String, V>> entries)
+    {
+        Deque<Position<V>> stack = new ArrayDeque<>();
+        stack.push(new Position<>(start, 0, from != null, to != null));
+
+        while (!stack.isEmpty())
+        {
+            Position<V> position = stack.pop();
+            Node<V> node = position.node;
+            int depth = position.depth;
+
+            if (position.upperTight && depth == to.length())
+            {
+                continue;
+            }
+
+            if (node.key != null && (!position.lowerTight || depth == from.length()))
+            {
+                entries.add(new SimpleImmutableEntry<>(node.key, node.value));
+            }
+
+            boolean lower = position.lowerTight && depth < from.length();
+
+            // pushed in reverse so that the smallest child is visited next
+            for (int i = node.childCount - 1; i >= 0; i -- )
+            {
+                char c = node.labels[i];
+
+                if (position.upperTight && c > to.charAt(depth))
+                {
+                    continue;
+                }
+
+                if (lower && c < from.charAt(depth))
+                {
+                    break;
+                }
+
+                stack.push(new Position<>(node.children[i],
+                                          depth + 1,
+                                          lower && c == from.charAt(depth),
+                                          position.upperTight && c == to.charAt(depth)));
+            }
+        }
+    }
+
+    /**
+     * Marks the node of the given key as no longer containing a key and removes all nodes of its path that became
+     * empty.
+     */
+    private void unlink(String upperCase)
+    {
+        Node<V>[] path = Node.newArray(upperCase.length() + 1);
+        path[0] = this.root;
+
+        for (int i = 0; i < upperCase.length(); i ++ )
+        {
+            path[i + 1] = path[i].getChild(upperCase.charAt(i));
+        }
+
+        Node<V> node = path[upperCase.length()];
+        node.key = null;
+        node.value = null;
+
+        for (int i = upperCase.length(); i > 0 && path[i].key == null && path[i].childCount == 0; i -- )
+        {
+            path[i - 1].removeChild(upperCase.charAt(i - 1));
+        }
+    }
+
+    /**
+     * A trie node. The key is only set if a key ends at this node.
+     */
+    private static final class Node<V>
+    {
+        private char[] labels = new char[0];
+        private Node<V>[] children = newArray(0);
+        private int childCount;
+        private String key;
+        private V value;
+
+        @SuppressWarnings("unchecked")
+        private static <V> Node<V>[] newArray(int length)
+        {
+            // generic arrays can't be created directly, the empty array only ever receives Node<V> instances
+            return (Node<V>[])new Node<?>[length];
+        }
+
+        private Node<V> getChild(char c)
+        {
+            int i = Arrays.binarySearch(this.labels, 0, this.childCount, c);
+            return i < 0 ? null : this.children[i];
+        }
+
+        private Node<V> getOrAddChild(char c)
+        {
+            int i = Arrays.binarySearch(this.labels, 0, this.childCount, c);
+
+            if (i >= 0)
+            {
+                return this.children[i];
+            }
+
+            i = -i - 1;
+
+            if (this.childCount == this.labels.length)
+            {
+                int capacity = Math.max(2, this.childCount * 2);
+                this.labels = Arrays.copyOf(this.labels, capacity);
+                this.children = Arrays.copyOf(this.children, capacity);
+            }
+
+            System.arraycopy(this.labels, i, this.labels, i + 1, this.childCount - i);
+            System.arraycopy(this.children, i, this.children, i + 1, this.childCount - i);
+
+            Node<V> child = new Node<>();
+            this.labels[i] = c;
+            this.children[i] = child;
+            this.childCount ++ ;
+
+            return child;
+        }
+
+        private void removeChild(char c)
+        {
+            int i = Arrays.binarySearch(this.labels, 0, this.childCount, c);
+
+            if (i >= 0)
+            {
+                System.arraycopy(this.labels, i + 1, this.labels, i, this.childCount - i - 1);
+                System.arraycopy(this.children, i + 1, this.children, i, this.childCount - i - 1);
+                this.children[ -- this.childCount] = null;
+            }
+        }
+    }
+
+    /**
+     * A node that is still to be visited by a range scan, together with its depth and whether the path to it equals the
+     * start of the lower or upper bound. If a bound is not tight, all keys below the node lie within it.
+     */
+    private static final class Position<V>
+    {
+        private final Node<V> node;
+        private final int depth;
+        private final boolean lowerTight;
+        private final boolean upperTight;
+
+        private Position(Node<V> node, int depth, boolean lowerTight, boolean upperTight)
+        {
+            this.node = node;
+            this.depth = depth;
+            this.lowerTight = lowerTight;
+            this.upperTight = upperTight;
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<String, V>>
+    {
+        @Override
+        public Iterator<Entry<String, V>> iterator()
+        {
+            Iterator<Node<V>> nodes = TrieStringMap.this.index.values().iterator();
+
+            return new Iterator<Entry<String, V>>()
+            {
+                private Node<V> last;
+
+                @Override
+                public boolean hasNext()
+                {
+                    return nodes.hasNext();
+                }
+
+                @Override
+                public Entry<String, V> next()
+                {
+                    this.last = nodes.next();
+                    return new NodeEntry(this.last);
+                }
+
+                @Override
+                public void remove()
+                {
+                    if (this.last == null)
+                    {
+                        throw new IllegalStateException();
+                    }
+
+                    nodes.remove();
+                    unlink(this.last.key);
+                    this.last = null;
+                }
+            };
+        }
+
+        @Override
+        public int size()
+        {
+            return TrieStringMap.this.size();
+        }
+
+        @Override
+        public void clear()
+        {
+            TrieStringMap.this.clear();
+        }
+    }
+
+    /**
+     * An entry that writes value changes through to its trie node.
+     */
+    private final class NodeEntry extends SimpleEntry<String, V>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final Node<V> node;
+
+        private NodeEntry(Node<V> node)
+        {
+            super(node.key, node.value);
+            this.node = node;
+        }
+
+        @Override
+        public V setValue(V value)
+        {
+            this.node.value = value;
+            return super.setValue(value);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package bt.prop;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests merging and updating {@link LayeredProperties}.
+ *
+ * @author &#8904
+ */
+public class LayeredPropertiesTest
+{
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testLaterLayersWin()
+    {
+        Map<String, String> overrides = new HashMap<>();
+        overrides.put("port", "8080");
+
+        var properties = new LayeredProperties(PropertySource.of(Map.of("host", "localhost", "port", "80")),
+                                               PropertySource.of(overrides));
+
+        assertEquals("localhost", properties.getValue("host"));
+        assertEquals("8080", properties.getValue("port"));
+        assertEquals("default", properties.getValue("missing", "default"));
+
+        overrides.put("host", "example.org");
+        assertEquals("localhost", properties.getValue("host"));
+
+        properties.refresh();
+        assertEquals("example.org", properties.getValue("host"));
+    }
+
+    @Test
+    public void testFileChangesUpdateUntilClosed() throws Exception
+    {
+        Path path = this.dir.resolve("layer.properties");
+        Files.writeString(path, "port: 80\n");
+
+        PropertyFile file = PropertyFile.of(path.toFile());
+        var properties = new LayeredProperties(file);
+
+        assertEquals("80", properties.getValue("port"));
+
+        assertTrue(file.setValues(Map.of("port", "8080")));
+        assertEquals("8080", properties.getValue("port"));
+
+        properties.close();
+        assertTrue(file.setValues(Map.of("port", "9090")));
+        assertEquals("8080", properties.getValue("port"));
+
+        properties.refresh();
+        assertEquals("9090", properties.getValue("port"));
+    }
+}
@@ -0,0 +1,98 @@
+package bt.prop;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import bt.utils.Benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Measures lookups through {@link Properties} in a property file with 10,000 lines compared to reading the file on
+ * every lookup, with and without watching the file. Run via <code>mvn test -Pbenchmark</code>.
+ *
+ * @author &#8904
+ */
+@Tag(Benchmark.TAG)
+public class PropertiesBenchmark
+{
+    private static final int LINES = 10_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void benchmarkGetValueOf() throws Exception
+    {
+        Path path = this.dir.resolve("benchmark.properties");
+        StringBuilder content = new StringBuilder();
+
+        for (int i = 0; i < LINES; i ++ )
+        {
+            content.append("field").append(i).append(": value of field ").append(i).append('\n');
+        }
+
+        Files.writeString(path, content);
+        File file = path.toFile();
+        String[] fields = new String[LINES];
+
+        for (int i = 0; i < LINES; i ++ )
+        {
+            // spread the lookups over the file, a full read costs most for fields at the bottom
+            fields[i] = "field" + (i * 7919 % LINES);
+        }
+
+        Benchmark.report("Reading the file per lookup, " + LINES + " lines",
+                         Benchmark.nanosPerOperation(1_000, i -> readValue(fields[i % LINES], path).length()));
+        Benchmark.report("Properties.getValueOf, " + LINES + " lines",
+                         Benchmark.nanosPerOperation(100_000,
+                                                     i -> Properties.getValueOf(fields[i % LINES], file).length()));
+
+        // a watched file is only checked for changes once per second instead of on every lookup
+        PropertyFile propertyFile = PropertyFile.of(file);
+        propertyFile.watch();
+
+        try
+        {
+            Benchmark.report("Properties.getValueOf of a watched file, " + LINES + " lines",
+                             Benchmark.nanosPerOperation(1_000_000,
+                                                         i -> Properties.getValueOf(fields[i % LINES], file).length()));
+        }
+        finally
+        {
+            propertyFile.unwatch();
+        }
+    }
+
+    /**
+     * Looks the field up the way it was done before lookups were cached, by reading the file until the field is found.
+     */
+    private static String readValue(String field, Path path)
+    {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8))
+        {
+            String line;
+
+            while ((line = reader.readLine()) != null)
+            {
+                if (line.startsWith(field + ":"))
+                {
+                    return line.substring(line.indexOf(':') + 1).trim();
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,395 @@
+package bt.prop;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import bt.log.Log;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests reading and writing through {@link PropertyFile}.
+ *
+ * @author &#8904
+ */
+public class PropertyFileTest
+{
+    private static final int WRITES = 100;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testWriteAndRead() throws Exception
+    {
+        Path path = this.dir.resolve("test.properties");
+        Files.writeString(path, "name: value\nport: 80\n");
+
+        PropertyFile file = PropertyFile.of(path.toFile());
+
+        assertEquals("value", file.getValue("name"));
+        assertTrue(file.setValues(Map.of("port", "8080", "host", "localhost")));
+        assertEquals(8080, file.getInt("port", 0));
+        assertEquals("localhost", file.getValue("host"));
+        assertEquals("value", file.getValue("name"));
+        assertEquals(List.of("name: value", "port: 8080", "host: localhost"), Files.readAllLines(path));
+    }
+
+    @Test
+    public void testLargeFileTruncatedInPlace() throws Exception
+    {
+        Path path = this.dir.resolve("large.properties");
+        StringBuilder content = new StringBuilder();
+
+        for (int i = 0; i < 600_000; i ++ )
+        {
+            content.append("field").append(i).append(": value of field ").append(i).append('\n');
+        }
+
+        Files.writeString(path, content);
+        assertTrue(Files.size(path) > 16 * 1024 * 1024);
+
+        PropertyFile file = PropertyFile.of(path.toFile());
+        file.setCheckInterval(1, TimeUnit.HOURS);
+        assertEquals("value of field 0", file.getValue("field0"));
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE))
+        {
+            channel.truncate(0);
+        }
+
+        // values are decoded lazily and must still come from the content that was read
+        assertEquals("value of field 599999", file.getValue("field599999"));
+    }
+
+    @Test
+    public void testWriteKeepsPermissions() throws Exception
+    {
+        Assumptions.assumeTrue(Files.getFileAttributeView(this.dir, PosixFileAttributeView.class) != null);
+
+        Path path = this.dir.resolve("permissions.properties");
+        Files.writeString(path, "name: value\n");
+        Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rw-r--r--"));
+
+        File file = path.toFile();
+        assertTrue(PropertyFile.of(file).setValues(Map.of("name", "other")));
+
+        assertEquals("rw-r--r--", PosixFilePermissions.toString(Files.getPosixFilePermissions(path)));
+        assertEquals(Files.getOwner(this.dir), Files.getOwner(path));
+    }
+
+    @Test
+    public void testReadsDontCreateLockFile() throws Exception
+    {
+        Path path = this.dir.resolve("missing").resolve("read.properties");
+
+        assertEquals(null, PropertyFile.of(path.toFile()).getValue("name"));
+        assertTrue(Files.exists(path));
+        assertFalse(Files.exists(Path.of(path + ".lock")));
+    }
+
+    @Test
+    public void testWriteToMissingDirectory() throws Exception
+    {
+        Path path = this.dir.resolve("new").resolve("write.properties");
+
+        assertTrue(PropertyFile.of(path.toFile()).setValues(Map.of("name", "value")));
+        assertEquals(List.of("name: value"), Files.readAllLines(path));
+    }
+
+    @Test
+    public void testNonAsciiAndLineTerminators() throws Exception
+    {
+        Path path = this.dir.resolve("encoding.properties");
+        Files.writeString(path, "gr\u00fc\u00dfe: hallo\r\nname: caf\u00e9\rport: 80\nname: second\n");
+
+        PropertyFile file = PropertyFile.of(path.toFile());
+
+        assertEquals("hallo", file.getValue("gr\u00fc\u00dfe"));
+        assertEquals("caf\u00e9", file.getValue("name"));
+        assertEquals("80", file.getValue("port"));
+        assertEquals(null, file.getValue("gr\u00fc"));
+        assertEquals(List.of("gr\u00fc\u00dfe"), List.of(file.getAllFieldsLike("gr\u00fc")));
+        assertEquals(List.of("caf\u00e9", "second"), List.of(file.getAllLike("name")));
+    }
+
+    @Test
+    public void testLookupsSeeExternalChanges() throws Exception
+    {
+        Path path = this.dir.resolve("external.properties");
+        Files.writeString(path, "name: value\n");
+
+        PropertyFile file = PropertyFile.of(path.toFile());
+        assertEquals("value", file.getValue("name"));
+
+        // like reading the file on every lookup, a change by another process is visible right away
+        Files.writeString(path, "name: other value\n");
+        assertEquals("other value", file.getValue("name"));
+        assertEquals("other value", Properties.getValueOf("name", path.toFile()));
+    }
+
+    @Test
+    public void testWatchedFileIsReloaded() throws Exception
+    {
+        Path path = this.dir.resolve("watched.properties");
+        Files.writeString(path, "name: value\nport: 80\n");
+
+        PropertyFile file = PropertyFile.of(path.toFile());
+        List<PropertyChange> changes = new CopyOnWriteArrayList<>();
+        var changed = new CountDownLatch(1);
+
+        file.addListener("port", change ->
+        {
+            changes.add(change);
+            changed.countDown();
+        });
+
+        assertTrue(file.watch(10, TimeUnit.MILLISECONDS));
+
+        try
+        {
+            Files.writeString(path, "name: value\nport: 8080\n");
+
+            assertTrue(changed.await(10, TimeUnit.SECONDS));
+            assertEquals(8080, file.getInt("port", 0));
+            assertEquals("80", changes.get(0).getOldValue());
+            assertEquals("8080", changes.get(0).getNewValue());
+        }
+        finally
+        {
+            file.unwatch();
+        }
+    }
+
+    @Test
+    public void testWatchedFileIsCheckedWithoutEvents() throws Exception
+    {
+        Path path = this.dir.resolve("lost.properties");
+        Files.writeString(path, "name: value\n");
+
+        PropertyFile file = PropertyFile.of(path.toFile());
+        assertTrue(file.watch());
+
+        try
+        {
+            // stop receiving events while the file is still considered watched, as if an event was lost
+            PropertyWatcher.get().unwatch(file);
+            Files.writeString(path, "name: other value\n");
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+            while (!"other value".equals(file.getValue("name")) && System.nanoTime() < deadline)
+            {
+                Thread.sleep(50);
+            }
+
+            assertEquals("other value", file.getValue("name"));
+            assertTrue(file.isWatched());
+        }
+        finally
+        {
+            file.unwatch();
+        }
+    }
+
+    @Test
+    public void testConcurrentReadersAndWriters() throws Exception
+    {
+        Path path = this.dir.resolve("concurrent.properties");
+        Files.writeString(path, "a: 0\nb: 0\n");
+
+        PropertyFile file = PropertyFile.of(path.toFile());
+        int writers = 4;
+        var stop = new AtomicBoolean();
+        var start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 2);
+        List<Future<?>> writes = new ArrayList<>();
+        List<Future<?>> reads = new ArrayList<>();
+
+        try
+        {
+            for (int w = 0; w < writers; w ++ )
+            {
+                String writer = "writer" + w;
+                writes.add(executor.submit(() ->
+                {
+                    start.await();
+
+                    for (int i = 0; i < WRITES; i ++ )
+                    {
+                        String value = writer + "-" + i;
+                        assertTrue(file.setValues(Map.of("a", value, "b", value, writer, String.valueOf(i))));
+                    }
+
+                    return null;
+                }));
+            }
+
+            // reads the cached snapshots, which have to be consistent with a single write
+            reads.add(executor.submit(() ->
+            {
+                start.await();
+
+                while (!stop.get())
+                {
+                    Map<String, String> values = file.getValues();
+                    assertEquals(values.get("a"), values.get("b"));
+                }
+
+                return null;
+            }));
+
+            // reads the file from disk like another process would, which must never see a partially written file
+            reads.add(executor.submit(() ->
+            {
+                start.await();
+
+                while (!stop.get())
+                {
+                    PropertyIndex index = PropertyIndex.of(path);
+                    assertNotNull(index.get("a"));
+                    assertEquals(index.get("a"), index.get("b"));
+                }
+
+                return null;
+            }));
+
+            start.countDown();
+
+            for (Future<?> write : writes)
+            {
+                write.get(60, TimeUnit.SECONDS);
+            }
+        }
+        finally
+        {
+            stop.set(true);
+
+            for (Future<?> read : reads)
+            {
+                read.get(60, TimeUnit.SECONDS);
+            }
+
+            executor.shutdownNow();
+        }
+
+        PropertyIndex index = PropertyIndex.of(path);
+
+        for (int w = 0; w < writers; w ++ )
+        {
+            assertEquals(String.valueOf(WRITES - 1), index.get("writer" + w));
+        }
+    }
+
+    @Test
+    public void testConcurrentWritesFromAnotherProcess() throws Exception
+    {
+        Path path = this.dir.resolve("processes.properties");
+        Files.writeString(path, "");
+
+        Process process = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                                             "-cp",
+                                             classPath(PropertyFileTest.class, PropertyFile.class, Log.class),
+                                             PropertyFileTest.class.getName(),
+                                             path.toString(),
+                                             "other")
+                                                     .inheritIO()
+                                                     .start();
+
+        try
+        {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+
+            // start once the other process is writing, so that the writes of both processes overlap
+            while (PropertyIndex.of(path).get("other0") == null && process.isAlive() && System.nanoTime() < deadline)
+            {
+                Thread.sleep(1);
+            }
+
+            writeFields(path, "local");
+            assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+        }
+        finally
+        {
+            process.destroyForcibly();
+        }
+
+        assertEquals(0, process.exitValue());
+
+        // every write re-reads the file under the file lock, so neither process may lose the fields of the other
+        PropertyIndex index = PropertyIndex.of(path);
+
+        for (int i = 0; i < WRITES; i ++ )
+        {
+            assertEquals("local", index.get("local" + i));
+            assertEquals("other", index.get("other" + i));
+        }
+    }
+
+    /**
+     * Builds a class path from the locations the given classes were loaded from, which unlike the java.class.path
+     * property also works when the test runner uses its own class loader.
+     */
+    private static String classPath(Class<?>... classes) throws Exception
+    {
+        Set<String> locations = new LinkedHashSet<>();
+
+        for (Class<?> type : classes)
+        {
+            locations.add(Path.of(type.getProtectionDomain().getCodeSource().getLocation().toURI()).toString());
+        }
+
+        return String.join(File.pathSeparator, locations);
+    }
+
+    /**
+     * Writes {@link #WRITES} fields with the given prefix one by one.
+     */
+    private static void writeFields(Path path, String prefix)
+    {
+        PropertyFile file = PropertyFile.of(path.toFile());
+
+        for (int i = 0; i < WRITES; i ++ )
+        {
+            if (!file.setValues(Map.of(prefix + i, prefix)))
+            {
+                throw new IllegalStateException("Failed to write " + prefix + i);
+            }
+        }
+    }
+
+    /**
+     * Entry point of the second process in {@link #testConcurrentWritesFromAnotherProcess()}.
+     *
+     * @param args
+     *            The path of the property file and the prefix of the fields to write.
+     */
+    public static void main(String[] args)
+    {
+        writeFields(Path.of(args[0]), args[1]);
+    }
+}
@@ -0,0 +1,98 @@
+package bt.prop;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import bt.utils.Benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Measures parsing a large property file into a {@link PropertyIndex} compared to reading its lines and fields into
+ * Strings. Run via <code>mvn test -Pbenchmark</code>.
+ *
+ * @author &#8904
+ */
+@Tag(Benchmark.TAG)
+public class PropertyIndexBenchmark
+{
+    private static final int LINES = 2_000_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void benchmarkParse() throws Exception
+    {
+        Path path = this.dir.resolve("large.properties");
+        StringBuilder content = new StringBuilder();
+
+        for (int i = 0; i < LINES; i ++ )
+        {
+            content.append("tenant").append(i).append(".feature: enabled for tenant ").append(i).append('\n');
+        }
+
+        Files.writeString(path, content);
+        String name = LINES + " lines, " + Files.size(path) / (1024 * 1024) + " MB";
+
+        Benchmark.report("Reading lines and fields, " + name, Benchmark.nanosPerOperation(1, i -> read(path).size()));
+        Benchmark.report("PropertyIndex.of, " + name, Benchmark.nanosPerOperation(1, i -> index(path).fieldCount()));
+
+        Benchmark.reportBytes("Reading lines and fields, " + name, Benchmark.allocatedBytes(() -> read(path)));
+        Benchmark.reportBytes("PropertyIndex.of, " + name, Benchmark.allocatedBytes(() -> index(path)));
+    }
+
+    /**
+     * Reads the file the way it was done before it was indexed, keeping all lines and a map of the values by field.
+     */
+    private static Map<String, String> read(Path path)
+    {
+        List<String> lines = new ArrayList<>();
+        Map<String, String> values = new HashMap<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8))
+        {
+            String line;
+
+            while ((line = reader.readLine()) != null)
+            {
+                lines.add(line);
+
+                int colon = line.indexOf(':');
+
+                if (colon >= 0)
+                {
+                    values.putIfAbsent(line.substring(0, colon), line.substring(colon + 1).trim());
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+
+        return values;
+    }
+
+    private static PropertyIndex index(Path path)
+    {
+        try
+        {
+            return PropertyIndex.of(path);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
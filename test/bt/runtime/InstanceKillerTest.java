@@ -0,0 +1,246 @@
+package bt.runtime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import bt.log.Log;
+import bt.types.Killable;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests registering Killables with and killing them through the {@link InstanceKiller}.
+ *
+ * @author &#8904
+ */
+public class InstanceKillerTest
+{
+    @Test
+    public void testConcurrentRegistration() throws Exception
+    {
+        InstanceKiller.logActivity(false);
+
+        int threads = 8;
+        var start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<List<Killable>>> futures = new ArrayList<>();
+
+        try
+        {
+            for (int t = 0; t < threads; t ++ )
+            {
+                int thread = t;
+                futures.add(executor.submit(() ->
+                {
+                    start.await();
+                    List<Killable> kept = new ArrayList<>();
+
+                    for (int i = 0; i < 10_000; i ++ )
+                    {
+                        // equal to every other instance, so only identity keeps the registrations apart
+                        Killable killable = new EqualKillable();
+
+                        InstanceKiller.killOnShutdown(killable, i % 7);
+                        InstanceKiller.killOnShutdown(killable, i % 5);
+
+                        if (i % 2 == thread % 2)
+                        {
+                            InstanceKiller.unregister(killable);
+                        }
+                        else
+                        {
+                            kept.add(killable);
+                        }
+                    }
+
+                    return kept;
+                }));
+            }
+
+            start.countDown();
+
+            for (Future<List<Killable>> future : futures)
+            {
+                for (Killable killable : future.get(60, TimeUnit.SECONDS))
+                {
+                    assertTrue(InstanceKiller.isRegistered(killable));
+                    InstanceKiller.unregister(killable);
+                    assertFalse(InstanceKiller.isRegistered(killable));
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+            InstanceKiller.logActivity(true);
+        }
+    }
+
+    @Test
+    public void testRegistrationIsByIdentity()
+    {
+        InstanceKiller.logActivity(false);
+
+        try
+        {
+            Killable first = new EqualKillable();
+            Killable second = new EqualKillable();
+
+            InstanceKiller.killOnShutdown(first);
+
+            assertTrue(InstanceKiller.isRegistered(first));
+            assertFalse(InstanceKiller.isRegistered(second));
+
+            InstanceKiller.unregister(second);
+            assertTrue(InstanceKiller.isRegistered(first));
+
+            InstanceKiller.unregister(first);
+            assertFalse(InstanceKiller.isRegistered(first));
+        }
+        finally
+        {
+            InstanceKiller.logActivity(true);
+        }
+    }
+
+    @Test
+    public void testShutdownOrder() throws Exception
+    {
+        List<String> killed = runShutdown("order");
+
+        // phases run from the highest priority down, the order within a phase is not defined
+        assertEquals(List.of("high"), killed.subList(0, 1));
+        assertEquals(Set.of("medium1", "medium2", "medium3"), Set.copyOf(killed.subList(1, 4)));
+        assertEquals(List.of("low"), killed.subList(4, 5));
+        assertEquals(5, killed.size());
+    }
+
+    @Test
+    public void testNullDoesNotAbortShutdown() throws Exception
+    {
+        assertEquals(List.of("high", "low"), runShutdown("null"));
+    }
+
+    /**
+     * Runs {@link #main(String[])} with the given scenario in a new JVM and collects the names of the killed instances.
+     */
+    static List<String> runShutdown(String scenario) throws Exception
+    {
+        Process process = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                                             "-cp",
+                                             classPath(InstanceKillerTest.class, InstanceKiller.class, Log.class),
+                                             InstanceKillerTest.class.getName(),
+                                             scenario)
+                                                     .redirectErrorStream(true)
+                                                     .start();
+
+        List<String> output;
+
+        try (var reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8)))
+        {
+            output = reader.lines().collect(Collectors.toList());
+        }
+
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+        assertEquals(0, process.exitValue(), String.join("\n", output));
+
+        return output.stream()
+                     .filter(line -> line.startsWith("killed "))
+                     .map(line -> line.substring(7))
+                     .collect(Collectors.toList());
+    }
+
+    private static String classPath(Class<?>... classes) throws Exception
+    {
+        Set<String> locations = new LinkedHashSet<>();
+
+        for (Class<?> type : classes)
+        {
+            locations.add(Path.of(type.getProtectionDomain().getCodeSource().getLocation().toURI()).toString());
+        }
+
+        return String.join(File.pathSeparator, locations);
+    }
+
+    /**
+     * Entry point of the JVM started by {@link #runShutdown(String)}.
+     *
+     * @param args
+     *            The scenario to register Killables for.
+     */
+    public static void main(String[] args)
+    {
+        if (args[0].equals("null"))
+        {
+            InstanceKiller.killOnShutdown(new NamedKillable("low"), 1);
+            InstanceKiller.killOnShutdown(null, 5);
+            InstanceKiller.killOnShutdown(new NamedKillable("high"), 10);
+            System.exit(0);
+        }
+
+        InstanceKiller.killOnShutdown(new NamedKillable("low"), 1);
+        InstanceKiller.killOnShutdown(new NamedKillable("medium1"), 5);
+        InstanceKiller.killOnShutdown(new NamedKillable("high"), 10);
+        InstanceKiller.killOnShutdown(new NamedKillable("medium2"), 5);
+        InstanceKiller.killOnShutdown(new NamedKillable("medium3"), 5);
+
+        Killable unregistered = new NamedKillable("unregistered");
+        InstanceKiller.killOnShutdown(unregistered, 5);
+        InstanceKiller.unregister(unregistered);
+
+        System.exit(0);
+    }
+
+    private static final class NamedKillable implements Killable
+    {
+        private final String name;
+
+        private NamedKillable(String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public void kill()
+        {
+            System.out.println("killed " + this.name);
+        }
+    }
+
+    private static final class EqualKillable implements Killable
+    {
+        @Override
+        public void kill()
+        {
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            return obj instanceof EqualKillable;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 0;
+        }
+    }
+}
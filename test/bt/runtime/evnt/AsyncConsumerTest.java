@@ -0,0 +1,218 @@
+package bt.runtime.evnt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests queueing and draining data through an {@link AsyncConsumer}.
+ *
+ * @author &#8904
+ */
+public class AsyncConsumerTest
+{
+    @Test
+    public void testDropDiscardsNewData()
+    {
+        List<Integer> received = new ArrayList<>();
+        List<Runnable> tasks = new ArrayList<>();
+        var async = new AsyncConsumer<Integer>(received::add, tasks::add, 3, OverflowPolicy.DROP);
+
+        for (int i = 0; i < 5; i ++ )
+        {
+            async.accept(i);
+        }
+
+        // only a single draining task is submitted until it ran
+        assertEquals(1, tasks.size());
+        tasks.remove(0).run();
+
+        assertEquals(List.of(0, 1, 2), received);
+        assertEquals(2, async.getDropCount());
+        assertEquals(0, async.getQueueSize());
+    }
+
+    @Test
+    public void testDropOldestDiscardsQueuedData()
+    {
+        List<Integer> received = new ArrayList<>();
+        List<Runnable> tasks = new ArrayList<>();
+        var async = new AsyncConsumer<Integer>(received::add, tasks::add, 3, OverflowPolicy.DROP_OLDEST);
+
+        for (int i = 0; i < 5; i ++ )
+        {
+            async.accept(i);
+        }
+
+        tasks.remove(0).run();
+
+        assertEquals(List.of(2, 3, 4), received);
+        assertEquals(2, async.getDropCount());
+    }
+
+    @Test
+    public void testBlockWaitsForSpace() throws Exception
+    {
+        List<Integer> received = new ArrayList<>();
+        var tasks = new LinkedBlockingQueue<Runnable>();
+        var async = new AsyncConsumer<Integer>(received::add, tasks::add, 2, OverflowPolicy.BLOCK);
+
+        async.accept(0);
+        async.accept(1);
+
+        Thread producer = new Thread(() -> async.accept(2));
+        producer.start();
+
+        // the producer can't queue its data until the queue was drained
+        producer.join(200);
+        assertTrue(producer.isAlive());
+
+        tasks.take().run();
+        producer.join(10_000);
+        assertFalse(producer.isAlive());
+
+        // the data of the producer was either drained by the first task or it submitted a new one
+        Runnable task;
+
+        while ((task = tasks.poll()) != null)
+        {
+            task.run();
+        }
+
+        assertEquals(List.of(0, 1, 2), received);
+        assertEquals(0, async.getDropCount());
+    }
+
+    @Test
+    public void testDispatcherSubscription()
+    {
+        var dispatcher = new Dispatcher();
+        var deadLetters = new DeadLetterQueue(10);
+        List<String> received = new ArrayList<>();
+        List<Runnable> tasks = new ArrayList<>();
+        Consumer<String> consumer = s ->
+        {
+            if (s.isEmpty())
+            {
+                throw new IllegalArgumentException();
+            }
+
+            received.add(s);
+        };
+
+        dispatcher.setErrorHandler(deadLetters);
+        var async = dispatcher.subscribeTo(String.class, consumer, tasks::add, 10, OverflowPolicy.DROP);
+
+        // the dispatching thread only queues the data
+        assertEquals(1, dispatcher.dispatch("a"));
+        assertEquals(1, dispatcher.dispatch(""));
+        assertEquals(1, dispatcher.dispatch("b"));
+        assertEquals(List.of(), received);
+        assertEquals(3, async.getQueueSize());
+
+        tasks.remove(0).run();
+
+        // the failing element is passed to the error handler without stopping the other ones
+        assertEquals(List.of("a", "b"), received);
+        assertEquals("", deadLetters.poll().getData());
+
+        assertTrue(dispatcher.unsubscribeFrom(String.class, consumer));
+        assertEquals(0, dispatcher.dispatch("c"));
+    }
+
+    @Test
+    public void testCapacityIsFixed()
+    {
+        List<Runnable> tasks = new ArrayList<>();
+        var async = new AsyncConsumer<Integer>(i ->
+        {
+        }, tasks::add, 4, OverflowPolicy.DROP);
+
+        assertEquals(4, async.getCapacity());
+
+        for (int i = 0; i < 6; i ++ )
+        {
+            async.accept(i);
+            assertEquals(4, async.getCapacity());
+        }
+
+        assertEquals(4, async.getQueueSize());
+        assertEquals(2, async.getDropCount());
+    }
+
+    @Test
+    public void testCallerRunsExecutorDoesNotRecurse() throws Exception
+    {
+        int threads = 4;
+        int elements = 200_000;
+        var nesting = ThreadLocal.withInitial(() -> new int[1]);
+        var maxNesting = new AtomicInteger();
+        var received = new AtomicInteger();
+
+        // runs the draining task on the dispatching thread and records how deeply tasks are nested
+        var async = new AsyncConsumer<Integer>(i -> received.incrementAndGet(), task ->
+        {
+            int[] depth = nesting.get();
+            maxNesting.accumulateAndGet( ++ depth[0], Math::max);
+
+            try
+            {
+                task.run();
+            }
+            finally
+            {
+                depth[0] -- ;
+            }
+        }, 16, OverflowPolicy.BLOCK);
+
+        var start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+
+        try
+        {
+            for (int t = 0; t < threads; t ++ )
+            {
+                futures.add(executor.submit(() ->
+                {
+                    start.await();
+
+                    for (int i = 0; i < elements; i ++ )
+                    {
+                        async.accept(i);
+                    }
+
+                    return null;
+                }));
+            }
+
+            start.countDown();
+
+            for (Future<?> future : futures)
+            {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, maxNesting.get());
+        assertEquals(threads * elements, received.get());
+        assertEquals(0, async.getQueueSize());
+    }
+}
@@ -0,0 +1,136 @@
+package bt.runtime.evnt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import bt.runtime.evnt.KeyedSubscriptionTest.RecordingBatchConsumer;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests dispatching batches via {@link Dispatcher#dispatchAll(java.util.Collection)}.
+ *
+ * @author &#8904
+ */
+public class BatchDispatchTest
+{
+    @Test
+    public void testEachSubscriberReceivesTheWholeBatch()
+    {
+        var dispatcher = new Dispatcher();
+        List<String> order = new ArrayList<>();
+
+        dispatcher.subscribeTo(Integer.class, i -> order.add("first " + i), 1);
+        dispatcher.subscribeTo(Integer.class, i -> order.add("second " + i));
+        dispatcher.subscribeTo(Integer.class, () -> order.add("runnable"));
+
+        assertEquals(9, dispatcher.dispatchAll(List.of(1, 2, 3)));
+        assertEquals(List.of("first 1", "first 2", "first 3",
+                             "second 1", "second 2", "second 3",
+                             "runnable", "runnable", "runnable"),
+                     order);
+    }
+
+    @Test
+    public void testBatchConsumerReceivesSingleCall()
+    {
+        var dispatcher = new Dispatcher();
+        var consumer = new RecordingBatchConsumer<Number>();
+
+        dispatcher.subscribeTo(Number.class, consumer);
+
+        // elements are grouped by their class, keeping their order within each class
+        assertEquals(5, dispatcher.dispatchAll(Arrays.asList(1, 2L, null, 3, 4L, 5)));
+        assertEquals(List.of(List.of(1, 3, 5), List.of(2L, 4L)), consumer.batches);
+        assertEquals(List.of(), consumer.singles);
+
+        assertEquals(2, dispatcher.dispatchAll(new Object[] { 6, "ignored", 7 }));
+        assertEquals(List.of(6, 7), consumer.batches.get(2));
+    }
+
+    @Test
+    public void testKeyedSubscribersReceiveTheirElements()
+    {
+        var dispatcher = new Dispatcher();
+        var even = new RecordingBatchConsumer<Integer>();
+        List<Integer> odd = new ArrayList<>();
+
+        dispatcher.subscribeTo(Integer.class, i -> i % 2, 0, even);
+        dispatcher.subscribeTo(Integer.class, i -> i % 2, 1, odd::add);
+
+        assertEquals(5, dispatcher.dispatchAll(List.of(1, 2, 3, 4, 5)));
+        assertEquals(List.of(List.of(2, 4)), even.batches);
+        assertEquals(List.of(1, 3, 5), odd);
+    }
+
+    @Test
+    public void testCancellableElementsAreDispatchedOneByOne()
+    {
+        var dispatcher = new Dispatcher();
+        List<String> order = new ArrayList<>();
+
+        dispatcher.subscribeTo(Request.class, r ->
+        {
+            order.add("first " + r.name);
+
+            if (r.name.equals("b"))
+            {
+                r.cancel();
+            }
+        }, 1);
+        dispatcher.subscribeTo(Request.class, r -> order.add("second " + r.name));
+
+        assertEquals(5, dispatcher.dispatchAll(List.of(new Request("a"), new Request("b"), new Request("c"))));
+        assertEquals(List.of("first a", "second a", "first b", "first c", "second c"), order);
+    }
+
+    @Test
+    public void testFailedBatchIsPassedToErrorHandler()
+    {
+        var dispatcher = new Dispatcher();
+        var deadLetters = new DeadLetterQueue(10);
+        List<Integer> received = new ArrayList<>();
+
+        dispatcher.setErrorHandler(deadLetters);
+        dispatcher.subscribeTo(Integer.class, new BatchConsumer<Integer>()
+        {
+            @Override
+            public void acceptAll(List<Integer> batch)
+            {
+                throw new IllegalStateException();
+            }
+        }, 1);
+        dispatcher.subscribeTo(Integer.class, received::add);
+
+        dispatcher.dispatchAll(List.of(1, 2));
+
+        assertEquals(List.of(1, 2), received);
+        assertEquals(List.of(1, 2), deadLetters.poll().getData());
+    }
+
+    private static class Request implements Cancellable
+    {
+        private final String name;
+        private boolean cancelled;
+
+        private Request(String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public void cancel()
+        {
+            this.cancelled = true;
+        }
+
+        @Override
+        public boolean isCancelled()
+        {
+            return this.cancelled;
+        }
+    }
+}
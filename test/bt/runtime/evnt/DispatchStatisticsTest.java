@@ -0,0 +1,215 @@
+package bt.runtime.evnt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests recording {@link DispatchStatistics} of a {@link Dispatcher}.
+ *
+ * @author &#8904
+ */
+public class DispatchStatisticsTest
+{
+    @Test
+    public void testEnableAndDisable()
+    {
+        var dispatcher = new Dispatcher();
+        dispatcher.subscribeTo(Integer.class, i ->
+        {
+        });
+
+        assertNull(dispatcher.getStatistics());
+
+        var statistics = dispatcher.enableStatistics(1);
+
+        // enabling again keeps the existing instance and sample rate
+        assertSame(statistics, dispatcher.enableStatistics(100));
+        assertSame(statistics, dispatcher.getStatistics());
+        assertEquals(1, statistics.getSampleRate());
+
+        dispatcher.dispatch(1);
+        dispatcher.disableStatistics();
+        dispatcher.dispatch(2);
+
+        assertNull(dispatcher.getStatistics());
+        assertEquals(Map.of(Integer.class, 1L), statistics.getDispatchCounts());
+        assertEquals(1, statistics.getSubscriberStatistics().get(0).getInvocationCount());
+    }
+
+    @Test
+    public void testDispatchAndInvocationCounts()
+    {
+        var dispatcher = new Dispatcher();
+        var statistics = dispatcher.enableStatistics(1);
+
+        // subscribed after the statistics were enabled
+        dispatcher.subscribeTo(Integer.class, new IntegerConsumer());
+        dispatcher.subscribeTo(Number.class, new NumberConsumer());
+
+        for (int i = 0; i < 3; i ++ )
+        {
+            dispatcher.dispatch(i);
+        }
+
+        dispatcher.dispatchAll(List.of(3, 4, 5.0));
+
+        assertEquals(Map.of(Integer.class, 5L, Double.class, 1L), statistics.getDispatchCounts());
+
+        // a batch counts as a single invocation
+        var integer = find(statistics, IntegerConsumer.class);
+        assertEquals(Integer.class, integer.getType());
+        assertEquals(4, integer.getInvocationCount());
+        assertEquals(4, integer.getSampleCount());
+        assertEquals(0, integer.getExceptionCount());
+
+        var number = find(statistics, NumberConsumer.class);
+        assertEquals(Number.class, number.getType());
+        assertEquals(5, number.getInvocationCount());
+        assertTrue(number.getMaxNanos() >= number.getAverageNanos());
+    }
+
+    @Test
+    public void testSampling()
+    {
+        var dispatcher = new Dispatcher();
+        var statistics = dispatcher.enableStatistics(1000);
+        dispatcher.subscribeTo(Integer.class, new IntegerConsumer());
+
+        for (int i = 0; i < 10_000; i ++ )
+        {
+            dispatcher.dispatch(i);
+        }
+
+        // every invocation is counted, but only roughly every 1000th is timed
+        var integer = find(statistics, IntegerConsumer.class);
+        assertEquals(10_000, integer.getInvocationCount());
+        assertTrue(integer.getSampleCount() > 0 && integer.getSampleCount() < 100,
+                   "Sample count " + integer.getSampleCount());
+    }
+
+    @Test
+    public void testExceptionCount()
+    {
+        var dispatcher = new Dispatcher();
+        var statistics = dispatcher.enableStatistics(1);
+        dispatcher.setErrorHandler(new DeadLetterQueue(10));
+
+        dispatcher.subscribeTo(Integer.class, new FailingConsumer());
+        dispatcher.subscribeTo(Integer.class, new IntegerConsumer());
+
+        dispatcher.dispatch(1);
+        dispatcher.dispatchAll(List.of(2, 3));
+
+        assertEquals(2, statistics.getExceptionCount());
+
+        var failing = find(statistics, FailingConsumer.class);
+        assertEquals(2, failing.getInvocationCount());
+        assertEquals(2, failing.getExceptionCount());
+        assertEquals(2, find(statistics, IntegerConsumer.class).getInvocationCount());
+    }
+
+    @Test
+    public void testSlowestSubscribers()
+    {
+        var dispatcher = new Dispatcher();
+        var statistics = dispatcher.enableStatistics(1);
+
+        dispatcher.subscribeTo(Integer.class, new IntegerConsumer());
+        dispatcher.subscribeTo(Integer.class, new SlowConsumer());
+        dispatcher.subscribeTo(Number.class, new NumberConsumer());
+
+        for (int i = 0; i < 5; i ++ )
+        {
+            dispatcher.dispatch(i);
+        }
+
+        List<SubscriberStatistics> slowest = statistics.getSlowestSubscribers(2);
+        assertEquals(2, slowest.size());
+        assertEquals(SlowConsumer.class.getName(), slowest.get(0).getName());
+        assertTrue(slowest.get(0).getAverageNanos() >= 1_000_000);
+        assertEquals(3, statistics.getSlowestSubscribers(10).size());
+    }
+
+    @Test
+    public void testUnsubscribeAndReset()
+    {
+        var dispatcher = new Dispatcher();
+        var statistics = dispatcher.enableStatistics(1);
+        Consumer<Integer> consumer = new IntegerConsumer();
+
+        dispatcher.subscribeTo(Integer.class, consumer);
+        dispatcher.subscribeTo(Number.class, new NumberConsumer());
+        dispatcher.dispatch(1);
+
+        // the statistics must not keep unsubscribed instances reachable
+        dispatcher.unsubscribeFrom(Integer.class, consumer);
+        assertEquals(1, statistics.getSubscriberStatistics().size());
+        assertEquals(NumberConsumer.class.getName(), statistics.getSubscriberStatistics().get(0).getName());
+
+        statistics.reset();
+        assertEquals(Map.of(), statistics.getDispatchCounts());
+        assertEquals(List.of(), statistics.getSubscriberStatistics());
+
+        dispatcher.dispatch(2);
+        assertEquals(Map.of(Integer.class, 1L), statistics.getDispatchCounts());
+        assertEquals(1, find(statistics, NumberConsumer.class).getInvocationCount());
+    }
+
+    private static SubscriberStatistics find(DispatchStatistics statistics, Class<?> subscriberType)
+    {
+        return statistics.getSubscriberStatistics()
+                         .stream()
+                         .filter(s -> s.getName().equals(subscriberType.getName()))
+                         .findFirst()
+                         .orElseThrow();
+    }
+
+    private static class IntegerConsumer implements Consumer<Integer>
+    {
+        @Override
+        public void accept(Integer data)
+        {
+        }
+    }
+
+    private static class NumberConsumer implements Consumer<Number>
+    {
+        @Override
+        public void accept(Number data)
+        {
+        }
+    }
+
+    private static class FailingConsumer implements Consumer<Integer>
+    {
+        @Override
+        public void accept(Integer data)
+        {
+            throw new IllegalStateException();
+        }
+    }
+
+    private static class SlowConsumer implements Consumer<Integer>
+    {
+        @Override
+        public void accept(Integer data)
+        {
+            try
+            {
+                Thread.sleep(2);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package bt.runtime.evnt;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import bt.utils.Benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Measures dispatching through a {@link Dispatcher}. Run via <code>mvn test -Pbenchmark</code>.
+ *
+ * @author &#8904
+ */
+@Tag(Benchmark.TAG)
+public class DispatcherBenchmark
+{
+    private static final int OPERATIONS = 1_000_000;
+
+    @Test
+    public void benchmarkDispatch()
+    {
+        for (int subscribers : new int[] { 1, 10, 100 })
+        {
+            var dispatcher = new Dispatcher();
+            var counter = new long[1];
+
+            for (int i = 0; i < subscribers; i ++ )
+            {
+                dispatcher.subscribeTo(Integer.class, d -> counter[0] ++ );
+            }
+
+            Benchmark.report("dispatch to " + subscribers + " subscribers",
+                             Benchmark.nanosPerOperation(OPERATIONS / subscribers, i -> dispatcher.dispatch(i)));
+        }
+    }
+
+    @Test
+    public void benchmarkDispatchToSuperTypes()
+    {
+        var dispatcher = new Dispatcher();
+        var counter = new long[1];
+
+        // only the super types of the dispatched class have subscribers, so all of them have to be routed
+        dispatcher.subscribeTo(Object.class, d -> counter[0] ++ );
+        dispatcher.subscribeTo(Number.class, d -> counter[0] ++ );
+        dispatcher.subscribeTo(Comparable.class, d -> counter[0] ++ );
+        dispatcher.subscribeTo(Serializable.class, d -> counter[0] ++ );
+        dispatcher.subscribeTo(String.class, d -> counter[0] ++ );
+
+        Benchmark.report("dispatch Integer to 4 super types out of 5 types",
+                         Benchmark.nanosPerOperation(OPERATIONS, i -> dispatcher.dispatch(i)));
+    }
+
+    @Test
+    public void benchmarkDispatchAll()
+    {
+        var dispatcher = new Dispatcher();
+        var counter = new long[1];
+
+        for (int i = 0; i < 10; i ++ )
+        {
+            dispatcher.subscribeTo(Integer.class, d -> counter[0] ++ );
+        }
+
+        List<Integer> batch = new ArrayList<>();
+
+        for (int i = 0; i < 100; i ++ )
+        {
+            batch.add(i);
+        }
+
+        Benchmark.report("dispatch 100 elements one by one to 10 subscribers",
+                         Benchmark.nanosPerOperation(OPERATIONS / 1000, i ->
+                         {
+                             for (int j = 0; j < batch.size(); j ++ )
+                             {
+                                 dispatcher.dispatch(batch.get(j));
+                             }
+
+                             return 0;
+                         }));
+        Benchmark.report("dispatchAll 100 elements to 10 subscribers",
+                         Benchmark.nanosPerOperation(OPERATIONS / 1000, i -> dispatcher.dispatchAll(batch)));
+    }
+
+    @Test
+    public void benchmarkDispatchWithErrorHandler()
+    {
+        for (boolean handled : new boolean[] { false, true })
+        {
+            var dispatcher = new Dispatcher();
+            var counter = new long[1];
+
+            for (int i = 0; i < 10; i ++ )
+            {
+                dispatcher.subscribeTo(Integer.class, d -> counter[0] ++ );
+            }
+
+            // no subscriber throws, so the handler must not cost anything on this path
+            if (handled)
+            {
+                dispatcher.setErrorHandler(new DeadLetterQueue(10));
+            }
+
+            Benchmark.report("dispatch to 10 subscribers " + (handled ? "with" : "without") + " error handler",
+                             Benchmark.nanosPerOperation(OPERATIONS / 10, i -> dispatcher.dispatch(i)));
+        }
+    }
+
+    @Test
+    public void benchmarkDispatchWhileSubscribing() throws Exception
+    {
+        var dispatcher = new Dispatcher();
+        var counter = new long[1];
+
+        for (int i = 0; i < 10; i ++ )
+        {
+            dispatcher.subscribeTo(Integer.class, d -> counter[0] ++ );
+        }
+
+        var stop = new AtomicBoolean();
+
+        // replaces the subscriber snapshot all the time, which dispatching must not wait for
+        Thread subscribing = new Thread(() ->
+        {
+            Consumer<Integer> consumer = d ->
+            {
+            };
+
+            while (!stop.get())
+            {
+                dispatcher.subscribeTo(Integer.class, consumer);
+                dispatcher.unsubscribeFrom(Integer.class, consumer);
+            }
+        });
+
+        subscribing.start();
+
+        try
+        {
+            Benchmark.report("dispatch to 10 subscribers while subscribing",
+                             Benchmark.nanosPerOperation(OPERATIONS / 10, i -> dispatcher.dispatch(i)));
+        }
+        finally
+        {
+            stop.set(true);
+            subscribing.join();
+        }
+    }
+}
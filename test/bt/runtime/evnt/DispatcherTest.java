@@ -0,0 +1,279 @@
+package bt.runtime.evnt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests routing data through a {@link Dispatcher} to the subscribers of its type hierarchy.
+ *
+ * @author &#8904
+ */
+public class DispatcherTest
+{
+    @Test
+    public void testSubscribeAndUnsubscribe()
+    {
+        var dispatcher = new Dispatcher();
+        List<String> received = new ArrayList<>();
+        Consumer<String> consumer = received::add;
+        Runnable runnable = () -> received.add("run");
+
+        dispatcher.subscribeTo(String.class, consumer);
+        dispatcher.subscribeTo(String.class, runnable);
+
+        assertEquals(2, dispatcher.dispatch("a"));
+        assertEquals(List.of("a", "run"), received);
+
+        assertTrue(dispatcher.unsubscribeFrom(String.class, consumer));
+        assertFalse(dispatcher.unsubscribeFrom(String.class, consumer));
+        assertFalse(dispatcher.unsubscribeFrom(Integer.class, i ->
+        {
+        }));
+
+        assertEquals(1, dispatcher.dispatch("b"));
+        assertEquals(List.of("a", "run", "run"), received);
+        assertEquals(0, dispatcher.dispatch(1));
+        assertEquals(0, dispatcher.dispatch(null));
+    }
+
+    @Test
+    public void testChangesDuringDispatchApplyToTheNextDispatch()
+    {
+        var dispatcher = new Dispatcher();
+        List<String> received = new ArrayList<>();
+        Consumer<String> last = s -> received.add("last " + s);
+        Consumer<String> added = s -> received.add("added " + s);
+
+        dispatcher.subscribeTo(String.class, s ->
+        {
+            received.add("first " + s);
+            dispatcher.unsubscribeFrom(String.class, last);
+            dispatcher.subscribeTo(String.class, added);
+        }, 1);
+        dispatcher.subscribeTo(String.class, last);
+
+        // a dispatch that already started keeps passing the data to the subscribers that it started with
+        dispatcher.dispatch("a");
+        assertEquals(List.of("first a", "last a"), received);
+
+        received.clear();
+        dispatcher.dispatch("b");
+        assertEquals(List.of("first b", "added b"), received);
+    }
+
+    @Test
+    public void testConcurrentSubscriptionsWhileDispatching() throws Exception
+    {
+        var dispatcher = new Dispatcher();
+        int threads = 8;
+        int subscribers = 1000;
+        var stop = new AtomicBoolean();
+        var start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        try
+        {
+            Future<?> dispatching = executor.submit(() ->
+            {
+                while (!stop.get())
+                {
+                    dispatcher.dispatch("data");
+                }
+            });
+
+            for (int t = 0; t < threads; t ++ )
+            {
+                futures.add(executor.submit(() ->
+                {
+                    start.await();
+                    List<Consumer<String>> consumers = new ArrayList<>();
+
+                    for (int i = 0; i < subscribers; i ++ )
+                    {
+                        Consumer<String> consumer = s ->
+                        {
+                        };
+                        consumers.add(consumer);
+                        dispatcher.subscribeTo(String.class, consumer);
+                    }
+
+                    // keep every other subscriber, so that both updates interleave with the other threads
+                    for (int i = 0; i < subscribers; i += 2)
+                    {
+                        assertTrue(dispatcher.unsubscribeFrom(String.class, consumers.get(i)));
+                    }
+
+                    return null;
+                }));
+            }
+
+            start.countDown();
+
+            for (Future<?> future : futures)
+            {
+                future.get(60, TimeUnit.SECONDS);
+            }
+
+            stop.set(true);
+            dispatching.get(60, TimeUnit.SECONDS);
+        }
+        finally
+        {
+            stop.set(true);
+            executor.shutdownNow();
+        }
+
+        assertEquals(threads * subscribers / 2, dispatcher.getSubscribers(String.class).size());
+        assertEquals(threads * subscribers / 2, dispatcher.dispatch("data"));
+    }
+
+    @Test
+    public void testPriorityOrder()
+    {
+        var dispatcher = new Dispatcher();
+        List<String> order = new ArrayList<>();
+
+        dispatcher.subscribeTo(String.class, () -> order.add("runnable 0"));
+        dispatcher.subscribeTo(String.class, s -> order.add("consumer 0"));
+        dispatcher.subscribeTo(String.class, s -> order.add("consumer -5"), -5);
+        dispatcher.subscribeTo(String.class, () -> order.add("runnable 10"), 10);
+        dispatcher.subscribeTo(String.class, s -> order.add("second consumer 0"));
+        dispatcher.subscribeTo(String.class, String::length, 1, s -> order.add("keyed 5"), 5);
+        dispatcher.subscribeTo(String.class, s -> order.add("consumer 10"), 10);
+
+        dispatcher.dispatch("a");
+
+        // higher priorities first, consumers before runnables of the same priority, otherwise in subscription order
+        assertEquals(List.of("consumer 10",
+                             "runnable 10",
+                             "keyed 5",
+                             "consumer 0",
+                             "second consumer 0",
+                             "runnable 0",
+                             "consumer -5"),
+                     order);
+    }
+
+    @Test
+    public void testCancellationWithinType()
+    {
+        var dispatcher = new Dispatcher();
+        List<String> order = new ArrayList<>();
+
+        dispatcher.subscribeTo(Event.class, e -> order.add("low"), -1);
+        dispatcher.subscribeTo(Event.class, e ->
+        {
+            order.add("cancelling");
+            e.cancel();
+        });
+        dispatcher.subscribeTo(Event.class, e -> order.add("high"), 1);
+
+        assertEquals(2, dispatcher.dispatch(new Event()));
+        assertEquals(List.of("high", "cancelling"), order);
+
+        // a cancelled event that is dispatched again doesn't reach anyone
+        var cancelled = new Event();
+        cancelled.cancel();
+        assertEquals(0, dispatcher.dispatch(cancelled));
+    }
+
+    @Test
+    public void testRouteFollowsTypeHierarchy()
+    {
+        var dispatcher = new Dispatcher();
+        List<String> order = new ArrayList<>();
+
+        // subscribed in a scrambled order, which must not matter
+        dispatcher.subscribeTo(Parent.class, e -> order.add("Parent"));
+        dispatcher.subscribeTo(Object.class, e -> order.add("Object"));
+        dispatcher.subscribeTo(Event.class, e -> order.add("Event"));
+        dispatcher.subscribeTo(Cancellable.class, e -> order.add("Cancellable"));
+        dispatcher.subscribeTo(Base.class, e -> order.add("Base"));
+        dispatcher.subscribeTo(Child.class, e -> order.add("Child"));
+
+        assertEquals(6, dispatcher.dispatch(new Event()));
+        assertEquals(List.of("Event", "Base", "Object", "Child", "Cancellable", "Parent"), order);
+    }
+
+    @Test
+    public void testCachedRoutesIncludeTypesSubscribedLater()
+    {
+        var dispatcher = new Dispatcher();
+        List<String> order = new ArrayList<>();
+
+        dispatcher.subscribeTo(Event.class, e -> order.add("Event"));
+        assertEquals(1, dispatcher.dispatch(new Event()));
+
+        // the route of Event was cached by now and has to be resolved again
+        dispatcher.subscribeTo(Parent.class, e -> order.add("Parent"));
+        assertEquals(2, dispatcher.dispatch(new Event()));
+
+        // subscribing to a known type only changes its SubDispatcher, not the routes
+        dispatcher.subscribeTo(Parent.class, e -> order.add("Parent again"));
+        assertEquals(3, dispatcher.dispatch(new Event()));
+
+        assertEquals(List.of("Event", "Event", "Parent", "Event", "Parent", "Parent again"), order);
+        assertEquals(2, dispatcher.dispatch(new Base()));
+    }
+
+    @Test
+    public void testCancellationStopsAllFollowingTypes()
+    {
+        var dispatcher = new Dispatcher();
+        List<String> order = new ArrayList<>();
+
+        dispatcher.subscribeTo(Parent.class, e -> order.add("Parent"));
+        dispatcher.subscribeTo(Event.class, e -> order.add("Event"));
+        dispatcher.subscribeTo(Base.class, e -> order.add("Base low"), -1);
+        dispatcher.subscribeTo(Base.class, e ->
+        {
+            order.add("Base high");
+            e.cancel();
+        }, 1);
+        dispatcher.subscribeTo(Object.class, e -> order.add("Object"));
+
+        assertEquals(2, dispatcher.dispatch(new Event()));
+        assertEquals(List.of("Event", "Base high"), order);
+    }
+
+    private interface Parent
+    {
+    }
+
+    private interface Child extends Parent
+    {
+    }
+
+    private static class Base implements Parent
+    {
+        private boolean cancelled;
+
+        public void cancel()
+        {
+            this.cancelled = true;
+        }
+
+        public boolean isCancelled()
+        {
+            return this.cancelled;
+        }
+    }
+
+    private static class Event extends Base implements Child, Cancellable
+    {
+    }
+}
@@ -0,0 +1,153 @@
+package bt.runtime.evnt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests passing exceptions of subscribers to the {@link DispatchErrorHandler} of a {@link Dispatcher}.
+ *
+ * @author &#8904
+ */
+public class ErrorHandlingTest
+{
+    @Test
+    public void testFailFastWithoutHandler()
+    {
+        var dispatcher = new Dispatcher();
+        List<Object> received = new ArrayList<>();
+        var failure = new IllegalStateException();
+
+        dispatcher.subscribeTo(Integer.class, received::add, 10);
+        dispatcher.subscribeTo(Integer.class, i ->
+        {
+            throw failure;
+        }, 5);
+        dispatcher.subscribeTo(Integer.class, received::add);
+        dispatcher.subscribeTo(Number.class, received::add);
+
+        assertNull(dispatcher.getErrorHandler());
+        assertSame(failure, assertThrows(IllegalStateException.class, () -> dispatcher.dispatch(1)));
+
+        // neither the remaining subscribers of the type nor the ones of its super types receive the data
+        assertEquals(List.of(1), received);
+    }
+
+    @Test
+    public void testHandlerContinuesWithRemainingSubscribers()
+    {
+        var dispatcher = new Dispatcher();
+        List<Object> received = new ArrayList<>();
+        List<Object> handled = new ArrayList<>();
+        var failure = new IllegalStateException();
+        Consumer<Integer> failing = i ->
+        {
+            throw failure;
+        };
+
+        dispatcher.setErrorHandler((data, subscriber, e) ->
+        {
+            handled.add(data);
+            assertSame(failing, subscriber);
+            assertSame(failure, e);
+        });
+
+        dispatcher.subscribeTo(Integer.class, received::add, 10);
+        dispatcher.subscribeTo(Integer.class, failing, 5);
+        dispatcher.subscribeTo(Integer.class, received::add);
+        dispatcher.subscribeTo(Number.class, received::add);
+
+        assertEquals(4, dispatcher.dispatch(1));
+        assertEquals(List.of(1, 1, 1), received);
+        assertEquals(List.of(1), handled);
+
+        // a failed batch is passed to the handler as a whole
+        received.clear();
+        dispatcher.dispatchAll(List.of(2, 3));
+        assertEquals(List.of(2, 3, 2, 3, 2, 3), received);
+        assertEquals(List.of(1, List.of(2, 3)), handled);
+    }
+
+    @Test
+    public void testFailingHandlerIsPassedOn()
+    {
+        var dispatcher = new Dispatcher();
+        var handlerFailure = new IllegalArgumentException();
+
+        dispatcher.setErrorHandler((data, subscriber, e) ->
+        {
+            throw handlerFailure;
+        });
+        dispatcher.subscribeTo(Integer.class, i ->
+        {
+            throw new IllegalStateException();
+        });
+
+        assertSame(handlerFailure, assertThrows(IllegalArgumentException.class, () -> dispatcher.dispatch(1)));
+
+        // removing the handler returns to failing fast
+        dispatcher.setErrorHandler(null);
+        assertThrows(IllegalStateException.class, () -> dispatcher.dispatch(1));
+    }
+
+    @Test
+    public void testHandlerAppliesToTypesSubscribedLater()
+    {
+        var dispatcher = new Dispatcher();
+        var deadLetters = new DeadLetterQueue(10);
+
+        dispatcher.setErrorHandler(deadLetters);
+        dispatcher.subscribeTo(String.class, s ->
+        {
+            throw new IllegalStateException(s);
+        });
+
+        dispatcher.dispatch("a");
+
+        assertEquals(1, deadLetters.size());
+        assertEquals("a", deadLetters.poll().getException().getMessage());
+    }
+
+    @Test
+    public void testDeadLetterQueue()
+    {
+        var dispatcher = new Dispatcher();
+        var deadLetters = new DeadLetterQueue(2);
+        Consumer<Integer> failing = i ->
+        {
+            throw new IllegalStateException();
+        };
+
+        dispatcher.setErrorHandler(deadLetters);
+        dispatcher.subscribeTo(Integer.class, failing);
+
+        assertNull(deadLetters.poll());
+
+        for (int i = 0; i < 5; i ++ )
+        {
+            dispatcher.dispatch(i);
+        }
+
+        // the oldest letters are dropped to keep the newest ones
+        assertEquals(2, deadLetters.size());
+        assertEquals(3, deadLetters.getDropCount());
+
+        DeadLetter letter = deadLetters.poll();
+        assertEquals(3, letter.getData());
+        assertSame(failing, letter.getSubscriber());
+        assertEquals(IllegalStateException.class, letter.getException().getClass());
+
+        List<DeadLetter> remaining = deadLetters.drain();
+        assertEquals(1, remaining.size());
+        assertEquals(4, remaining.get(0).getData());
+        assertEquals(0, deadLetters.size());
+        assertEquals(List.of(), deadLetters.drain());
+    }
+}
@@ -0,0 +1,251 @@
+package bt.runtime.evnt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests filtered and keyed subscriptions of a {@link Dispatcher}.
+ *
+ * @author &#8904
+ */
+public class KeyedSubscriptionTest
+{
+    @Test
+    public void testFilteredSubscription()
+    {
+        var dispatcher = new Dispatcher();
+        List<Integer> received = new ArrayList<>();
+        Consumer<Integer> consumer = received::add;
+
+        dispatcher.subscribeTo(Integer.class, i -> i % 2 == 0, consumer);
+
+        for (int i = 0; i < 6; i ++ )
+        {
+            dispatcher.dispatch(i);
+        }
+
+        assertEquals(List.of(0, 2, 4), received);
+
+        assertTrue(dispatcher.unsubscribeFrom(Integer.class, consumer));
+        dispatcher.dispatch(6);
+        assertEquals(List.of(0, 2, 4), received);
+    }
+
+    @Test
+    public void testFilteredBatchConsumerReceivesBatch()
+    {
+        var dispatcher = new Dispatcher();
+        var consumer = new RecordingBatchConsumer<Integer>();
+
+        dispatcher.subscribeTo(Integer.class, i -> i % 2 == 0, consumer);
+
+        dispatcher.dispatchAll(List.of(1, 2, 3, 4, 5, 6));
+        dispatcher.dispatchAll(List.of(1, 3));
+        dispatcher.dispatch(8);
+        dispatcher.dispatch(9);
+
+        // the matching elements of a batch arrive in one call, batches without any match are not passed at all
+        assertEquals(List.of(List.of(2, 4, 6)), consumer.batches);
+        assertEquals(List.of(8), consumer.singles);
+    }
+
+    @Test
+    public void testKeyedSubscribersOnlyReceiveTheirKey()
+    {
+        var dispatcher = new Dispatcher();
+        Function<String, Character> firstChar = s -> s.charAt(0);
+        List<String> a = new ArrayList<>();
+        List<String> b = new ArrayList<>();
+        List<String> all = new ArrayList<>();
+
+        dispatcher.subscribeTo(String.class, firstChar, 'a', a::add);
+        dispatcher.subscribeTo(String.class, firstChar, 'b', b::add);
+        dispatcher.subscribeTo(String.class, all::add);
+
+        assertEquals(2, dispatcher.dispatch("apple"));
+        assertEquals(2, dispatcher.dispatch("banana"));
+        assertEquals(1, dispatcher.dispatch("cherry"));
+        assertEquals(3, dispatcher.dispatchAll(List.of("avocado", "date")));
+
+        assertEquals(List.of("apple", "avocado"), a);
+        assertEquals(List.of("banana"), b);
+        assertEquals(List.of("apple", "banana", "cherry", "avocado", "date"), all);
+        assertEquals(3, dispatcher.getSubscribers(String.class).size());
+    }
+
+    @Test
+    public void testKeyIsExtractedOncePerIndex()
+    {
+        var dispatcher = new Dispatcher();
+        var extractions = new AtomicInteger();
+        Function<String, Integer> length = s ->
+        {
+            extractions.incrementAndGet();
+            return s.length();
+        };
+        var received = new AtomicInteger();
+
+        // the same extractor instance shares one index
+        dispatcher.subscribeTo(String.class, length, 1, s -> received.incrementAndGet());
+        dispatcher.subscribeTo(String.class, length, 1, s -> received.incrementAndGet());
+        dispatcher.subscribeTo(String.class, length, 2, s -> received.incrementAndGet());
+
+        // a named index only uses the extractor of its first subscription
+        dispatcher.subscribeTo(String.class, "length", length, 1, s -> received.incrementAndGet());
+        dispatcher.subscribeTo(String.class, "length", s ->
+        {
+            throw new IllegalStateException();
+        }, 1, s -> received.incrementAndGet());
+
+        assertEquals(4, dispatcher.dispatch("a"));
+        assertEquals(2, extractions.get());
+        assertEquals(4, received.get());
+    }
+
+    @Test
+    public void testKeyedSubscribersAreOrderedByPriority()
+    {
+        var dispatcher = new Dispatcher();
+        Function<String, String> identity = s -> s;
+        List<String> order = new ArrayList<>();
+
+        dispatcher.subscribeTo(String.class, () -> order.add("runnable"));
+        dispatcher.subscribeTo(String.class, s -> order.add("consumer"));
+        dispatcher.subscribeTo(String.class, identity, "key", s -> order.add("keyed"));
+        dispatcher.subscribeTo(String.class, identity, "key", s -> order.add("keyed high"), 10);
+        dispatcher.subscribeTo(String.class, identity, "key", s -> order.add("keyed low"), -10);
+        dispatcher.subscribeTo(String.class, s -> order.add("consumer high"), 5);
+
+        dispatcher.dispatch("key");
+
+        // equal priorities run non-keyed consumers first, then keyed subscribers, then runnables
+        assertEquals(List.of("keyed high", "consumer high", "consumer", "keyed", "runnable", "keyed low"), order);
+
+        order.clear();
+        dispatcher.dispatchAll(List.of("key"));
+        assertEquals(List.of("keyed high", "consumer high", "consumer", "keyed", "runnable", "keyed low"), order);
+    }
+
+    @Test
+    public void testUnsubscribeKeyed()
+    {
+        var dispatcher = new Dispatcher();
+        Function<String, String> identity = s -> s;
+        List<String> received = new ArrayList<>();
+        Consumer<String> first = received::add;
+        Consumer<String> second = received::add;
+
+        dispatcher.subscribeTo(String.class, identity, "a", first);
+        dispatcher.subscribeTo(String.class, identity, "b", second);
+
+        assertFalse(dispatcher.unsubscribeFrom(String.class, "b", first));
+        assertTrue(dispatcher.unsubscribeFrom(String.class, "a", first));
+        assertFalse(dispatcher.unsubscribeFrom(String.class, "a", first));
+
+        // keyed subscribers can also be removed without their key
+        assertTrue(dispatcher.unsubscribeFrom(String.class, second));
+        assertEquals(0, dispatcher.getSubscribers(String.class).size());
+
+        assertEquals(0, dispatcher.dispatch("a"));
+        assertEquals(0, dispatcher.dispatch("b"));
+        assertEquals(List.of(), received);
+
+        // the emptied index is removed, a new subscription creates a new one
+        dispatcher.subscribeTo(String.class, identity, "a", first);
+        assertEquals(1, dispatcher.dispatch("a"));
+        assertEquals(List.of("a"), received);
+    }
+
+    @Test
+    public void testNullKeys()
+    {
+        var dispatcher = new Dispatcher();
+        List<String> received = new ArrayList<>();
+        Function<String, String> nullForEmpty = s -> s.isEmpty() ? null : s;
+
+        assertThrows(NullPointerException.class,
+                     () -> dispatcher.subscribeTo(String.class, nullForEmpty, null, received::add));
+
+        dispatcher.subscribeTo(String.class, nullForEmpty, "a", received::add);
+
+        // data without a key is not passed to any keyed subscriber
+        assertEquals(0, dispatcher.dispatch(""));
+        assertEquals(1, dispatcher.dispatch("a"));
+        assertEquals(List.of("a"), received);
+    }
+
+    @Test
+    public void testFailingKeyExtractorIsHandled()
+    {
+        var dispatcher = new Dispatcher();
+        var deadLetters = new DeadLetterQueue(10);
+        List<String> keyed = new ArrayList<>();
+        List<String> all = new ArrayList<>();
+
+        dispatcher.setErrorHandler(deadLetters);
+        dispatcher.subscribeTo(String.class, s -> s.charAt(1), 'b', keyed::add);
+        dispatcher.subscribeTo(String.class, all::add);
+
+        // the extractor fails for single characters, which must not keep the other subscribers from the data
+        assertEquals(1, dispatcher.dispatch("a"));
+        dispatcher.dispatch("ab");
+        dispatcher.dispatchAll(List.of("b", "bb", "bc"));
+
+        assertEquals(List.of("ab", "bb"), keyed);
+        assertEquals(List.of("a", "ab", "b", "bb", "bc"), all);
+
+        List<DeadLetter> letters = deadLetters.drain();
+        assertEquals(2, letters.size());
+        assertEquals("a", letters.get(0).getData());
+        assertEquals("b", letters.get(1).getData());
+        assertTrue(letters.get(0).getException() instanceof StringIndexOutOfBoundsException);
+    }
+
+    @Test
+    public void testFailingKeyExtractorIsRethrownWithoutHandler()
+    {
+        var dispatcher = new Dispatcher();
+        var failure = new IllegalStateException();
+
+        dispatcher.subscribeTo(String.class, s ->
+        {
+            throw failure;
+        }, "key", s ->
+        {
+        });
+
+        assertSame(failure, assertThrows(IllegalStateException.class, () -> dispatcher.dispatch("key")));
+    }
+
+    /**
+     * Records the batches and single elements it receives.
+     */
+    static class RecordingBatchConsumer<T> implements BatchConsumer<T>
+    {
+        final List<List<T>> batches = new ArrayList<>();
+        final List<T> singles = new ArrayList<>();
+
+        @Override
+        public void acceptAll(List<T> batch)
+        {
+            this.batches.add(new ArrayList<>(batch));
+        }
+
+        @Override
+        public void accept(T data)
+        {
+            this.singles.add(data);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package bt.runtime.evnt;
+
+import static bt.runtime.evnt.RingBufferDispatcherTest.await;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import bt.utils.Benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares handing data to another thread through a {@link RingBufferDispatcher} and through an asynchronous
+ * subscription of a {@link Dispatcher}. Run via <code>mvn test -Pbenchmark</code>.
+ *
+ * @author &#8904
+ */
+@Tag(Benchmark.TAG)
+public class RingBufferDispatcherBenchmark
+{
+    private static final int OPERATIONS = 1_000_000;
+
+    @Test
+    public void benchmarkRingBuffer()
+    {
+        for (WaitStrategy waitStrategy : WaitStrategy.values())
+        {
+            ExecutorService executor = Executors.newCachedThreadPool();
+            var dispatcher = new RingBufferDispatcher<Integer>(1024, waitStrategy, executor);
+            var subscriber = dispatcher.subscribeTo(i ->
+            {
+            });
+            dispatcher.start();
+
+            try
+            {
+                // every round ends once the subscriber consumed all of its data
+                Benchmark.report("ring buffer with " + waitStrategy,
+                                 Benchmark.nanosPerOperation(OPERATIONS, i ->
+                                 {
+                                     dispatcher.dispatch(i);
+
+                                     if (i == OPERATIONS - 1)
+                                     {
+                                         await(() -> dispatcher.getBacklog() == 0);
+                                     }
+
+                                     return 0;
+                                 }));
+            }
+            finally
+            {
+                dispatcher.kill();
+                executor.shutdownNow();
+            }
+
+            await(() -> !subscriber.isRunning());
+        }
+    }
+
+    @Test
+    public void benchmarkAsyncConsumer()
+    {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        var consumed = new AtomicLong();
+        var dispatcher = new Dispatcher();
+        dispatcher.subscribeTo(Integer.class, i -> consumed.incrementAndGet(), executor, 1024, OverflowPolicy.BLOCK);
+
+        try
+        {
+            long[] dispatched = new long[1];
+
+            Benchmark.report("dispatcher with asynchronous subscriber",
+                             Benchmark.nanosPerOperation(OPERATIONS, i ->
+                             {
+                                 dispatcher.dispatch(i);
+                                 dispatched[0] ++ ;
+
+                                 if (i == OPERATIONS - 1)
+                                 {
+                                     await(() -> consumed.get() == dispatched[0]);
+                                 }
+
+                                 return 0;
+                             }));
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+}
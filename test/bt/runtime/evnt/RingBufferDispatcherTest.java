@@ -0,0 +1,304 @@
+package bt.runtime.evnt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests dispatching through a {@link RingBufferDispatcher}.
+ *
+ * @author &#8904
+ */
+public class RingBufferDispatcherTest
+{
+    private static final int COUNT = 10_000;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setUp()
+    {
+        this.executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException
+    {
+        this.executor.shutdownNow();
+        this.executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testAllDataIsConsumedInOrder()
+    {
+        // much smaller than the number of dispatched elements, so the buffer wraps around many times
+        var dispatcher = new RingBufferDispatcher<Integer>(16, WaitStrategy.YIELD, this.executor);
+        List<Integer> first = new ArrayList<>();
+        List<Integer> second = new ArrayList<>();
+        var firstSubscriber = dispatcher.subscribeTo(first::add);
+        var secondSubscriber = dispatcher.subscribeTo(second::add);
+        dispatcher.start();
+
+        try
+        {
+            for (int i = 0; i < COUNT; i ++ )
+            {
+                assertEquals(2, dispatcher.dispatch(i));
+            }
+
+            await(() -> firstSubscriber.getSequence() == COUNT - 1 && secondSubscriber.getSequence() == COUNT - 1);
+        }
+        finally
+        {
+            dispatcher.kill();
+        }
+
+        assertEquals(range(COUNT), first);
+        assertEquals(range(COUNT), second);
+        assertEquals(0, dispatcher.getBacklog());
+    }
+
+    @Test
+    public void testDependenciesConsumeFirst()
+    {
+        var dispatcher = new RingBufferDispatcher<Integer>(64, WaitStrategy.BUSY_SPIN, this.executor);
+        var journaled = new AtomicLong(-1);
+        var replicated = new AtomicLong(-1);
+        List<String> violations = new CopyOnWriteArrayList<>();
+        List<Integer> handled = new ArrayList<>();
+
+        var journal = dispatcher.subscribeTo(i -> journaled.set(i));
+        var replicate = dispatcher.subscribeTo(i -> replicated.set(i));
+        var handler = dispatcher.subscribeTo(i ->
+        {
+            if (journaled.get() < i || replicated.get() < i)
+            {
+                violations.add("Handled " + i + " before it was journaled and replicated");
+            }
+
+            handled.add(i);
+        }, journal, replicate);
+
+        dispatcher.start();
+
+        try
+        {
+            for (int i = 0; i < COUNT; i ++ )
+            {
+                dispatcher.dispatch(i);
+            }
+
+            await(() -> handler.getSequence() == COUNT - 1);
+        }
+        finally
+        {
+            dispatcher.kill();
+        }
+
+        assertEquals(List.of(), violations);
+        assertEquals(range(COUNT), handled);
+    }
+
+    @Test
+    public void testBatchConsumerReceivesAvailableData()
+    {
+        var dispatcher = new RingBufferDispatcher<Integer>(32, WaitStrategy.PARK, this.executor);
+        List<Integer> received = new ArrayList<>();
+        var batches = new AtomicLong();
+
+        var subscriber = dispatcher.subscribeTo(new BatchConsumer<Integer>()
+        {
+            @Override
+            public void acceptAll(List<Integer> batch)
+            {
+                batches.incrementAndGet();
+                received.addAll(batch);
+            }
+        });
+
+        dispatcher.start();
+
+        try
+        {
+            for (int i = 0; i < COUNT; i ++ )
+            {
+                dispatcher.dispatch(i);
+            }
+
+            await(() -> subscriber.getSequence() == COUNT - 1);
+        }
+        finally
+        {
+            dispatcher.kill();
+        }
+
+        assertEquals(range(COUNT), received);
+        assertTrue(batches.get() <= COUNT);
+    }
+
+    @Test
+    public void testConcurrentDispatchers() throws Exception
+    {
+        int threads = 4;
+        var dispatcher = new RingBufferDispatcher<long[]>(128, WaitStrategy.YIELD, this.executor);
+        var last = new long[threads];
+        List<String> violations = new ArrayList<>();
+
+        // each element holds its producer and its index, which has to increase per producer
+        var subscriber = dispatcher.subscribeTo(data ->
+        {
+            int producer = (int)data[0];
+
+            if (data[1] != last[producer] + 1)
+            {
+                violations.add("Producer " + producer + " skipped from " + last[producer] + " to " + data[1]);
+            }
+
+            last[producer] = data[1];
+        });
+
+        dispatcher.start();
+
+        var start = new CountDownLatch(1);
+        ExecutorService producers = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+
+        try
+        {
+            for (int t = 0; t < threads; t ++ )
+            {
+                long producer = t;
+                futures.add(producers.submit(() ->
+                {
+                    start.await();
+
+                    for (long i = 1; i <= COUNT; i ++ )
+                    {
+                        dispatcher.dispatch(new long[] { producer, i });
+                    }
+
+                    return null;
+                }));
+            }
+
+            start.countDown();
+
+            for (Future<?> future : futures)
+            {
+                future.get(60, TimeUnit.SECONDS);
+            }
+
+            await(() -> subscriber.getSequence() == threads * COUNT - 1);
+        }
+        finally
+        {
+            producers.shutdownNow();
+            dispatcher.kill();
+        }
+
+        assertEquals(List.of(), violations);
+
+        for (int t = 0; t < threads; t ++ )
+        {
+            assertEquals(COUNT, last[t]);
+        }
+    }
+
+    @Test
+    public void testLifecycle()
+    {
+        assertThrows(IllegalArgumentException.class, () -> new RingBufferDispatcher<Integer>(12, WaitStrategy.PARK));
+
+        var dispatcher = new RingBufferDispatcher<Integer>(8, WaitStrategy.PARK, this.executor);
+        var subscriber = dispatcher.subscribeTo(() ->
+        {
+        });
+
+        assertThrows(IllegalStateException.class, () -> dispatcher.dispatch(1));
+
+        dispatcher.start();
+        assertTrue(subscriber.isRunning());
+        assertThrows(IllegalStateException.class, () -> dispatcher.subscribeTo(() ->
+        {
+        }));
+
+        dispatcher.kill();
+        assertThrows(IllegalStateException.class, () -> dispatcher.dispatch(1));
+        await(() -> !subscriber.isRunning());
+    }
+
+    @Test
+    public void testDispatchFailsInsteadOfBlockingWhenSubscriberDied()
+    {
+        var dispatcher = new RingBufferDispatcher<Integer>(4, WaitStrategy.PARK, this.executor);
+        var subscriber = dispatcher.subscribeTo(i ->
+        {
+            throw new AssertionError("Subscriber thread dies");
+        });
+
+        dispatcher.start();
+
+        try
+        {
+            dispatcher.dispatch(0);
+            await(() -> !subscriber.isRunning());
+
+            // the data can never be consumed, so the first dispatch that needs space has to fail
+            assertThrows(IllegalStateException.class, () ->
+            {
+                for (int i = 0; i < 5; i ++ )
+                {
+                    dispatcher.dispatch(i);
+                }
+            });
+
+            assertFalse(subscriber.isRunning());
+        }
+        finally
+        {
+            dispatcher.kill();
+        }
+    }
+
+    private static List<Integer> range(int count)
+    {
+        List<Integer> range = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i ++ )
+        {
+            range.add(i);
+        }
+
+        return range;
+    }
+
+    /**
+     * Waits up to a minute for the given condition to become true.
+     */
+    static void await(BooleanSupplier condition)
+    {
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+
+        while (!condition.getAsBoolean())
+        {
+            assertTrue(System.nanoTime() < deadline, "Timed out");
+            Thread.yield();
+        }
+    }
+}
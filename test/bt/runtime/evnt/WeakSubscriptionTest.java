@@ -0,0 +1,173 @@
+package bt.runtime.evnt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import bt.runtime.evnt.KeyedSubscriptionTest.RecordingBatchConsumer;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests weak subscriptions of a {@link Dispatcher}.
+ *
+ * @author &#8904
+ */
+public class WeakSubscriptionTest
+{
+    @Test
+    public void testWeakBatchConsumerReceivesBatch()
+    {
+        var dispatcher = new Dispatcher();
+        var consumer = new RecordingBatchConsumer<Integer>();
+
+        dispatcher.subscribeWeaklyTo(Integer.class, consumer);
+
+        dispatcher.dispatchAll(List.of(1, 2, 3));
+        dispatcher.dispatch(4);
+
+        assertEquals(List.of(List.of(1, 2, 3)), consumer.batches);
+        assertEquals(List.of(4), consumer.singles);
+    }
+
+    @Test
+    public void testReachableSubscribersKeepReceiving()
+    {
+        var dispatcher = new Dispatcher();
+        List<Integer> received = new ArrayList<>();
+        Consumer<Integer> consumer = received::add;
+        var runs = new AtomicInteger();
+        Runnable runnable = runs::incrementAndGet;
+
+        dispatcher.subscribeWeaklyTo(Integer.class, consumer);
+        dispatcher.subscribeWeaklyTo(Integer.class, runnable);
+
+        for (int i = 0; i < 10; i ++ )
+        {
+            System.gc();
+            dispatcher.dispatch(i);
+        }
+
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), received);
+        assertEquals(10, runs.get());
+
+        // weak subscriptions are removed with the original instance
+        assertTrue(dispatcher.unsubscribeFrom(Integer.class, consumer));
+        assertTrue(dispatcher.unsubscribeFrom(Integer.class, runnable));
+        assertFalse(dispatcher.unsubscribeFrom(Integer.class, consumer));
+        assertEquals(0, dispatcher.dispatch(10));
+        assertEquals(10, received.size());
+    }
+
+    @Test
+    public void testCollectedConsumerIsRemoved() throws Exception
+    {
+        var dispatcher = new Dispatcher();
+        List<Integer> strong = new ArrayList<>();
+
+        dispatcher.subscribeTo(Integer.class, strong::add);
+        subscribeUnreachable(dispatcher, 1);
+
+        assertEquals(2, dispatcher.getSubscribers(Integer.class).size());
+        awaitSubscribers(dispatcher, 1);
+
+        strong.clear();
+        assertEquals(1, dispatcher.dispatch(1));
+        assertEquals(List.of(1), strong);
+    }
+
+    @Test
+    public void testCollectedRunnableIsRemoved() throws Exception
+    {
+        var dispatcher = new Dispatcher();
+        var runs = new AtomicInteger();
+
+        // a new instance per subscription, a non-capturing lambda would be a reachable singleton
+        dispatcher.subscribeWeaklyTo(Integer.class, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                runs.incrementAndGet();
+            }
+        });
+
+        assertEquals(1, dispatcher.getSubscribers(Integer.class).size());
+        awaitSubscribers(dispatcher, 0);
+        assertEquals(0, dispatcher.dispatch(1));
+    }
+
+    @Test
+    public void testSoak() throws Exception
+    {
+        var dispatcher = new Dispatcher();
+        var strong = new AtomicInteger();
+        int rounds = 200;
+        int subscribersPerRound = 1_000;
+        int maxSubscribers = 0;
+
+        dispatcher.subscribeTo(Integer.class, i -> strong.incrementAndGet());
+
+        // short lived subscribers that never unsubscribe, as i.e. forgotten UI or session listeners
+        for (int round = 0; round < rounds; round ++ )
+        {
+            subscribeUnreachable(dispatcher, subscribersPerRound);
+
+            if (round % 20 == 0)
+            {
+                System.gc();
+            }
+
+            dispatcher.dispatch(round);
+            maxSubscribers = Math.max(maxSubscribers, dispatcher.getSubscribers(Integer.class).size());
+        }
+
+        assertEquals(rounds, strong.get());
+
+        // collected subscribers are purged along the way instead of accumulating over all rounds
+        assertTrue(maxSubscribers < rounds * subscribersPerRound / 2, "Max subscribers " + maxSubscribers);
+        awaitSubscribers(dispatcher, 1);
+    }
+
+    /**
+     * Weakly subscribes the given number of new consumers which are not reachable after this method returned.
+     */
+    private static void subscribeUnreachable(Dispatcher dispatcher, int count)
+    {
+        for (int i = 0; i < count; i ++ )
+        {
+            List<Integer> received = new ArrayList<>();
+            dispatcher.subscribeWeaklyTo(Integer.class, received::add);
+        }
+    }
+
+    /**
+     * Runs the garbage collector and dispatches until collected subscribers were purged so that only the given number
+     * of subscribers is left.
+     */
+    private static void awaitSubscribers(Dispatcher dispatcher, int expected) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+
+        while (dispatcher.getSubscribers(Integer.class).size() != expected)
+        {
+            if (System.nanoTime() > deadline)
+            {
+                fail("Expected " + expected + " subscribers but got " + dispatcher.getSubscribers(Integer.class).size());
+            }
+
+            System.gc();
+            Thread.sleep(10);
+
+            // collected subscribers are purged on the next subscription change or dispatch
+            dispatcher.dispatch(0);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package bt.types;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import bt.utils.Benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Measures lookups in a {@link ConcurrentStringMap}. Run via <code>mvn test -Pbenchmark</code>.
+ *
+ * @author &#8904
+ */
+@Tag(Benchmark.TAG)
+public class ConcurrentStringMapBenchmark
+{
+    private static final int OPERATIONS = 1_000_000;
+    private static final int KEYS = 1_000;
+
+    @Test
+    public void benchmarkGet()
+    {
+        var map = new ConcurrentStringMap<Integer>();
+        var upperCased = new ConcurrentHashMap<String, Integer>();
+        var exact = new ConcurrentHashMap<String, Integer>();
+        String[] keys = keys(KEYS);
+        String[] copies = new String[KEYS];
+        String[] spellings = new String[KEYS];
+
+        for (int i = 0; i < KEYS; i ++ )
+        {
+            map.put(keys[i], i);
+            upperCased.put(keys[i].toUpperCase(), i);
+            exact.put(keys[i], i);
+            // equal but not identical to the stored keys, like keys that were read from a request or file
+            copies[i] = new String(keys[i]);
+            spellings[i] = i % 2 == 0 ? keys[i].toUpperCase() : keys[i].toLowerCase();
+        }
+
+        Benchmark.report("ConcurrentStringMap.get with stored spelling",
+                         Benchmark.nanosPerOperation(OPERATIONS, i -> map.get(copies[i % KEYS])));
+        Benchmark.report("ConcurrentStringMap.get with other spelling",
+                         Benchmark.nanosPerOperation(OPERATIONS, i -> map.get(spellings[i % KEYS])));
+
+        // the previous implementation upper cased every key before delegating to a ConcurrentHashMap
+        Benchmark.report("ConcurrentHashMap.get(key.toUpperCase())",
+                         Benchmark.nanosPerOperation(OPERATIONS,
+                                                     i -> upperCased.get(spellings[i % KEYS].toUpperCase())));
+        Benchmark.report("ConcurrentHashMap.get with exact keys",
+                         Benchmark.nanosPerOperation(OPERATIONS, i -> exact.get(copies[i % KEYS])));
+    }
+
+    @Test
+    public void benchmarkContention() throws Exception
+    {
+        String[] keys = keys(KEYS);
+        String[] spellings = new String[KEYS];
+
+        for (int i = 0; i < KEYS; i ++ )
+        {
+            spellings[i] = i % 2 == 0 ? keys[i].toUpperCase() : keys[i].toLowerCase();
+        }
+
+        for (int threads : new int[] { 1, 2, 4, 8, 16, 32 })
+        {
+            var map = new ConcurrentStringMap<Integer>();
+            var upperCased = new ConcurrentHashMap<String, Integer>();
+
+            for (int i = 0; i < KEYS; i ++ )
+            {
+                map.put(keys[i], i);
+                upperCased.put(keys[i].toUpperCase(), i);
+            }
+
+            // one in ten operations is an update of an existing key
+            Benchmark.report("ConcurrentStringMap 90% get 10% put, " + threads + " threads",
+                             Benchmark.nanosPerOperation(threads, OPERATIONS / threads, i ->
+                             {
+                                 String key = spellings[i % KEYS];
+                                 return i % 10 == 0 ? map.put(key, i) : map.get(key);
+                             }));
+            Benchmark.report("ConcurrentHashMap upper cased 90% get 10% put, " + threads + " threads",
+                             Benchmark.nanosPerOperation(threads, OPERATIONS / threads, i ->
+                             {
+                                 String key = spellings[i % KEYS].toUpperCase();
+                                 return i % 10 == 0 ? upperCased.put(key, i) : upperCased.get(key);
+                             }));
+        }
+    }
+
+    /**
+     * Creates the given number of mixed case keys that look like header or property names.
+     */
+    static String[] keys(int count)
+    {
+        String[] keys = new String[count];
+
+        for (int i = 0; i < count; i ++ )
+        {
+            keys[i] = "Property-Name." + i + ".Value";
+        }
+
+        return keys;
+    }
+}
@@ -0,0 +1,499 @@
+package bt.types;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import bt.utils.Benchmark;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the {@link java.util.concurrent.ConcurrentMap} contract of {@link ConcurrentStringMap} with case insensitive
+ * keys.
+ *
+ * @author &#8904
+ */
+public class ConcurrentStringMapTest
+{
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 10_000;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setUp()
+    {
+        this.executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException
+    {
+        this.executor.shutdownNow();
+        this.executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testLookupsIgnoreCase()
+    {
+        var map = new ConcurrentStringMap<Integer>();
+        map.put("Key", 1);
+
+        assertEquals(1, map.get("KEY"));
+        assertEquals(1, map.get("key"));
+        assertEquals(1, map.get(StringKey.of("kEy")));
+        assertTrue(map.containsKey("KEY"));
+        assertTrue(map.keySet().contains("key"));
+        assertNull(map.get("Keys"));
+    }
+
+    @Test
+    public void testFirstSpellingIsKept()
+    {
+        var map = new ConcurrentStringMap<Integer>();
+        map.put("Key", 1);
+
+        assertEquals(1, map.put("KEY", 2));
+        assertEquals(1, map.size());
+        assertEquals(Set.of("Key"), new HashSet<>(map.keySet()));
+        assertEquals(2, map.get("key"));
+    }
+
+    @Test
+    public void testConditionalUpdatesIgnoreCase()
+    {
+        var map = new ConcurrentStringMap<Integer>();
+        map.put("Key", 1);
+
+        assertEquals(1, map.putIfAbsent("KEY", 2));
+        assertFalse(map.replace("KEY", 2, 3));
+        assertTrue(map.replace("KEY", 1, 3));
+        assertEquals(3, map.replace("key", 4));
+        assertFalse(map.remove("KEY", 3));
+        assertTrue(map.remove("KEY", 4));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testComputeFamilyIgnoresCase()
+    {
+        var map = new ConcurrentStringMap<Integer>();
+
+        assertEquals(1, map.computeIfAbsent("Key", k -> 1));
+        assertEquals(1, map.computeIfAbsent("KEY", k -> 2));
+        assertEquals(2, map.computeIfPresent("key", (k, v) -> v + 1));
+        assertEquals(5, map.merge("kEY", 3, Integer::sum));
+        assertNull(map.compute("KEY", (k, v) -> null));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testNullsAreRejected()
+    {
+        var map = new ConcurrentStringMap<Integer>();
+
+        assertThrows(NullPointerException.class, () -> map.put("key", null));
+        assertThrows(NullPointerException.class, () -> map.put(null, 1));
+        assertThrows(NullPointerException.class, () -> map.merge("key", null, Integer::sum));
+    }
+
+    @Test
+    public void testEqualsIgnoresCase()
+    {
+        var lower = new ConcurrentStringMap<Integer>();
+        lower.put("a", 1);
+        var upper = new ConcurrentStringMap<Integer>();
+        upper.put("A", 1);
+
+        assertEquals(lower, upper);
+        assertEquals(upper, lower);
+    }
+
+    @Test
+    public void testHashCodesFollowTheMapContract()
+    {
+        var map = new ConcurrentStringMap<Integer>();
+        var expected = new HashMap<String, Integer>();
+
+        for (String key : new String[] { "one", "Two", "THREE", "\u00e4\u00f6\u00fc" })
+        {
+            map.put(key, key.length());
+            expected.put(key, key.length());
+        }
+
+        // the stored spelling is hashed, so the map is interchangeable with other maps of the same mappings
+        assertEquals(expected.hashCode(), map.hashCode());
+        assertEquals(expected.entrySet().hashCode(), map.entrySet().hashCode());
+        assertEquals(expected.keySet().hashCode(), map.keySet().hashCode());
+        assertEquals(0, new ConcurrentStringMap<Integer>().hashCode());
+    }
+
+    @Test
+    public void testLookupsDoNotAllocate()
+    {
+        var map = new ConcurrentStringMap<Integer>();
+        String[] keys = { "content-type", "Content-Length", "ACCEPT", "Stra\u00dfe" };
+        String[] spellings = { "CONTENT-TYPE", "content-length", "Accept", "STRA\u00dfE" };
+
+        for (int i = 0; i < keys.length; i ++ )
+        {
+            map.put(keys[i], i);
+        }
+
+        Runnable lookups = () ->
+        {
+            for (int i = 0; i < 10_000; i ++ )
+            {
+                String key = spellings[i % spellings.length];
+
+                if (map.get(key) == null || !map.containsKey(key))
+                {
+                    throw new AssertionError(key);
+                }
+            }
+        };
+
+        lookups.run();
+        assertEquals(0, Benchmark.allocatedBytes(lookups));
+    }
+
+    @Test
+    public void testRecursiveUpdateFails()
+    {
+        var map = new ConcurrentStringMap<Integer>();
+
+        assertThrows(IllegalStateException.class, () -> map.computeIfAbsent("key", k -> map.put("KEY", 1)));
+        assertThrows(IllegalStateException.class, () -> map.compute("key", (k, v) -> map.remove("key")));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testMergeUnderContention() throws Exception
+    {
+        var map = new ConcurrentStringMap<Integer>();
+        String[] spellings = { "counter", "COUNTER", "Counter", "cOUNTER" };
+
+        runConcurrently(thread ->
+        {
+            for (int i = 0; i < ITERATIONS; i ++ )
+            {
+                map.merge(spellings[(thread + i) % spellings.length], 1, Integer::sum);
+            }
+        });
+
+        assertEquals(1, map.size());
+        assertEquals(THREADS * ITERATIONS, map.get("counter"));
+    }
+
+    @Test
+    public void testComputeUnderContention() throws Exception
+    {
+        var map = new ConcurrentStringMap<Integer>();
+
+        runConcurrently(thread ->
+        {
+            for (int i = 0; i < ITERATIONS; i ++ )
+            {
+                map.compute("key" + (i % 16), (k, v) -> v == null ? 1 : v + 1);
+            }
+        });
+
+        int total = 0;
+
+        for (int value : map.values())
+        {
+            total += value;
+        }
+
+        assertEquals(16, map.size());
+        assertEquals(THREADS * ITERATIONS, total);
+    }
+
+    @Test
+    public void testComputeIfAbsentCallsFunctionOncePerKey() throws Exception
+    {
+        var map = new ConcurrentStringMap<Integer>();
+        var calls = new AtomicInteger();
+
+        runConcurrently(thread ->
+        {
+            for (int i = 0; i < 1000; i ++ )
+            {
+                String key = thread % 2 == 0 ? "key" + i : "KEY" + i;
+                map.computeIfAbsent(key, k -> calls.incrementAndGet());
+            }
+        });
+
+        assertEquals(1000, map.size());
+        assertEquals(1000, calls.get());
+    }
+
+    @Test
+    public void testIterationDuringMutation() throws Exception
+    {
+        var map = new ConcurrentStringMap<Integer>();
+
+        for (int i = 0; i < 1000; i ++ )
+        {
+            map.put("stable" + i, i);
+        }
+
+        var stop = new AtomicBoolean();
+        Future<?> writer = this.executor.submit(() ->
+        {
+            int i = 0;
+
+            while (!stop.get())
+            {
+                map.put("volatile" + (i % 5000), i);
+                map.remove("VOLATILE" + ((i + 2500) % 5000));
+                i ++ ;
+            }
+        });
+
+        try
+        {
+            for (int round = 0; round < 100; round ++ )
+            {
+                Set<String> seen = new HashSet<>();
+                Iterator<String> keys = map.keySet().iterator();
+
+                while (keys.hasNext())
+                {
+                    String key = keys.next();
+                    assertTrue(seen.add(key), "Duplicate key " + key);
+                }
+
+                for (int i = 0; i < 1000; i ++ )
+                {
+                    assertTrue(seen.contains("stable" + i), "Missing key stable" + i);
+                }
+            }
+        }
+        finally
+        {
+            stop.set(true);
+            writer.get();
+        }
+    }
+
+    @Test
+    public void testIteratorRemove()
+    {
+        var map = new ConcurrentStringMap<Integer>();
+
+        for (int i = 0; i < 100; i ++ )
+        {
+            map.put("key" + i, i);
+        }
+
+        for (var entries = map.entrySet().iterator(); entries.hasNext();)
+        {
+            if (entries.next().getValue() % 2 == 0)
+            {
+                entries.remove();
+            }
+        }
+
+        assertEquals(50, map.size());
+        assertTrue(map.values().stream().allMatch(v -> v % 2 == 1));
+    }
+
+    @Test
+    public void testMatchesCaseInsensitiveTreeMap()
+    {
+        for (long seed = 0; seed < 20; seed ++ )
+        {
+            compareWithModel(seed, 2_000);
+        }
+    }
+
+    /**
+     * Applies the same random operations to a ConcurrentStringMap and to a TreeMap ordered by
+     * {@link String#CASE_INSENSITIVE_ORDER}, which keeps the first spelling of its keys just the same, and compares all
+     * results.
+     */
+    private static void compareWithModel(long seed, int steps)
+    {
+        var random = new Random(seed);
+        var map = new ConcurrentStringMap<Integer>();
+        Map<String, Integer> model = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+        // includes characters that only match case insensitively through Unicode case mapping
+        String[] words = { "key", "\u212Aey", "Value", "a", "stra\u00dfe", "\u00e4rger", "\u0130d", "id", "x-y", "" };
+
+        for (int step = 0; step < steps; step ++ )
+        {
+            String key = spell(words[random.nextInt(words.length)], random);
+            int value = random.nextInt(5);
+            int other = random.nextInt(5);
+            String message = "Seed " + seed + ", step " + step + ", key " + key;
+
+            switch (random.nextInt(14))
+            {
+                case 0:
+                    assertEquals(model.put(key, value), map.put(key, value), message);
+                    break;
+                case 1:
+                    assertEquals(model.putIfAbsent(key, value), map.putIfAbsent(key, value), message);
+                    break;
+                case 2:
+                    assertEquals(model.remove(key), map.remove(key), message);
+                    break;
+                case 3:
+                    assertEquals(model.remove(key, value), map.remove(key, value), message);
+                    break;
+                case 4:
+                    assertEquals(model.replace(key, value), map.replace(key, value), message);
+                    break;
+                case 5:
+                    assertEquals(model.replace(key, value, other), map.replace(key, value, other), message);
+                    break;
+                case 6:
+                    BiFunction<String, Integer, Integer> remapping = (k, v) ->
+                    {
+                        if (v == null)
+                        {
+                            return value;
+                        }
+
+                        return (v + value) % 3 == 0 ? null : v + value;
+                    };
+                    assertEquals(model.compute(key, remapping), map.compute(key, remapping), message);
+                    break;
+                case 7:
+                    Function<String, Integer> mapping = k -> value % 2 == 0 ? null : value;
+                    assertEquals(model.computeIfAbsent(key, mapping), map.computeIfAbsent(key, mapping), message);
+                    break;
+                case 8:
+                    BiFunction<String, Integer, Integer> present = (k, v) -> v % 2 == 0 ? null : v + 1;
+                    assertEquals(model.computeIfPresent(key, present), map.computeIfPresent(key, present), message);
+                    break;
+                case 9:
+                    BiFunction<Integer, Integer, Integer> merging = (a, b) -> a + b > 6 ? null : a + b;
+                    assertEquals(model.merge(key, value, merging), map.merge(key, value, merging), message);
+                    break;
+                case 10:
+                    assertEquals(model.get(key), map.get(key), message);
+                    assertEquals(model.containsKey(key), map.containsKey(key), message);
+                    assertEquals(model.getOrDefault(key, -1), map.getOrDefault(key, -1), message);
+                    assertEquals(model.keySet().contains(key), map.keySet().contains(key), message);
+                    break;
+                case 11:
+                    assertEquals(model.keySet().remove(key), map.keySet().remove(key), message);
+                    break;
+                case 12:
+                    var entry = Map.entry(key, value);
+                    assertEquals(model.entrySet().contains(entry), map.entrySet().contains(entry), message);
+                    assertEquals(model.containsValue(value), map.containsValue(value), message);
+                    break;
+                case 13:
+                    if (random.nextInt(10) == 0)
+                    {
+                        model.replaceAll((k, v) -> v + 1);
+                        map.replaceAll((k, v) -> v + 1);
+                    }
+                    else
+                    {
+                        model.putAll(Map.of(key, value));
+                        map.putAll(Map.of(key, value));
+                    }
+                    break;
+            }
+
+            assertEquals(model.size(), map.size(), message);
+
+            if (step % 100 == 0 || step == steps - 1)
+            {
+                assertContentEquals(model, map, message);
+            }
+        }
+    }
+
+    /**
+     * Compares the mappings including the spelling of the keys.
+     */
+    private static void assertContentEquals(Map<String, Integer> model, ConcurrentStringMap<Integer> map,
+                                            String message)
+    {
+        Map<String, Integer> sorted = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        map.forEach(sorted::put);
+
+        assertEquals(new ArrayList<>(model.entrySet()), new ArrayList<>(sorted.entrySet()), message);
+        assertEquals(model.size(), sorted.size(), message);
+        assertTrue(map.equals(model), message);
+        assertTrue(model.equals(map), message);
+    }
+
+    /**
+     * Randomly changes the case of the characters of the given word.
+     */
+    private static String spell(String word, Random random)
+    {
+        var chars = word.toCharArray();
+
+        for (int i = 0; i < chars.length; i ++ )
+        {
+            chars[i] = random.nextBoolean() ? Character.toUpperCase(chars[i]) : Character.toLowerCase(chars[i]);
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * Runs the given task on all threads at the same time and waits for them to finish.
+     */
+    private void runConcurrently(ThreadTask task) throws Exception
+    {
+        var start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t ++ )
+        {
+            int thread = t;
+            futures.add(this.executor.submit(() ->
+            {
+                start.await();
+                task.run(thread);
+                return null;
+            }));
+        }
+
+        start.countDown();
+
+        for (Future<?> future : futures)
+        {
+            future.get(60, TimeUnit.SECONDS);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ThreadTask
+    {
+        void run(int thread) throws Exception;
+    }
+}
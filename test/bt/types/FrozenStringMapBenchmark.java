@@ -0,0 +1,69 @@
+package bt.types;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Random;
+
+import bt.utils.Benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Measures lookups in and the memory footprint of a {@link FrozenStringMap} compared to its source {@link StringMap}.
+ * Run via <code>mvn test -Pbenchmark</code>.
+ *
+ * @author &#8904
+ */
+@Tag(Benchmark.TAG)
+public class FrozenStringMapBenchmark
+{
+    private static final int OPERATIONS = 1_000_000;
+
+    @Test
+    public void benchmarkGet()
+    {
+        for (int size : new int[] { 1_000, 1_000_000 })
+        {
+            var map = new StringMap<Integer>();
+            String[] lookups = new String[size];
+
+            for (int i = 0; i < size; i ++ )
+            {
+                map.put("Route-" + i, i);
+                lookups[i] = (i % 2 == 0 ? "route-" : "ROUTE-") + i;
+            }
+
+            var frozen = map.freeze();
+
+            // look the keys up in random order, insertion order would favor the node layout of the HashMap
+            Collections.shuffle(Arrays.asList(lookups), new Random(size));
+
+            Benchmark.report("StringMap.get, " + size + " entries",
+                             Benchmark.nanosPerOperation(OPERATIONS, i -> map.get(lookups[i % size])));
+            Benchmark.report("FrozenStringMap.get, " + size + " entries",
+                             Benchmark.nanosPerOperation(OPERATIONS, i -> frozen.get(lookups[i % size])));
+        }
+    }
+
+    @Test
+    public void benchmarkFootprint()
+    {
+        for (int size : new int[] { 1_000, 1_000_000 })
+        {
+            var map = new StringMap<Integer>();
+
+            for (int i = 0; i < size; i ++ )
+            {
+                map.put("Route-" + i, i);
+            }
+
+            // both copies share the keys and values of the source, so only the table structure is measured
+            Benchmark.reportBytes("HashMap copy, " + size + " entries",
+                                  Benchmark.allocatedBytes(() -> new HashMap<>(map).size()));
+            Benchmark.reportBytes("FrozenStringMap, " + size + " entries",
+                                  Benchmark.allocatedBytes(() -> map.freeze().size()));
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package bt.types;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Locale;
+import java.util.Random;
+
+import bt.utils.Benchmark;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that a {@link FrozenStringMap} answers lookups exactly like the {@link StringMap} it was created from.
+ *
+ * @author &#8904
+ */
+public class FrozenStringMapTest
+{
+    private static final String[] LOOKUPS = {
+            "key", "KEY", "Key", "other", "straße", "STRASSE", "Strasse", "ıd", "ID", "id", "missing", ""
+    };
+
+    @Test
+    public void testLookupsMatchSource()
+    {
+        var map = new StringMap<Integer>();
+        map.put("Key", 1);
+        map.put("straße", 2);
+        map.put("id", 3);
+        map.put("", 4);
+
+        var frozen = map.freeze();
+
+        assertEquals(map, frozen);
+
+        for (String lookup : LOOKUPS)
+        {
+            assertEquals(map.get(lookup), frozen.get(lookup), lookup);
+            assertEquals(map.containsKey(lookup), frozen.containsKey(lookup), lookup);
+            assertEquals(map.get(StringKey.of(lookup)), frozen.get(StringKey.of(lookup)), lookup);
+        }
+    }
+
+    @Test
+    public void testSharpS()
+    {
+        var map = new StringMap<Integer>();
+        map.put("straße", 1);
+
+        var frozen = map.freeze();
+
+        assertEquals(1, frozen.get("straße"));
+        assertEquals(1, frozen.get("STRASSE"));
+        assertEquals(1, frozen.get(StringKey.of("Straße")));
+    }
+
+    @Test
+    public void testCharSequenceLookups()
+    {
+        var map = new StringMap<Integer>();
+        map.put("Key", 1);
+        map.put("straße", 2);
+
+        var frozen = map.freeze();
+
+        assertEquals(1, frozen.get(new StringBuilder("kEY")));
+        assertEquals(2, frozen.get(new StringBuilder("STRAßE")));
+        assertNull(frozen.get(new StringBuilder("keys")));
+    }
+
+    @Test
+    public void testTurkicLocale()
+    {
+        Locale locale = Locale.getDefault();
+
+        try
+        {
+            Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+
+            var map = new StringMap<Integer>();
+            map.put("id", 1);
+
+            var frozen = map.freeze();
+
+            for (String lookup : new String[] { "id", "ID", "İD", "ıd" })
+            {
+                assertEquals(map.get(lookup), frozen.get(lookup), lookup);
+            }
+        }
+        finally
+        {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    public void testRandomKeysMatchSource()
+    {
+        var random = new Random(42);
+        char[] alphabet = { 'a', 'B', 'z', 'Z', '0', '_', 'ß', 'é', 'É', 'ı', 'İ', 'ﬀ' };
+        var map = new StringMap<Integer>();
+
+        for (int i = 0; i < 2000; i ++ )
+        {
+            map.put(randomKey(random, alphabet), i);
+        }
+
+        var frozen = map.freeze();
+
+        for (int i = 0; i < 20_000; i ++ )
+        {
+            String lookup = randomKey(random, alphabet);
+            assertEquals(map.get(lookup), frozen.get(lookup), lookup);
+            assertEquals(map.containsKey(lookup), frozen.containsKey(lookup), lookup);
+        }
+    }
+
+    private static String randomKey(Random random, char[] alphabet)
+    {
+        char[] key = new char[random.nextInt(5)];
+
+        for (int i = 0; i < key.length; i ++ )
+        {
+            key[i] = alphabet[random.nextInt(alphabet.length)];
+        }
+
+        return new String(key);
+    }
+
+    @Test
+    public void testManyKeys()
+    {
+        var map = new StringMap<Integer>();
+
+        for (int i = 0; i < 1000; i ++ )
+        {
+            map.put("key" + i, i);
+        }
+
+        var frozen = map.freeze();
+
+        assertEquals(1000, frozen.size());
+
+        for (int i = 0; i < 1000; i ++ )
+        {
+            assertEquals(i, frozen.get("KEY" + i));
+        }
+
+        assertNull(frozen.get("key1000"));
+        assertFalse(frozen.containsKey("key-1"));
+        assertTrue(frozen.containsValue(999));
+    }
+
+    @Test
+    public void testAsciiLookupsDoNotAllocate()
+    {
+        var map = new StringMap<Integer>();
+        String[] lookups = new String[100];
+
+        for (int i = 0; i < lookups.length; i ++ )
+        {
+            map.put("Header-" + i, i);
+            lookups[i] = (i % 2 == 0 ? "header-" : "HEADER-") + i;
+        }
+
+        var frozen = map.freeze();
+        Runnable get = () ->
+        {
+            for (int i = 0; i < 10_000; i ++ )
+            {
+                if (frozen.get(lookups[i % lookups.length]) == null)
+                {
+                    throw new AssertionError(lookups[i % lookups.length]);
+                }
+            }
+        };
+
+        get.run();
+        assertEquals(0, Benchmark.allocatedBytes(get));
+    }
+
+    @Test
+    public void testModificationFails()
+    {
+        var map = new StringMap<Integer>();
+        map.put("key", 1);
+
+        var frozen = map.freeze();
+
+        assertThrows(UnsupportedOperationException.class, () -> frozen.put("key", 2));
+        assertThrows(UnsupportedOperationException.class, () -> frozen.remove("key"));
+        assertThrows(UnsupportedOperationException.class, () -> frozen.entrySet().clear());
+    }
+}
@@ -0,0 +1,81 @@
+package bt.types;
+
+import bt.utils.Benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Measures lookups with {@link StringKey}s compared to raw Strings. Run via <code>mvn test -Pbenchmark</code>.
+ *
+ * @author &#8904
+ */
+@Tag(Benchmark.TAG)
+public class StringKeyBenchmark
+{
+    private static final int OPERATIONS = 1_000_000;
+    private static final int KEYS = 100;
+
+    @Test
+    public void benchmarkStringMap()
+    {
+        var map = new StringMap<Integer>();
+        String[] spellings = spellings();
+        StringKey[] handles = handles(spellings);
+
+        for (int i = 0; i < KEYS; i ++ )
+        {
+            map.put(spellings[i], i);
+        }
+
+        Benchmark.report("StringMap.get(String)",
+                         Benchmark.nanosPerOperation(OPERATIONS, i -> map.get(spellings[i % KEYS])));
+        Benchmark.report("StringMap.get(StringKey)",
+                         Benchmark.nanosPerOperation(OPERATIONS, i -> map.get(handles[i % KEYS])));
+    }
+
+    @Test
+    public void benchmarkConcurrentStringMap()
+    {
+        var map = new ConcurrentStringMap<Integer>();
+        String[] spellings = spellings();
+        StringKey[] handles = handles(spellings);
+
+        for (int i = 0; i < KEYS; i ++ )
+        {
+            map.put(spellings[i].toLowerCase(), i);
+        }
+
+        Benchmark.report("ConcurrentStringMap.get(String)",
+                         Benchmark.nanosPerOperation(OPERATIONS, i -> map.get(spellings[i % KEYS])));
+        Benchmark.report("ConcurrentStringMap.get(StringKey)",
+                         Benchmark.nanosPerOperation(OPERATIONS, i -> map.get(handles[i % KEYS])));
+    }
+
+    /**
+     * Creates a small vocabulary of mixed case names like the header or property names that are looked up repeatedly.
+     */
+    private static String[] spellings()
+    {
+        String[] spellings = new String[KEYS];
+
+        for (int i = 0; i < KEYS; i ++ )
+        {
+            spellings[i] = "X-Header-Name-" + i;
+        }
+
+        return spellings;
+    }
+
+    private static StringKey[] handles(String[] spellings)
+    {
+        StringKey[] handles = new StringKey[spellings.length];
+
+        for (int i = 0; i < spellings.length; i ++ )
+        {
+            handles[i] = StringKey.of(spellings[i]);
+        }
+
+        return handles;
+    }
+}
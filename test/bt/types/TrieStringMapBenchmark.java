@@ -0,0 +1,89 @@
+package bt.types;
+
+import java.util.Map.Entry;
+
+import bt.utils.Benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Measures lookups and prefix queries of a {@link TrieStringMap} compared to scanning a {@link StringMap}.
+ * Run via <code>mvn test -Pbenchmark</code>.
+ *
+ * @author &#8904
+ */
+@Tag(Benchmark.TAG)
+public class TrieStringMapBenchmark
+{
+    private static final int SIZE = 100_000;
+
+    @Test
+    public void benchmarkGet()
+    {
+        var map = new StringMap<Integer>();
+        var trie = new TrieStringMap<Integer>();
+        String[] lookups = fill(map, trie);
+
+        Benchmark.report("StringMap.get", Benchmark.nanosPerOperation(1_000_000, i -> map.get(lookups[i % SIZE])));
+        Benchmark.report("TrieStringMap.get", Benchmark.nanosPerOperation(1_000_000, i -> trie.get(lookups[i % SIZE])));
+    }
+
+    @Test
+    public void benchmarkWithPrefix()
+    {
+        var map = new StringMap<Integer>();
+        var trie = new TrieStringMap<Integer>();
+        fill(map, trie);
+
+        // each prefix matches 100 of the keys
+        Benchmark.report("StringMap entry scan for a prefix", Benchmark.nanosPerOperation(100, i ->
+        {
+            String prefix = "/USERS/" + i % 1_000 + "/";
+            int count = 0;
+
+            for (Entry<String, Integer> entry : map.entrySet())
+            {
+                if (entry.getKey().toUpperCase().startsWith(prefix))
+                {
+                    count ++ ;
+                }
+            }
+
+            return count;
+        }));
+        Benchmark.report("TrieStringMap.withPrefix",
+                         Benchmark.nanosPerOperation(10_000, i -> trie.withPrefix("/users/" + i % 1_000 + "/").size()));
+    }
+
+    @Test
+    public void benchmarkLongestPrefixOf()
+    {
+        var map = new StringMap<Integer>();
+        var trie = new TrieStringMap<Integer>();
+        String[] lookups = fill(map, trie);
+
+        Benchmark.report("TrieStringMap.longestPrefixOf",
+                         Benchmark.nanosPerOperation(1_000_000,
+                                                     i -> trie.longestPrefixOf(lookups[i % SIZE] + "/settings")
+                                                              .getValue()));
+    }
+
+    /**
+     * Puts the same route like keys into both maps and returns them in mixed case.
+     */
+    private static String[] fill(StringMap<Integer> map, TrieStringMap<Integer> trie)
+    {
+        String[] lookups = new String[SIZE];
+
+        for (int i = 0; i < SIZE; i ++ )
+        {
+            String key = "/users/" + i % 1_000 + "/item/" + i;
+            map.put(key, i);
+            trie.put(key, i);
+            lookups[i] = key.toUpperCase();
+        }
+
+        return lookups;
+    }
+}
@@ -0,0 +1,214 @@
+package bt.types;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the prefix, range and longest prefix queries of a {@link TrieStringMap}.
+ *
+ * @author &#8904
+ */
+public class TrieStringMapTest
+{
+    @Test
+    public void testLookupsIgnoreCase()
+    {
+        var map = new TrieStringMap<Integer>();
+
+        assertNull(map.put("Key", 1));
+        assertEquals(1, map.put("KEY", 2));
+        assertEquals(2, map.get("key"));
+        assertTrue(map.containsKey(StringKey.of("kEy")));
+        assertEquals(1, map.size());
+
+        assertEquals(2, map.remove("kEY"));
+        assertNull(map.get("key"));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testWithPrefix()
+    {
+        var map = map("a", "ab", "abc", "abd", "b", "ba", "");
+
+        assertEquals(List.of("AB", "ABC", "ABD"), keys(map.withPrefix("ab")));
+        assertEquals(List.of("ABC"), keys(map.withPrefix("aBc")));
+        assertEquals(List.of(), keys(map.withPrefix("abcd")));
+        assertEquals(List.of(), keys(map.withPrefix("c")));
+
+        // the empty prefix matches every key, including the empty one
+        assertEquals(List.of("", "A", "AB", "ABC", "ABD", "B", "BA"), keys(map.withPrefix("")));
+        assertEquals(List.of(), keys(new TrieStringMap<Integer>().withPrefix("")));
+    }
+
+    @Test
+    public void testRange()
+    {
+        var map = map("a", "ab", "abc", "abd", "b", "ba", "");
+
+        assertEquals(List.of("", "A", "AB", "ABC", "ABD", "B", "BA"), keys(map.range(null, null)));
+
+        // the lower bound is inclusive and the upper bound exclusive, also for keys that are prefixes of others
+        assertEquals(List.of("AB", "ABC", "ABD"), keys(map.range("ab", "b")));
+        assertEquals(List.of("AB", "ABC"), keys(map.range("AB", "abd")));
+        assertEquals(List.of("ABD", "B"), keys(map.range("abca", "ba")));
+        assertEquals(List.of("", "A"), keys(map.range(null, "ab")));
+        assertEquals(List.of("B", "BA"), keys(map.range("az", null)));
+        assertEquals(List.of(), keys(map.range("ab", "ab")));
+        assertEquals(List.of(), keys(map.range("b", "a")));
+        assertEquals(List.of(), keys(map.range(null, "")));
+        assertEquals(List.of(""), keys(map.range("", "a")));
+    }
+
+    @Test
+    public void testLongestPrefixOf()
+    {
+        var map = map("/", "/users", "/users/admin");
+
+        assertEquals("/USERS/ADMIN", map.longestPrefixOf("/Users/Admin/settings").getKey());
+        assertEquals("/USERS", map.longestPrefixOf("/users/guest").getKey());
+        assertEquals("/USERS", map.longestPrefixOf("/users").getKey());
+        assertEquals("/", map.longestPrefixOf("/files").getKey());
+        assertNull(map.longestPrefixOf("files"));
+
+        map.put("", 0);
+        assertEquals("", map.longestPrefixOf("files").getKey());
+    }
+
+    @Test
+    public void testRemovedKeysAreNotFound()
+    {
+        var map = map("a", "ab", "abc");
+
+        map.remove("AB");
+        assertEquals(List.of("A", "ABC"), keys(map.withPrefix("a")));
+
+        map.remove("abc");
+        assertEquals(List.of("A"), keys(map.withPrefix("a")));
+        assertEquals(List.of(), keys(map.withPrefix("ab")));
+        assertEquals("A", map.longestPrefixOf("abc").getKey());
+
+        Iterator<Entry<String, Integer>> iterator = map.entrySet().iterator();
+        iterator.next();
+        iterator.remove();
+
+        assertTrue(map.isEmpty());
+        assertEquals(List.of(), keys(map.range(null, null)));
+        assertFalse(map.containsKey("a"));
+    }
+
+    @Test
+    public void testEntriesWriteThrough()
+    {
+        var map = map("a");
+
+        map.entrySet().iterator().next().setValue(5);
+
+        assertEquals(5, map.get("A"));
+        assertEquals(5, map.withPrefix("a").get(0).getValue());
+    }
+
+    @Test
+    public void testLongKeys()
+    {
+        var map = new TrieStringMap<Integer>();
+        String key = "x".repeat(100_000);
+
+        map.put(key, 1);
+        map.put(key + "y", 2);
+
+        // a recursive walk would overflow the stack for keys this long
+        assertEquals(2, map.withPrefix("x").size());
+        assertEquals(2, map.range("x", null).size());
+        assertEquals(1, map.range(null, key + "y").size());
+        assertEquals(2, map.longestPrefixOf(key + "yz").getValue());
+    }
+
+    @Test
+    public void testQueriesMatchSortedMap()
+    {
+        var random = new Random(42);
+        var map = new TrieStringMap<Integer>();
+        var sorted = new TreeMap<String, Integer>();
+
+        for (int i = 0; i < 500; i ++ )
+        {
+            String key = randomKey(random);
+            map.put(key, i);
+            sorted.put(key.toUpperCase(), i);
+
+            if (random.nextInt(4) == 0)
+            {
+                String removed = randomKey(random);
+                assertEquals(sorted.remove(removed.toUpperCase()), map.remove(removed));
+            }
+        }
+
+        for (int i = 0; i < 500; i ++ )
+        {
+            String prefix = randomKey(random);
+            String upperCase = prefix.toUpperCase();
+            List<String> expected = new ArrayList<>(sorted.subMap(upperCase, upperCase + Character.MAX_VALUE).keySet());
+            assertEquals(expected, keys(map.withPrefix(prefix)), prefix);
+
+            String from = randomKey(random).toUpperCase();
+            String to = randomKey(random).toUpperCase();
+
+            if (from.compareTo(to) <= 0)
+            {
+                assertEquals(new ArrayList<>(sorted.subMap(from, to).keySet()), keys(map.range(from, to)));
+            }
+
+            assertEquals(new ArrayList<>(sorted.headMap(to).keySet()), keys(map.range(null, to)));
+            assertEquals(new ArrayList<>(sorted.tailMap(from).keySet()), keys(map.range(from, null)));
+        }
+    }
+
+    private static String randomKey(Random random)
+    {
+        var key = new StringBuilder();
+        int length = random.nextInt(5);
+
+        for (int i = 0; i < length; i ++ )
+        {
+            key.append("abcAB".charAt(random.nextInt(5)));
+        }
+
+        return key.toString();
+    }
+
+    private static TrieStringMap<Integer> map(String... keys)
+    {
+        var map = new TrieStringMap<Integer>();
+
+        for (int i = 0; i < keys.length; i ++ )
+        {
+            map.put(keys[i], i);
+        }
+
+        return map;
+    }
+
+    private static List<String> keys(List<Entry<String, Integer>> entries)
+    {
+        List<String> keys = new ArrayList<>();
+
+        for (Entry<String, Integer> entry : entries)
+        {
+            keys.add(entry.getKey());
+        }
+
+        return keys;
+    }
+}
@@ -0,0 +1,184 @@
+package bt.utils;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Simple timing and allocation measurements for the benchmark tests.
+ *
+ * <p>
+ * Benchmarks are JUnit tests tagged with {@link #TAG}. They are excluded from the default build, since their results
+ * are only meaningful on an otherwise idle machine, and are run via <code>mvn test -Pbenchmark</code>. They print their
+ * results instead of asserting on them. This is no replacement for a harness like JMH, but is good enough to compare
+ * two implementations in the same run.
+ * </p>
+ *
+ * @author &#8904
+ */
+public final class Benchmark
+{
+    /** The JUnit tag of all benchmarks. */
+    public static final String TAG = "benchmark";
+
+    /** The number of rounds that are run to warm up the JIT before measuring. */
+    private static final int WARMUP_ROUNDS = 5;
+
+    /** The number of measured rounds. */
+    private static final int ROUNDS = 10;
+
+    /** Receives the results of all operations, so that the JIT can't remove them as dead code. */
+    private static volatile long sink;
+
+    private Benchmark()
+    {
+    }
+
+    /**
+     * Measures the average time of the given operation on a single thread.
+     *
+     * @param operations
+     *            The number of times to call the operation per round.
+     * @param operation
+     *            The operation, which receives the index of the call within its round and returns any value that
+     *            depends on its work.
+     * @return The average time of a call in nanoseconds in the fastest round.
+     */
+    public static double nanosPerOperation(int operations, IntToLongFunction operation)
+    {
+        double fastest = Double.MAX_VALUE;
+
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round ++ )
+        {
+            long start = System.nanoTime();
+            long result = 0;
+
+            for (int i = 0; i < operations; i ++ )
+            {
+                result += operation.applyAsLong(i);
+            }
+
+            long nanos = System.nanoTime() - start;
+            sink += result;
+
+            if (round >= WARMUP_ROUNDS)
+            {
+                fastest = Math.min(fastest, (double)nanos / operations);
+            }
+        }
+
+        return fastest;
+    }
+
+    /**
+     * Measures the throughput of the given operation when it is called by the given number of threads at the same
+     * time.
+     *
+     * @param threads
+     *            The number of threads that call the operation.
+     * @param operations
+     *            The number of times that each thread calls the operation per round.
+     * @param operation
+     *            The operation, see {@link #nanosPerOperation(int, IntToLongFunction)}.
+     * @return The wall clock time of the fastest round divided by the number of calls of all threads in nanoseconds.
+     */
+    public static double nanosPerOperation(int threads, int operations, IntToLongFunction operation) throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        var barrier = new CyclicBarrier(threads + 1);
+        double fastest = Double.MAX_VALUE;
+
+        try
+        {
+            for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round ++ )
+            {
+                List<Future<Long>> futures = new ArrayList<>();
+
+                for (int t = 0; t < threads; t ++ )
+                {
+                    futures.add(executor.submit(() ->
+                    {
+                        barrier.await();
+                        long result = 0;
+
+                        for (int i = 0; i < operations; i ++ )
+                        {
+                            result += operation.applyAsLong(i);
+                        }
+
+                        return result;
+                    }));
+                }
+
+                barrier.await();
+                long start = System.nanoTime();
+
+                for (Future<Long> future : futures)
+                {
+                    sink += future.get(5, TimeUnit.MINUTES);
+                }
+
+                long nanos = System.nanoTime() - start;
+
+                if (round >= WARMUP_ROUNDS)
+                {
+                    fastest = Math.min(fastest, (double)nanos / ((long)threads * operations));
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        return fastest;
+    }
+
+    /**
+     * Gets the number of bytes that the current thread allocated while running the given action.
+     *
+     * @param action
+     * @return The allocated bytes.
+     */
+    public static long allocatedBytes(Runnable action)
+    {
+        var threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(id);
+        action.run();
+
+        return threads.getThreadAllocatedBytes(id) - before;
+    }
+
+    /**
+     * Prints the result of a measurement.
+     *
+     * @param name
+     *            The name of the measured case.
+     * @param nanos
+     *            The measured time per operation in nanoseconds.
+     */
+    public static void report(String name, double nanos)
+    {
+        System.out.printf("%-60s %10.1f ns/op%n", name, nanos);
+    }
+
+    /**
+     * Prints the result of a memory measurement.
+     *
+     * @param name
+     *            The name of the measured case.
+     * @param bytes
+     *            The measured number of bytes.
+     */
+    public static void reportBytes(String name, long bytes)
+    {
+        System.out.printf("%-60s %10d bytes%n", name, bytes);
+    }
+}